@@ -0,0 +1,48 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.openjdk.jmh.annotations.*;
+import windows.win32.graphics.direct3d11.ID3D11DeviceContext;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+
+/**
+ * The draw {@link InteropContext#draw} issues for every blit, against a {@link FakeComObject}. What is left is the
+ * cost of the Java side: setting up the arguments and the downcalls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BlitBenchmark {
+
+    private Arena arena;
+    private ID3D11DeviceContext context;
+    private MemorySegment textureView;
+
+    private MemorySegment shaderResourceViewPtr;
+    private MemorySegment renderTargetViewPtr;
+
+    @Setup
+    public void setup() {
+        arena = Arena.ofShared();
+        context = ID3D11DeviceContext.wrap(FakeComObject.create(arena));
+        textureView = FakeComObject.create(arena);
+
+        shaderResourceViewPtr = arena.allocate(ADDRESS);
+        renderTargetViewPtr = arena.allocate(ADDRESS);
+        renderTargetViewPtr.set(ADDRESS, 0, FakeComObject.create(arena));
+    }
+
+    @TearDown
+    public void tearDown() {
+        arena.close();
+    }
+
+    @Benchmark
+    public void draw() {
+        InteropContext.draw(context, shaderResourceViewPtr, textureView, renderTargetViewPtr);
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.openjdk.jmh.annotations.*;
+import windows.win32.graphics.dxgi.IDXGISwapChain1;
+import windows.win32.graphics.dxgi.IDXGISwapChain2;
+
+import java.lang.foreign.Arena;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ComObjects#comCast} with the reflective lookup of the interface ID and wrapper against the variant that
+ * gets them passed in. {@code QueryInterface} goes to a {@link FakeComObject}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ComCastBenchmark {
+
+    private Arena arena;
+    private IDXGISwapChain1 swapChain;
+
+    @Setup
+    public void setup() {
+        arena = Arena.ofShared();
+        swapChain = IDXGISwapChain1.wrap(FakeComObject.create(arena));
+    }
+
+    @TearDown
+    public void tearDown() {
+        arena.close();
+    }
+
+    @Benchmark
+    public IDXGISwapChain2 reflective() {
+        try (var call = Arena.ofConfined()) {
+            return ComObjects.comCast(call, swapChain, IDXGISwapChain2.class);
+        }
+    }
+
+    @Benchmark
+    public IDXGISwapChain2 direct() {
+        try (var call = Arena.ofConfined()) {
+            return ComObjects.comCast(call, swapChain, IDXGISwapChain2.iid(), IDXGISwapChain2::wrap);
+        }
+    }
+}
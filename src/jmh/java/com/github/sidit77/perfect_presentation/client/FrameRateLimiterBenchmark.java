@@ -0,0 +1,94 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Frame intervals of {@link FrameRateLimiter} on the real clock next to those of vanilla's limiter, with a little
+ * work per frame like a light scene.
+ * <p>
+ * Every invocation is one frame, so the sampled times are the frame intervals and their spread is the jitter.
+ * The standard deviation of the intervals is printed after every iteration.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameRateLimiterBenchmark {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long WORK_TOKENS = 50_000;
+
+    @Param({"60", "144"})
+    public int frameRate;
+
+    @Param({"PRECISE", "VANILLA"})
+    public FrameRateLimiter.Mode limiter;
+
+    private FrameRateLimiter frameRateLimiter;
+    private long lastVanillaFrame = Long.MIN_VALUE;
+
+    private final long[] intervals = new long[1 << 16];
+    private int intervalCount = 0;
+    private long lastFrameEnd = Long.MIN_VALUE;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        frameRateLimiter = new FrameRateLimiter(FrameClock.SYSTEM);
+    }
+
+    @TearDown(Level.Iteration)
+    public void printJitter() {
+        if (intervalCount < 2) {
+            return;
+        }
+        var mean = 0.0;
+        for (int i = 0; i < intervalCount; i++) {
+            mean += intervals[i];
+        }
+        mean /= intervalCount;
+        var variance = 0.0;
+        for (int i = 0; i < intervalCount; i++) {
+            variance += (intervals[i] - mean) * (intervals[i] - mean);
+        }
+        variance /= intervalCount - 1;
+        System.out.printf(Locale.ROOT, "%n%s at %d fps: interval mean %.1f µs, standard deviation %.1f µs over %d frames%n",
+                limiter, frameRate, mean / 1e3, Math.sqrt(variance) / 1e3, intervalCount);
+        intervalCount = 0;
+        // the pause between iterations is not a frame interval
+        lastFrameEnd = Long.MIN_VALUE;
+    }
+
+    @Benchmark
+    public void frame() {
+        Blackhole.consumeCPU(WORK_TOKENS);
+        if (limiter == FrameRateLimiter.Mode.VANILLA) {
+            waitLikeVanilla();
+        } else {
+            frameRateLimiter.waitForNextFrame(frameRate);
+        }
+        var now = System.nanoTime();
+        if (lastFrameEnd != Long.MIN_VALUE && intervalCount < intervals.length) {
+            intervals[intervalCount++] = now - lastFrameEnd;
+        }
+        lastFrameEnd = now;
+    }
+
+    /**
+     * {@code RenderSystem.limitDisplayFPS}: waits a whole interval after the end of the last wait, sleeping with
+     * {@code glfwWaitEventsTimeout}, which has the same timer resolution as a park.
+     */
+    private void waitLikeVanilla() {
+        if (lastVanillaFrame != Long.MIN_VALUE) {
+            var target = lastVanillaFrame + NANOS_PER_SECOND / frameRate;
+            for (var now = System.nanoTime(); now < target; now = System.nanoTime()) {
+                LockSupport.parkNanos(target - now);
+            }
+        }
+        lastVanillaFrame = System.nanoTime();
+    }
+}
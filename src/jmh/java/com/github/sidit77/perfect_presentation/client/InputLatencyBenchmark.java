@@ -0,0 +1,48 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bookkeeping of {@link InputLatencyTracker} for one frame at 144 fps with a 1000 Hz mouse: seven cursor
+ * events, the frame start, the present and the vblank.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InputLatencyBenchmark {
+
+    private static final int EVENTS_PER_FRAME = 7;
+
+    private InputLatencyTracker tracker;
+    private long time = 0;
+    private long frame = 0;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        tracker = new InputLatencyTracker(new InputLatencyTracker.Listener() {
+            @Override
+            public void onEventPresented(InputLatencyTracker.Kind kind, long frame, long latency) {
+                blackhole.consume(latency);
+            }
+
+            @Override
+            public void onEventDisplayed(InputLatencyTracker.Kind kind, long frame, long latency) {
+                blackhole.consume(latency);
+            }
+        });
+    }
+
+    @Benchmark
+    public void frame() {
+        for (int i = 0; i < EVENTS_PER_FRAME; i++) {
+            tracker.onEvent(InputLatencyTracker.Kind.CURSOR, time += 1_000_000);
+        }
+        tracker.onFrameStart();
+        tracker.onPresent(frame, time += 5_000_000);
+        tracker.onFrameDisplayed(frame, time + 2_000_000);
+        frame++;
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.lwjgl.PointerBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static org.lwjgl.system.MemoryUtil.memAllocPointer;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * The call {@code SharedTexture.lock/unlock} make through {@link InteropContext#interopLock}.
+ * <p>
+ * The real entry points only exist with a live WGL context, so this passes an upcall stub with the signature of
+ * {@code wglDXLockObjectsNV} instead. What is measured is the Java side of the call.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InteropLockBenchmark {
+
+    // BOOL wglDXLockObjectsNV(HANDLE hDevice, GLint count, HANDLE *hObjects)
+    private static final FunctionDescriptor LOCK_OBJECTS = FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS);
+
+    private Arena arena;
+    private long lockObjects;
+    private long device;
+    private PointerBuffer interopHandles;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        arena = Arena.ofShared();
+        var target = MethodHandles.lookup().findStatic(InteropLockBenchmark.class, "lockObjects",
+                MethodType.methodType(int.class, MemorySegment.class, int.class, MemorySegment.class));
+        lockObjects = Linker.nativeLinker().upcallStub(target, LOCK_OBJECTS, arena).address();
+
+        device = 0x1000;
+        interopHandles = memAllocPointer(1).put(0, 0x2000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        memFree(interopHandles);
+        arena.close();
+    }
+
+    private static int lockObjects(MemorySegment device, int count, MemorySegment objects) {
+        return 1;
+    }
+
+    @Benchmark
+    public boolean lock() {
+        return InteropContext.interopLock(lockObjects, device, interopHandles);
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * {@link ParallelPngEncoder} on a synthetic 16:9 frame: smooth gradients with some noise on top, which compresses
+ * roughly like a frame of the game.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PngEncoderBenchmark {
+
+    @Param({"1920", "3840"})
+    public int width;
+
+    private PixelImage image;
+    private ParallelPngEncoder encoder;
+
+    @Setup
+    public void setup() {
+        var height = width * 9 / 16;
+        var random = new Random(42);
+        var rgba = new byte[width * height * 4];
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i += 4) {
+                var noise = random.nextInt(8);
+                rgba[i] = (byte) (x * 255 / width + noise);
+                rgba[i + 1] = (byte) (y * 255 / height + noise);
+                rgba[i + 2] = (byte) ((x + y) / 8 + noise);
+                rgba[i + 3] = (byte) 0xFF;
+            }
+        }
+        image = new PixelImage(width, height, rgba, true);
+        encoder = new ParallelPngEncoder(ForkJoinPool.commonPool(), Deflater.DEFAULT_COMPRESSION, 1);
+    }
+
+    @Benchmark
+    public void encode() throws IOException {
+        encoder.encode(image, OutputStream.nullOutputStream());
+    }
+}
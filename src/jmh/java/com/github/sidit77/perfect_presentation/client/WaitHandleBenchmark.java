@@ -0,0 +1,43 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InteropContext.WaitHandle#waitForSignal()}, the call the render thread makes before every frame.
+ * <p>
+ * A real waitable object needs Windows, so the wait goes through a {@link FakeInteropPlatform}, which calls an upcall
+ * stub with the signature of {@code WaitForSingleObject} that returns right away. What is measured is the Java side of
+ * the wait and one native call.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WaitHandleBenchmark {
+
+    private Arena arena;
+    private InteropContext.WaitHandle waitHandle;
+
+    @Setup
+    public void setup() {
+        arena = Arena.ofShared();
+        var errorState = arena.allocate(Linker.Option.captureStateLayout());
+        waitHandle = new InteropContext.WaitHandle(MemorySegment.ofAddress(0x1000), errorState, new FakeInteropPlatform());
+    }
+
+    @TearDown
+    public void tearDown() {
+        waitHandle.close();
+        arena.close();
+    }
+
+    @Benchmark
+    public void waitForSignal() {
+        waitHandle.waitForSignal();
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HRESULT check that follows every Direct3D and DXGI call. Only successful codes are measured, turning a
+ * failure into a message needs {@code FormatMessageW}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WinErrorBenchmark {
+
+    // S_OK and DXGI_STATUS_OCCLUDED
+    @Param({"0", "142213121"})
+    public int hresult;
+
+    @Benchmark
+    public void checkSuccessful() {
+        WinError.checkSuccessful(hresult);
+    }
+}
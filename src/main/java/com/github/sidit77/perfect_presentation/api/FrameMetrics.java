@@ -0,0 +1,62 @@
+package com.github.sidit77.perfect_presentation.api;
+
+import com.github.sidit77.perfect_presentation.client.PerfectPresentationClient;
+
+/**
+ * Read-only view of the frame timings recorded by Perfect Presentation.
+ * <p>
+ * Timings are aggregated into fixed-length windows. The methods of this interface always return the last
+ * completed window, they never block the render thread and can be called from any thread.
+ * </p>
+ */
+public interface FrameMetrics {
+
+    static FrameMetrics get() {
+        return PerfectPresentationClient.FRAME_TIMINGS;
+    }
+
+    /**
+     * @return the statistics of {@code stage} over the last completed window
+     */
+    Snapshot getSnapshot(Stage stage);
+
+    /**
+     * @return the total number of frames presented so far
+     */
+    long getFrameCount();
+
+    /**
+     * @return the total number of vblanks on which a frame was shown again because the next one was late
+     */
+    long getRepeatedRefreshCount();
+
+    /**
+     * @return the total number of presented frames that were replaced before they were ever shown
+     */
+    long getDroppedFrameCount();
+
+    enum Stage {
+        /** Time between the start of two consecutive {@code Present} calls */
+        PRESENT_INTERVAL,
+        /** Time the render thread spent blocked on the swap chain's waitable object */
+        SWAP_CHAIN_WAIT,
+        /** Time spent copying the main render target into the swap chain */
+        BLIT,
+        /** Time spent inside the {@code Present} call */
+        PRESENT,
+        /** Time from the start of the {@code Present} call to the vblank the frame was first shown on */
+        DISPLAY_LATENCY,
+        /** Time from an input event to the start of the {@code Present} call of the frame that reacted to it */
+        INPUT_TO_PRESENT,
+        /** Time from an input event to the vblank the frame that reacted to it was first shown on */
+        INPUT_TO_DISPLAY
+    }
+
+    /**
+     * All durations are in nanoseconds. Percentiles are accurate to about 3%, {@code max} is exact.
+     */
+    record Snapshot(long windowStart, long windowEnd, long count, long p50, long p99, long p999, long max) {
+        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, 0, 0);
+    }
+
+}
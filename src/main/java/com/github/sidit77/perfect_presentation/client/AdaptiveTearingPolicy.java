@@ -0,0 +1,108 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * Decides for every vsynced present whether it should tear instead, the policy behind {@link TearingMode#ADAPTIVE}.
+ * <p>
+ * Every frame is expected on the vblank after the one its predecessor was shown on. The time the frame is ready to
+ * be shown is predicted as the time of its present plus the predicted cost of the present, estimated like in
+ * {@link FrameStartScheduler}. A frame that is ready by its vblank is presented with vsync as usual. A frame that
+ * misses it would be held back for a whole refresh, so if it is ready shortly after a vblank, at most
+ * {@code threshold} of a refresh period, it is presented right away and tears near the top of the screen instead.
+ * Frames that are later than that wait for the next vblank, a tear line in the middle of the screen is worse than
+ * the extra latency.
+ * </p>
+ * <p>
+ * The vblank grid is anchored on vblank times reported by the frame statistics. Without a recent one nothing tears.
+ * Only deals with timestamps, so it can be driven by synthetic traces just as well. Not thread-safe.
+ * </p>
+ */
+public class AdaptiveTearingPolicy {
+
+    private static final double MEAN_WEIGHT = 0.125;
+    private static final double DEVIATION_WEIGHT = 0.25;
+    private static final int DEVIATION_FACTOR = 2;
+    // an anchor this old has drifted too far from the real vblanks, the refresh period is only approximate
+    private static final long MAX_ANCHOR_AGE = 1_000_000_000L;
+
+    private double threshold = 0.25;
+    private long anchor = Long.MIN_VALUE;
+    private long lastTarget = Long.MIN_VALUE;
+    private double meanCost = -1;
+    private double meanDeviation = 0;
+
+    /**
+     * @param threshold how far into a refresh period a late frame may still tear, between {@code 0} and {@code 1}
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = Math.max(0.0, Math.min(threshold, 1.0));
+    }
+
+    /**
+     * @param vblankTime the time of a recent vblank
+     */
+    public void onVblank(long vblankTime) {
+        anchor = vblankTime;
+    }
+
+    /**
+     * @return the predicted time between calling present and the frame being ready to be shown, {@code 0} if no
+     * present has been observed yet
+     */
+    public long getPredictedCost() {
+        if (meanCost < 0) {
+            return 0;
+        }
+        return (long) (meanCost + DEVIATION_FACTOR * meanDeviation);
+    }
+
+    /**
+     * Decides about the frame that is about to be presented with a sync interval of 1.
+     *
+     * @param presentTime the time the present is made
+     * @return {@code true} if the frame should be presented without vsync
+     */
+    public boolean shouldTear(long presentTime, long refreshPeriod) {
+        var ready = presentTime + getPredictedCost();
+        if (anchor == Long.MIN_VALUE || ready - anchor > MAX_ANCHOR_AGE) {
+            lastTarget = Long.MIN_VALUE;
+            return false;
+        }
+        var expected = lastTarget == Long.MIN_VALUE ? Long.MIN_VALUE : lastTarget + refreshPeriod;
+        if (expected != Long.MIN_VALUE && ready <= expected) {
+            lastTarget = expected;
+            return false;
+        }
+        var lastVblank = anchor + Math.floorDiv(ready - anchor, refreshPeriod) * refreshPeriod;
+        // without an expected vblank there is no way to tell whether the frame is late
+        var tear = expected != Long.MIN_VALUE && ready - lastVblank <= threshold * refreshPeriod;
+        lastTarget = tear ? lastVblank : lastVblank + refreshPeriod;
+        return tear;
+    }
+
+    /**
+     * Called for every present, whether it went through {@link #shouldTear} or not.
+     *
+     * @param cost the time the present took
+     * @param decided whether {@link #shouldTear} was asked about this present, the others say nothing about when the
+     *                next frame is due
+     */
+    public void onPresented(long cost, boolean decided) {
+        if (!decided) {
+            lastTarget = Long.MIN_VALUE;
+        }
+        if (meanCost < 0) {
+            meanCost = cost;
+            meanDeviation = cost / 2.0;
+            return;
+        }
+        meanDeviation += DEVIATION_WEIGHT * (Math.abs(cost - meanCost) - meanDeviation);
+        meanCost += MEAN_WEIGHT * (cost - meanCost);
+    }
+
+    public void reset() {
+        anchor = Long.MIN_VALUE;
+        lastTarget = Long.MIN_VALUE;
+        meanCost = -1;
+        meanDeviation = 0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * How a frame gets from a shared texture into the back buffer.
+ * <p>
+ * Every mode is a fullscreen triangle. A plain {@code CopyResource} can not be used since OpenGL stores the bottom row
+ * first while Direct3D starts at the top, so only the draw turns the frame upright.
+ * </p>
+ */
+public enum BlitMode {
+    /** Point sampling, flips and converts but keeps every pixel */
+    DRAW,
+    /** Bilinear filtering */
+    DRAW_SCALED,
+    /** Bilinear filtering followed by a sharpening filter */
+    DRAW_SHARPENED;
+
+    /**
+     * Picks the cheapest way to get a frame into the back buffer.
+     *
+     * @param sourceWidth width of the frame inside the shared texture
+     * @param sourceHeight height of the frame inside the shared texture
+     * @param targetWidth width of the back buffer
+     * @param targetHeight height of the back buffer
+     * @param sharpen whether scaled frames should be sharpened
+     */
+    public static BlitMode select(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight, boolean sharpen) {
+        if (sourceWidth != targetWidth || sourceHeight != targetHeight) {
+            return sharpen ? DRAW_SHARPENED : DRAW_SCALED;
+        }
+        return DRAW;
+    }
+}
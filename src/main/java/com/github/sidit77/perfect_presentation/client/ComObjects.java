@@ -0,0 +1,66 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import windows.win32.system.com.IUnknown;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.Function;
+
+import static com.github.sidit77.perfect_presentation.client.WinError.checkSuccessful;
+import static java.lang.foreign.ValueLayout.ADDRESS;
+
+/**
+ * Helpers for the generated COM wrappers.
+ * <p>
+ * Nothing in here calls into a Windows library directly, so these also work on COM objects faked with upcall stubs.
+ * </p>
+ */
+public final class ComObjects {
+
+    static MemorySegment asRaw(IUnknown obj) {
+        if(obj instanceof IUnknown.$DOWNCALL downcall) {
+            return downcall.comObject;
+        }
+        throw new IllegalArgumentException("Not a native IUnknown object");
+    }
+
+    static <T extends IUnknown> T makeResource(Arena arena, Function<MemorySegment, Integer> factory, Function<MemorySegment, T> wrapper) {
+        var ptr = arena.allocate(ADDRESS);
+        var hr = factory.apply(ptr);
+        checkSuccessful(hr);
+        return wrapper.apply(ptr.get(ADDRESS, 0));
+    }
+
+    /**
+     * Queries {@code resource} for another interface.
+     *
+     * @param iid the interface ID of {@code T}, usually {@code T.iid()}
+     * @param wrapper usually {@code T::wrap}
+     */
+    static <T extends IUnknown> T comCast(Arena arena, IUnknown resource, MemorySegment iid, Function<MemorySegment, T> wrapper) {
+        return makeResource(arena, ptr -> resource.QueryInterface(iid, ptr), wrapper);
+    }
+
+    /**
+     * Like {@link #comCast(Arena, IUnknown, MemorySegment, Function)}, but looks up the interface ID and the wrapper
+     * reflectively.
+     */
+    public static <T extends IUnknown> T comCast(Arena arena, IUnknown resource, Class<T> clazz){
+        try {
+            Method iidMethod = clazz.getMethod("iid");
+            MemorySegment iid = (MemorySegment) iidMethod.invoke(null);
+
+            Method wrapMethod = clazz.getMethod("wrap", MemorySegment.class);
+
+            var ptr = arena.allocate(ADDRESS);
+            checkSuccessful(resource.QueryInterface(iid, ptr));
+            return clazz.cast(wrapMethod.invoke(null, ptr.get(ADDRESS, 0)));
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private ComObjects() { }
+}
@@ -0,0 +1,249 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads {@link PerfectPresentationClient.Config} from a JSON file and watches it for edits.
+ * <p>
+ * The file has three parts: {@code settings} with a value for every setting, {@code profiles} with named sets of
+ * overrides, and {@code profile} naming the active one (empty for none). The active profile wins over the plain
+ * settings, so switching between the built-in lowest-latency, smooth, power-saver and throughput profiles is a
+ * one-word edit. Settings missing from the file keep their defaults, and a missing file is created with the defaults
+ * and the built-in profiles.
+ * </p>
+ * <p>
+ * Edits are picked up while the game runs. Most settings apply from the next frame on, the swap chain buffer count on
+ * the next resize, and the debug layer, the CSV file, the frame capture and the frame trace only at startup. A file
+ * that does not parse or has a value out of range is reported and ignored, the previous configuration stays in
+ * effect.
+ * </p>
+ */
+public class ConfigFile {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigFile.class);
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    // editors often save in several steps, so wait a little for the file to settle
+    private static final long RELOAD_DELAY_MILLIS = 200;
+    // the most a flip model swap chain allows
+    private static final int MAX_SWAP_CHAIN_BUFFERS = 16;
+    private static final int MAX_SHARED_TEXTURE_RING_SIZE = 8;
+
+    private static final Map<String, JsonObject> BUILT_IN_PROFILES = new LinkedHashMap<>();
+
+    static {
+        BUILT_IN_PROFILES.put("lowest-latency", profile(
+                "swapChainBufferCount", 2,
+                "maxFrameLatency", 1,
+                "tearing", TearingMode.UNSYNCED,
+                "scheduleFrameStart", true,
+                "frameRateLimiter", FrameRateLimiter.Mode.AUTO,
+                "renderScale", 1.0f,
+                "targetGpuFrameTimeMillis", 0.0f));
+        BUILT_IN_PROFILES.put("smooth", profile(
+                "swapChainBufferCount", 3,
+                "maxFrameLatency", 2,
+                "tearing", TearingMode.ADAPTIVE,
+                "adaptiveTearingThreshold", 0.2f,
+                "scheduleFrameStart", false,
+                "frameRateLimiter", FrameRateLimiter.Mode.PRECISE,
+                "renderScale", 1.0f,
+                "minRenderScale", 0.5f,
+                "targetGpuFrameTimeMillis", 6.0f));
+        BUILT_IN_PROFILES.put("power-saver", profile(
+                "swapChainBufferCount", 2,
+                "maxFrameLatency", 1,
+                "tearing", TearingMode.NEVER,
+                "scheduleFrameStart", false,
+                "frameRateLimiter", FrameRateLimiter.Mode.AUTO,
+                "renderScale", 0.75f,
+                "targetGpuFrameTimeMillis", 0.0f,
+                "skipUnchangedFrames", true,
+                "backgroundFrameRate", 10));
+        BUILT_IN_PROFILES.put("throughput", profile(
+                "swapChainBufferCount", 4,
+                "maxFrameLatency", 3,
+                "sharedTextureRingSize", 2,
+                "presentationThread", true,
+                "tearing", TearingMode.UNSYNCED,
+                "scheduleFrameStart", false,
+                "frameRateLimiter", FrameRateLimiter.Mode.PRECISE,
+                "renderScale", 1.0f,
+                "targetGpuFrameTimeMillis", 0.0f));
+    }
+
+    private final Path file;
+    private final PerfectPresentationClient.Config defaults;
+
+    public ConfigFile(Path file, PerfectPresentationClient.Config defaults) {
+        this.file = file;
+        this.defaults = defaults;
+    }
+
+    private static JsonObject profile(Object... settings) {
+        var profile = new JsonObject();
+        for (int i = 0; i < settings.length; i += 2) {
+            profile.add((String) settings[i], GSON.toJsonTree(settings[i + 1]));
+        }
+        return profile;
+    }
+
+    /**
+     * @return the configuration in the file, or the defaults if it can not be read
+     */
+    public PerfectPresentationClient.Config load() {
+        if (!Files.exists(file)) {
+            writeDefaults();
+            return defaults;
+        }
+        var config = tryRead();
+        return config != null ? config : defaults;
+    }
+
+    private @Nullable PerfectPresentationClient.Config tryRead() {
+        try {
+            return parse(Files.readString(file));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to read config file {}", file, e);
+            return null;
+        }
+    }
+
+    PerfectPresentationClient.Config parse(String json) {
+        var root = JsonParser.parseString(json).getAsJsonObject();
+        var settings = GSON.toJsonTree(defaults).getAsJsonObject();
+        apply(settings, root.getAsJsonObject("settings"), "settings");
+
+        var profileName = root.has("profile") ? root.get("profile").getAsString() : "";
+        if (!profileName.isEmpty()) {
+            var profiles = root.getAsJsonObject("profiles");
+            var profile = profiles != null && profiles.has(profileName)
+                    ? profiles.getAsJsonObject(profileName)
+                    : BUILT_IN_PROFILES.get(profileName);
+            if (profile == null) {
+                LOGGER.warn("Unknown profile '{}', using the plain settings", profileName);
+            }
+            apply(settings, profile, profileName);
+        }
+
+        var config = GSON.fromJson(settings, PerfectPresentationClient.Config.class);
+        // Gson turns unknown enum constants into null
+        if (config.frameRateLimiter() == null || config.tearing() == null) {
+            throw new JsonParseException("Unknown frame rate limiter or tearing mode");
+        }
+        validate(config);
+        return config;
+    }
+
+    private static void validate(PerfectPresentationClient.Config config) {
+        // written so that NaN fails every check
+        check(config.debugPieScale() > 0, "debugPieScale", config.debugPieScale());
+        check(config.metricsWindowMillis() > 0, "metricsWindowMillis", config.metricsWindowMillis());
+        check(config.frameTimingCsvIntervalMillis() >= 0, "frameTimingCsvIntervalMillis", config.frameTimingCsvIntervalMillis());
+        check(config.maxFrameLatency() == 0 || (config.maxFrameLatency() >= FrameLatencyController.MIN_FRAME_LATENCY
+                && config.maxFrameLatency() <= FrameLatencyController.MAX_FRAME_LATENCY), "maxFrameLatency", config.maxFrameLatency());
+        check(config.frameStartMarginMicros() >= 0, "frameStartMarginMicros", config.frameStartMarginMicros());
+        check(config.renderScale() > 0 && config.renderScale() <= 1, "renderScale", config.renderScale());
+        check(config.minRenderScale() > 0 && config.minRenderScale() <= 1, "minRenderScale", config.minRenderScale());
+        check(config.targetGpuFrameTimeMillis() >= 0 && config.targetGpuFrameTimeMillis() < 1000, "targetGpuFrameTimeMillis", config.targetGpuFrameTimeMillis());
+        check(config.sharpness() >= 0 && config.sharpness() <= 1, "sharpness", config.sharpness());
+        check(config.sharedTextureRingSize() >= 1 && config.sharedTextureRingSize() <= MAX_SHARED_TEXTURE_RING_SIZE, "sharedTextureRingSize", config.sharedTextureRingSize());
+        check(config.frameCaptureFrames() >= 0, "frameCaptureFrames", config.frameCaptureFrames());
+        check(config.frameCaptureDownscale() >= 1, "frameCaptureDownscale", config.frameCaptureDownscale());
+        check(config.swapChainBufferCount() == 0 || (config.swapChainBufferCount() >= 2
+                && config.swapChainBufferCount() <= MAX_SWAP_CHAIN_BUFFERS), "swapChainBufferCount", config.swapChainBufferCount());
+        check(config.adaptiveTearingThreshold() >= 0 && config.adaptiveTearingThreshold() <= 1, "adaptiveTearingThreshold", config.adaptiveTearingThreshold());
+        check(config.backgroundFrameRate() >= 0, "backgroundFrameRate", config.backgroundFrameRate());
+    }
+
+    private static void check(boolean valid, String setting, Object value) {
+        if (!valid) {
+            throw new JsonParseException("Setting '" + setting + "' is out of range: " + value);
+        }
+    }
+
+    private static void apply(JsonObject settings, @Nullable JsonObject overrides, String source) {
+        if (overrides == null) {
+            return;
+        }
+        for (Map.Entry<String, JsonElement> entry : overrides.entrySet()) {
+            if (settings.has(entry.getKey())) {
+                settings.add(entry.getKey(), entry.getValue());
+            } else {
+                LOGGER.warn("Ignoring unknown setting '{}' in {}", entry.getKey(), source);
+            }
+        }
+    }
+
+    private void writeDefaults() {
+        var root = new JsonObject();
+        root.addProperty("profile", "");
+        root.add("settings", GSON.toJsonTree(defaults));
+        var profiles = new JsonObject();
+        BUILT_IN_PROFILES.forEach(profiles::add);
+        root.add("profiles", profiles);
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(file, GSON.toJson(root));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write default config file {}", file, e);
+        }
+    }
+
+    /**
+     * Starts a daemon thread that calls {@code listener} with the new configuration every time the file is changed
+     * to something valid.
+     */
+    public void watch(Consumer<PerfectPresentationClient.Config> listener) {
+        WatchService watcher;
+        try {
+            watcher = file.getFileSystem().newWatchService();
+            file.toAbsolutePath().getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to watch config file {}, changes need a restart", file, e);
+            return;
+        }
+        var thread = new Thread(() -> run(watcher, listener), "Perfect Presentation Config Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run(WatchService watcher, Consumer<PerfectPresentationClient.Config> listener) {
+        var fileName = file.getFileName();
+        try {
+            while (true) {
+                var key = watcher.take();
+                Thread.sleep(RELOAD_DELAY_MILLIS);
+                var changed = false;
+                for (var event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+                }
+                if (!key.reset()) {
+                    LOGGER.warn("Config directory of {} is gone, no longer watching it", file);
+                    return;
+                }
+                var config = changed ? tryRead() : null;
+                if (config != null) {
+                    listener.accept(config);
+                }
+            }
+        } catch (InterruptedException ignored) { }
+    }
+}
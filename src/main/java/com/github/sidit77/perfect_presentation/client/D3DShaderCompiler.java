@@ -0,0 +1,55 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import windows.win32.graphics.direct3d.ID3DBlob;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.ValueLayout;
+
+import static com.github.sidit77.perfect_presentation.client.WinError.checkSuccessful;
+import static java.lang.foreign.MemorySegment.NULL;
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static windows.win32.graphics.direct3d.fxc.Apis.D3DCompile;
+
+/**
+ * {@link ShaderCompiler} backed by {@code D3DCompile} from {@code d3dcompiler_47.dll}.
+ */
+public class D3DShaderCompiler implements ShaderCompiler {
+
+    @Override
+    public String getIdentifier() {
+        return "d3dcompiler_47";
+    }
+
+    @Override
+    public byte[] compile(String source, String entryPoint, String target, int flags) {
+        try (var arena = Arena.ofConfined()) {
+            var sourceSegment = arena.allocateFrom(source, UTF_8);
+            var blobPtr = arena.allocate(ADDRESS);
+            var errorBlobPtr = arena.allocateFrom(ADDRESS, NULL);
+            var hr = D3DCompile(
+                    sourceSegment,
+                    sourceSegment.byteSize(),
+                    NULL, NULL, NULL,
+                    arena.allocateFrom(entryPoint, UTF_8),
+                    arena.allocateFrom(target, UTF_8),
+                    flags, 0,
+                    blobPtr, errorBlobPtr);
+            if(hr != 0 && !errorBlobPtr.get(ADDRESS, 0).equals(NULL)) {
+                var buffer = ID3DBlob.wrap(errorBlobPtr.get(ADDRESS, 0));
+                var content = toArray(buffer);
+                buffer.Release();
+                throw new RuntimeException("Failed to compile shader: " + new String(content, UTF_8));
+            }
+            checkSuccessful(hr);
+            var blob = ID3DBlob.wrap(blobPtr.get(ADDRESS, 0));
+            var bytecode = toArray(blob);
+            blob.Release();
+            return bytecode;
+        }
+    }
+
+    private static byte[] toArray(ID3DBlob blob) {
+        return blob.GetBufferPointer().reinterpret(blob.GetBufferSize()).toArray(ValueLayout.JAVA_BYTE);
+    }
+}
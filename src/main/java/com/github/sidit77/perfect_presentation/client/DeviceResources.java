@@ -0,0 +1,227 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import windows.win32.graphics.direct3d.D3D_DRIVER_TYPE;
+import windows.win32.graphics.direct3d11.*;
+import windows.win32.graphics.dxgi.IDXGIFactory2;
+import windows.win32.system.com.IUnknown;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static com.github.sidit77.perfect_presentation.client.ComObjects.makeResource;
+import static com.github.sidit77.perfect_presentation.client.WinError.checkSuccessful;
+import static java.lang.foreign.MemorySegment.NULL;
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static windows.win32.graphics.direct3d11.Apis.D3D11CreateDevice;
+import static windows.win32.graphics.direct3d11.Constants.D3D11_SDK_VERSION;
+import static windows.win32.graphics.direct3d11.D3D11_CREATE_DEVICE_FLAG.D3D11_CREATE_DEVICE_BGRA_SUPPORT;
+import static windows.win32.graphics.direct3d11.D3D11_CREATE_DEVICE_FLAG.D3D11_CREATE_DEVICE_DEBUG;
+import static windows.win32.graphics.dxgi.Apis.CreateDXGIFactory1;
+
+/**
+ * The Direct3D objects of an {@link InteropContext} that neither depend on the window nor on an OpenGL context.
+ * <p>
+ * Creating the device and the blit pipeline makes up most of the startup cost of the interop, so
+ * {@link #createAsync(boolean, ShaderCache)} does it on background threads while the game is still busy with other
+ * things. The Direct3D device is free threaded and the immediate context is only used by the thread that ends up
+ * owning these resources, so handing them over to the render thread afterwards is fine.
+ * </p>
+ */
+public class DeviceResources {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceResources.class);
+
+    final ID3D11Device device;
+    final ID3D11DeviceContext context;
+    final IDXGIFactory2 factory;
+    final ID3D11VertexShader vertexShader;
+    final ID3D11PixelShader pixelShader;
+    final ID3D11PixelShader sharpenPixelShader;
+    final ID3D11RasterizerState rasterizerState;
+    final ID3D11SamplerState pointSampler;
+    final ID3D11SamplerState linearSampler;
+    final ID3D11Buffer constantBuffer;
+
+    /**
+     * Creates the blit pipeline on {@code device}. Outside of tests this is done by {@link #createAsync}.
+     */
+    DeviceResources(ID3D11Device device, ID3D11DeviceContext context, IDXGIFactory2 factory, MemorySegment vertexShaderBytecode,
+                    MemorySegment pixelShaderBytecode, MemorySegment sharpenPixelShaderBytecode) {
+        this.device = device;
+        this.context = context;
+        this.factory = factory;
+        try (var arena = Arena.ofConfined()) {
+            var d = this.device;
+            vertexShader = makeResource(arena, ptr -> d.CreateVertexShader(vertexShaderBytecode, vertexShaderBytecode.byteSize(), NULL, ptr), ID3D11VertexShader::wrap);
+            pixelShader = makeResource(arena, ptr -> d.CreatePixelShader(pixelShaderBytecode, pixelShaderBytecode.byteSize(), NULL, ptr), ID3D11PixelShader::wrap);
+            sharpenPixelShader = makeResource(arena, ptr -> d.CreatePixelShader(sharpenPixelShaderBytecode, sharpenPixelShaderBytecode.byteSize(), NULL, ptr), ID3D11PixelShader::wrap);
+
+            var rasterizerStateDesc = D3D11_RASTERIZER_DESC.allocate(arena);
+            D3D11_RASTERIZER_DESC.FillMode(rasterizerStateDesc, D3D11_FILL_MODE.D3D11_FILL_SOLID);
+            D3D11_RASTERIZER_DESC.CullMode(rasterizerStateDesc, D3D11_CULL_MODE.D3D11_CULL_NONE);
+            rasterizerState = makeResource(arena, ptr -> d.CreateRasterizerState(rasterizerStateDesc, ptr), ID3D11RasterizerState::wrap);
+
+            var samplerStateDesc = D3D11_SAMPLER_DESC.allocate(arena);
+            D3D11_SAMPLER_DESC.Filter(samplerStateDesc, D3D11_FILTER.MIN_MAG_MIP_POINT);
+            D3D11_SAMPLER_DESC.AddressU(samplerStateDesc, D3D11_TEXTURE_ADDRESS_MODE.D3D11_TEXTURE_ADDRESS_CLAMP);
+            D3D11_SAMPLER_DESC.AddressV(samplerStateDesc, D3D11_TEXTURE_ADDRESS_MODE.D3D11_TEXTURE_ADDRESS_CLAMP);
+            D3D11_SAMPLER_DESC.AddressW(samplerStateDesc, D3D11_TEXTURE_ADDRESS_MODE.D3D11_TEXTURE_ADDRESS_CLAMP);
+            pointSampler = makeResource(arena, ptr -> d.CreateSamplerState(samplerStateDesc, ptr), ID3D11SamplerState::wrap);
+
+            D3D11_SAMPLER_DESC.Filter(samplerStateDesc, D3D11_FILTER.MIN_MAG_MIP_LINEAR);
+            linearSampler = makeResource(arena, ptr -> d.CreateSamplerState(samplerStateDesc, ptr), ID3D11SamplerState::wrap);
+
+            var constantBufferDesc = D3D11_BUFFER_DESC.allocate(arena);
+            D3D11_BUFFER_DESC.ByteWidth(constantBufferDesc, (int) InteropContext.BLIT_CONSTANTS_SIZE);
+            D3D11_BUFFER_DESC.Usage(constantBufferDesc, D3D11_USAGE.DEFAULT);
+            D3D11_BUFFER_DESC.BindFlags(constantBufferDesc, D3D11_BIND_FLAG.D3D11_BIND_CONSTANT_BUFFER);
+            constantBuffer = makeResource(arena, ptr -> d.CreateBuffer(constantBufferDesc, NULL, ptr), ID3D11Buffer::wrap);
+        }
+    }
+
+    /**
+     * Starts creating the device, the DXGI factory and the blit pipeline in parallel.
+     *
+     * @param debugLayer whether to enable the Direct3D debug layer
+     * @param shaderCache where the blit shaders are compiled or loaded from
+     */
+    public static CompletableFuture<DeviceResources> createAsync(boolean debugLayer, ShaderCache shaderCache) {
+        var start = System.nanoTime();
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofPlatform()
+                .name("Perfect Presentation Init ", 0)
+                .daemon()
+                .factory());
+        // the bytecode is read by the thread that creates the shaders, so it has to live in a shared arena
+        var shaderArena = Arena.ofShared();
+
+        var device = timedAsync("D3D11CreateDevice", () -> createDevice(debugLayer), executor);
+        var factory = timedAsync("CreateDXGIFactory1", DeviceResources::createFactory, executor);
+        var vertexShader = timedAsync("VsMain", () -> shaderCache.get(shaderArena, BLIT_SHADER_SOURCE, "VsMain", "vs_5_0", 0), executor);
+        var pixelShader = timedAsync("PsMain", () -> shaderCache.get(shaderArena, BLIT_SHADER_SOURCE, "PsMain", "ps_5_0", 0), executor);
+        var sharpenPixelShader = timedAsync("PsSharpen", () -> shaderCache.get(shaderArena, BLIT_SHADER_SOURCE, "PsSharpen", "ps_5_0", 0), executor);
+
+        var resources = CompletableFuture.allOf(device, factory, vertexShader, pixelShader, sharpenPixelShader)
+                .thenApplyAsync(ignored -> timed("pipeline state", () -> new DeviceResources(
+                        device.join().device(), device.join().context(), factory.join(),
+                        vertexShader.join(), pixelShader.join(), sharpenPixelShader.join())), executor);
+
+        return resources.whenComplete((result, error) -> {
+            shaderArena.close();
+            executor.shutdown();
+            if (error != null) {
+                // whatever did get created is of no use on its own
+                device.thenAccept(Device::release);
+                factory.thenAccept(IUnknown::Release);
+            } else {
+                LOGGER.info("Direct3D resources ready after {} ms", (System.nanoTime() - start) / 1_000_000);
+            }
+        });
+    }
+
+    private static <T> CompletableFuture<T> timedAsync(String phase, Supplier<T> supplier, ExecutorService executor) {
+        return CompletableFuture.supplyAsync(() -> timed(phase, supplier), executor);
+    }
+
+    static <T> T timed(String phase, Supplier<T> supplier) {
+        var start = System.nanoTime();
+        var result = supplier.get();
+        LOGGER.info("Startup phase {} took {} µs", phase, (System.nanoTime() - start) / 1000);
+        return result;
+    }
+
+    private static Device createDevice(boolean debugLayer) {
+        try (var arena = Arena.ofConfined()) {
+            var devicePtr = arena.allocate(ADDRESS);
+            var contextPtr = arena.allocate(ADDRESS);
+            var hr = D3D11CreateDevice(
+                    NULL,
+                    D3D_DRIVER_TYPE.HARDWARE,
+                    NULL,
+                    D3D11_CREATE_DEVICE_BGRA_SUPPORT | (debugLayer ? D3D11_CREATE_DEVICE_DEBUG : 0),
+                    NULL,
+                    0,
+                    D3D11_SDK_VERSION,
+                    devicePtr,
+                    NULL,
+                    contextPtr
+            );
+            checkSuccessful(hr);
+            return new Device(ID3D11Device.wrap(devicePtr.get(ADDRESS, 0)), ID3D11DeviceContext.wrap(contextPtr.get(ADDRESS, 0)));
+        }
+    }
+
+    private static IDXGIFactory2 createFactory() {
+        try (var arena = Arena.ofConfined()) {
+            return makeResource(arena, ptr -> CreateDXGIFactory1(IDXGIFactory2.iid(), ptr), IDXGIFactory2::wrap);
+        }
+    }
+
+    /**
+     * Releases the objects that are only needed while setting up the context.
+     */
+    void releaseSetupObjects() {
+        factory.Release();
+        vertexShader.Release();
+        rasterizerState.Release();
+    }
+
+    private record Device(ID3D11Device device, ID3D11DeviceContext context) {
+        void release() {
+            context.Release();
+            device.Release();
+        }
+    }
+
+    static final String BLIT_SHADER_SOURCE = """
+            struct VSOut
+            {
+                float4 pos : SV_Position;
+                float2 uv  : TEXCOORD0;
+            };
+            
+            VSOut VsMain(uint id : SV_VertexID)
+            {
+                VSOut o;
+                o.pos = float4(id >> 1, id & 1, 0, 0.5) * 4 - 1;
+                o.uv  = float2(id >> 1, id & 1) * 2;
+            
+                return o;
+            }
+            
+            Texture2D srcTex : register(t0);
+            SamplerState samp : register(s0);
+            
+            cbuffer BlitConstants : register(b0)
+            {
+                float sharpness;
+                float3 padding;
+            };
+            
+            float4 PsMain(VSOut i) : SV_Target
+            {
+                return srcTex.Sample(samp, i.uv);
+            }
+            
+            float4 PsSharpen(VSOut i) : SV_Target
+            {
+                float2 size;
+                srcTex.GetDimensions(size.x, size.y);
+                float2 texel = 1.0 / size;
+            
+                float4 center = srcTex.Sample(samp, i.uv);
+                float3 neighbours = srcTex.Sample(samp, i.uv + float2(texel.x, 0)).rgb
+                                  + srcTex.Sample(samp, i.uv - float2(texel.x, 0)).rgb
+                                  + srcTex.Sample(samp, i.uv + float2(0, texel.y)).rgb
+                                  + srcTex.Sample(samp, i.uv - float2(0, texel.y)).rgb;
+            
+                return float4(saturate(center.rgb + (center.rgb - neighbours * 0.25) * sharpness), center.a);
+            }
+            """;
+
+}
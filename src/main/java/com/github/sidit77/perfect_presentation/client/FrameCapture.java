@@ -0,0 +1,320 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Streams presented frames into a Y4M file for offline pacing analysis.
+ * <p>
+ * Both the video and the timestamp index are preallocated for {@code maxFrames} frames and memory-mapped, so
+ * writing a frame never touches the file system. The size of the capture is fixed by the first frame; frames of
+ * a different size are dropped. Converting to YUV 4:2:0 (and optionally shrinking by an integer factor) happens on
+ * a dedicated writer thread. The producer copies each frame into one of a few preallocated slots and drops the
+ * frame if none is free, it never waits for the writer.
+ * </p>
+ * <p>
+ * The index holds one little-endian record per written frame: the sequence number of the frame, counting dropped
+ * ones, followed by its timestamp in nanoseconds. Gaps in the sequence numbers are the dropped frames. Both files
+ * are truncated to the written frames on {@link #close()}.
+ * </p>
+ * <p>
+ * There is nothing Direct3D specific in here, the pixels arrive as plain {@link MemorySegment}s.
+ * </p>
+ */
+public class FrameCapture implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FrameCapture.class);
+
+    private static final byte[] FRAME_HEADER = "FRAME\n".getBytes(US_ASCII);
+    private static final int INDEX_RECORD_SIZE = 16;
+    private static final ValueLayout.OfLong INDEX_LAYOUT = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final Path file;
+    private final Path indexFile;
+    private final int maxFrames;
+    private final int downscale;
+    private final int nominalFrameRate;
+    private final BlockingQueue<Slot> freeSlots;
+    // one larger than the number of slots, so the end marker always fits
+    private final BlockingQueue<Slot> filledSlots;
+    private final Slot endOfCapture = new Slot(0);
+
+    // everything below is set up by the first frame
+    private boolean started = false;
+    private boolean failed = false;
+    private int sourceWidth;
+    private int sourceHeight;
+    private int width;
+    private int height;
+    private long frameSize;
+    private long headerSize;
+    private @Nullable FileChannel videoChannel;
+    private @Nullable FileChannel indexChannel;
+    private @Nullable Arena arena;
+    private MemorySegment video;
+    private MemorySegment index;
+    private @Nullable Thread writer;
+
+    private long sequence = 0;
+    private long accepted = 0;
+    private long dropped = 0;
+    private volatile long written = 0;
+
+    private static final class Slot {
+        private final byte[] rgba;
+        private long sequence;
+        private long timestamp;
+        private boolean bottomUp;
+
+        private Slot(int size) {
+            this.rgba = new byte[size];
+        }
+    }
+
+    /**
+     * @param downscale the captured frames are this many times smaller than the presented ones in each direction
+     * @param nominalFrameRate frame rate written to the Y4M header, the actual timing is in the index
+     * @param slots how many frames can wait for the writer before new ones are dropped
+     */
+    public FrameCapture(Path file, int maxFrames, int downscale, int nominalFrameRate, int slots) {
+        if (maxFrames <= 0 || downscale <= 0 || nominalFrameRate <= 0 || slots <= 0) {
+            throw new IllegalArgumentException("Invalid capture settings");
+        }
+        this.file = file;
+        this.indexFile = file.resolveSibling(file.getFileName() + ".timestamps");
+        this.maxFrames = maxFrames;
+        this.downscale = downscale;
+        this.nominalFrameRate = nominalFrameRate;
+        this.freeSlots = new ArrayBlockingQueue<>(slots);
+        this.filledSlots = new ArrayBlockingQueue<>(slots + 1);
+    }
+
+    /**
+     * @return whether {@link #offer} would currently accept a frame, so the caller can skip fetching the pixels
+     */
+    public boolean wantsFrame() {
+        return !failed && accepted < maxFrames && (!started || !freeSlots.isEmpty());
+    }
+
+    /**
+     * Records that a frame was presented but not offered, so it shows up as a gap in the index.
+     */
+    public void skipFrame() {
+        sequence++;
+        dropped++;
+    }
+
+    /**
+     * Copies a frame of tightly packed RGBA rows into a free slot and hands it to the writer thread.
+     *
+     * @param rowPitch distance between the starts of two rows in {@code pixels}
+     * @param bottomUp whether the first row in {@code pixels} is the bottom of the frame
+     * @return {@code false} if the frame was dropped
+     */
+    public boolean offer(long timestamp, int frameWidth, int frameHeight, MemorySegment pixels, long rowPitch, boolean bottomUp) {
+        var frameSequence = sequence++;
+        if (!started) {
+            start(frameWidth, frameHeight);
+        }
+        var slot = failed || accepted >= maxFrames || frameWidth != sourceWidth || frameHeight != sourceHeight ? null : freeSlots.poll();
+        if (slot == null) {
+            dropped++;
+            return false;
+        }
+
+        var rowSize = frameWidth * 4;
+        for (int row = 0; row < frameHeight; row++) {
+            MemorySegment.copy(pixels, ValueLayout.JAVA_BYTE, row * rowPitch, slot.rgba, row * rowSize, rowSize);
+        }
+        slot.sequence = frameSequence;
+        slot.timestamp = timestamp;
+        slot.bottomUp = bottomUp;
+        accepted++;
+        filledSlots.add(slot);
+        return true;
+    }
+
+    public long getWrittenFrames() {
+        return written;
+    }
+
+    public long getDroppedFrames() {
+        return dropped;
+    }
+
+    private void start(int frameWidth, int frameHeight) {
+        started = true;
+        sourceWidth = frameWidth;
+        sourceHeight = frameHeight;
+        // 4:2:0 needs an even size
+        width = (frameWidth / downscale) & ~1;
+        height = (frameHeight / downscale) & ~1;
+        if (width == 0 || height == 0) {
+            LOGGER.warn("Frames of {}x{} are too small to capture", frameWidth, frameHeight);
+            failed = true;
+            return;
+        }
+
+        var header = ("YUV4MPEG2 W" + width + " H" + height + " F" + nominalFrameRate + ":1 Ip A1:1 C420jpeg\n").getBytes(US_ASCII);
+        headerSize = header.length;
+        frameSize = FRAME_HEADER.length + (long) width * height + 2L * (width / 2) * (height / 2);
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            videoChannel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, READ, WRITE);
+            indexChannel = FileChannel.open(indexFile, CREATE, TRUNCATE_EXISTING, READ, WRITE);
+            arena = Arena.ofShared();
+            video = videoChannel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize + maxFrames * frameSize, arena);
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) maxFrames * INDEX_RECORD_SIZE, arena);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to create capture file {}", file, e);
+            failed = true;
+            closeFiles();
+            return;
+        }
+        MemorySegment.copy(header, 0, video, ValueLayout.JAVA_BYTE, 0, header.length);
+
+        for (int i = freeSlots.remainingCapacity(); i > 0; i--) {
+            freeSlots.add(new Slot(frameWidth * frameHeight * 4));
+        }
+        writer = new Thread(this::run, "Perfect Presentation Frame Capture");
+        writer.setDaemon(true);
+        writer.start();
+        LOGGER.info("Capturing up to {} frames of {}x{} to {}", maxFrames, width, height, file);
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                var slot = filledSlots.take();
+                if (slot == endOfCapture) {
+                    return;
+                }
+                writeFrame(slot, written);
+                written++;
+                freeSlots.add(slot);
+            }
+        } catch (InterruptedException ignored) { }
+    }
+
+    private void writeFrame(Slot slot, long frame) {
+        var base = headerSize + frame * frameSize;
+        MemorySegment.copy(FRAME_HEADER, 0, video, ValueLayout.JAVA_BYTE, base, FRAME_HEADER.length);
+        var lumaPlane = base + FRAME_HEADER.length;
+        var chromaWidth = width / 2;
+        var uPlane = lumaPlane + (long) width * height;
+        var vPlane = uPlane + (long) chromaWidth * (height / 2);
+
+        for (int cy = 0; cy < height / 2; cy++) {
+            for (int cx = 0; cx < chromaWidth; cx++) {
+                int r = 0, g = 0, b = 0;
+                for (int dy = 0; dy < 2; dy++) {
+                    for (int dx = 0; dx < 2; dx++) {
+                        var x = cx * 2 + dx;
+                        var y = cy * 2 + dy;
+                        var rgb = sample(slot, x, y);
+                        var pr = rgb >>> 16;
+                        var pg = (rgb >>> 8) & 0xFF;
+                        var pb = rgb & 0xFF;
+                        video.set(ValueLayout.JAVA_BYTE, lumaPlane + (long) y * width + x, (byte) luma(pr, pg, pb));
+                        r += pr;
+                        g += pg;
+                        b += pb;
+                    }
+                }
+                r >>>= 2;
+                g >>>= 2;
+                b >>>= 2;
+                var chroma = (long) cy * chromaWidth + cx;
+                video.set(ValueLayout.JAVA_BYTE, uPlane + chroma, (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128));
+                video.set(ValueLayout.JAVA_BYTE, vPlane + chroma, (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128));
+            }
+        }
+
+        index.set(INDEX_LAYOUT, frame * INDEX_RECORD_SIZE, slot.sequence);
+        index.set(INDEX_LAYOUT, frame * INDEX_RECORD_SIZE + 8, slot.timestamp);
+    }
+
+    /**
+     * @return the average of the {@code downscale}² source pixels behind one captured pixel as {@code 0xRRGGBB}
+     */
+    private int sample(Slot slot, int x, int y) {
+        int r = 0, g = 0, b = 0;
+        for (int sy = 0; sy < downscale; sy++) {
+            var row = y * downscale + sy;
+            if (slot.bottomUp) {
+                row = sourceHeight - 1 - row;
+            }
+            var i = (row * sourceWidth + x * downscale) * 4;
+            for (int sx = 0; sx < downscale; sx++, i += 4) {
+                r += slot.rgba[i] & 0xFF;
+                g += slot.rgba[i + 1] & 0xFF;
+                b += slot.rgba[i + 2] & 0xFF;
+            }
+        }
+        var count = downscale * downscale;
+        return (r / count) << 16 | (g / count) << 8 | (b / count);
+    }
+
+    // BT.601 with limited range, which is what players assume for Y4M
+    private static int luma(int r, int g, int b) {
+        return ((66 * r + 129 * g + 25 * b + 128) >> 8) + 16;
+    }
+
+    private void closeFiles() {
+        if (arena != null) {
+            arena.close();
+            arena = null;
+        }
+        try {
+            // the files can only be shrunk once they are no longer mapped
+            if (videoChannel != null) {
+                videoChannel.truncate(headerSize + written * frameSize);
+                videoChannel.close();
+            }
+            if (indexChannel != null) {
+                indexChannel.truncate(written * INDEX_RECORD_SIZE);
+                indexChannel.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to finish capture file {}", file, e);
+        }
+        videoChannel = null;
+        indexChannel = null;
+    }
+
+    /**
+     * Writes the frames that are still queued and closes the files.
+     */
+    @Override
+    public void close() {
+        if (writer != null) {
+            filledSlots.add(endOfCapture);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+        if (started && !failed) {
+            LOGGER.info("Captured {} frames to {}, dropped {}", written, file, dropped);
+        }
+        closeFiles();
+        failed = true;
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * Time source used by the frame loop.
+ * <p>
+ * Real backends use {@link #SYSTEM}, the headless backend drives a {@link VirtualClock} instead so that
+ * pacing logic can be run faster than real time.
+ * </p>
+ */
+public interface FrameClock {
+
+    FrameClock SYSTEM = new FrameClock() {
+        private final HybridWaiter waiter = new HybridWaiter();
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void waitUntil(long deadline) {
+            waiter.waitUntil(deadline);
+        }
+    };
+
+    /**
+     * @return the current time in nanoseconds, only meaningful relative to other values of the same clock
+     */
+    long nanoTime();
+
+    /**
+     * Blocks until {@link #nanoTime()} reaches {@code deadline}. Returns immediately if it already has.
+     */
+    void waitUntil(long deadline);
+
+}
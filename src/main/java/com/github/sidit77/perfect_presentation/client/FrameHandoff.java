@@ -0,0 +1,161 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Hands finished frames from the render thread to a presentation thread.
+ * <p>
+ * A lock-free single-producer single-consumer ring of preallocated items. The producer {@linkplain #claim() claims}
+ * the next free item, fills it in and {@linkplain #publish() publishes} it; the consumer {@linkplain #take() takes}
+ * it and {@linkplain #release() releases} it once it is completely done with it. Every item gets a sequence number,
+ * and {@link #awaitReleased(long)} lets the producer wait until a given item is done, which is how it knows that a
+ * shared texture is no longer read by the other thread and may be locked for OpenGL again.
+ * </p>
+ * <p>
+ * Waiting spins for a moment and then parks in short steps, so a lost wake-up costs at most one step. Nothing is
+ * allocated after construction and nothing here touches the GPU.
+ * </p>
+ */
+public class FrameHandoff<T> {
+
+    private static final int SPIN_COUNT = 1000;
+    private static final long PARK_NANOS = 100_000;
+
+    private final Object[] items;
+    private final int mask;
+
+    // sequence of the next item the producer claims, only touched by the producer
+    private long claimed = 0;
+    // sequence of the next item the consumer takes, only touched by the consumer
+    private long taken = 0;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+
+    private volatile Thread producer;
+    private volatile Thread consumer;
+    private volatile boolean closed = false;
+
+    /**
+     * @param capacity number of items that can be in flight, must be a power of two
+     */
+    public FrameHandoff(int capacity, Supplier<T> factory) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        items = new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            items[i] = factory.get();
+        }
+        mask = capacity - 1;
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+
+    /**
+     * Blocks until an item is free. The item belongs to the producer until it is published.
+     *
+     * @return the item, or {@code null} if the handoff was closed
+     */
+    @SuppressWarnings("unchecked")
+    public T claim() {
+        if (claimed != published.get()) {
+            throw new IllegalStateException("The last claimed item was not published yet");
+        }
+        if (!awaitReleased(claimed - items.length)) {
+            return null;
+        }
+        return (T) items[(int) claimed++ & mask];
+    }
+
+    /**
+     * @return the sequence number of the item returned by the last {@link #claim()}
+     */
+    public long getClaimedSequence() {
+        return claimed - 1;
+    }
+
+    /**
+     * Hands the claimed item to the consumer.
+     */
+    public void publish() {
+        if (claimed == published.get()) {
+            throw new IllegalStateException("No item was claimed");
+        }
+        published.set(claimed);
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Blocks until an item was published. The item belongs to the consumer until it is released.
+     *
+     * @return the item, or {@code null} if the handoff was closed and every published item was taken
+     */
+    @SuppressWarnings("unchecked")
+    public T take() {
+        consumer = Thread.currentThread();
+        for (int spins = 0; published.get() == taken; spins++) {
+            if (closed) {
+                // publishing happens before closing, so this is the final answer
+                if (published.get() == taken) {
+                    return null;
+                }
+                break;
+            }
+            idle(spins);
+        }
+        return (T) items[(int) taken++ & mask];
+    }
+
+    /**
+     * Gives the item returned by the last {@link #take()} back to the producer.
+     */
+    public void release() {
+        released.set(taken);
+        LockSupport.unpark(producer);
+    }
+
+    /**
+     * Blocks until the consumer released the item with the given sequence number. Negative sequences are done
+     * right away.
+     *
+     * @return {@code false} if the handoff was closed before that happened
+     */
+    public boolean awaitReleased(long sequence) {
+        producer = Thread.currentThread();
+        for (int spins = 0; released.get() <= sequence; spins++) {
+            if (closed) {
+                return false;
+            }
+            idle(spins);
+        }
+        return true;
+    }
+
+    /**
+     * Blocks until the consumer is done with every published item.
+     */
+    public boolean awaitIdle() {
+        return awaitReleased(published.get() - 1);
+    }
+
+    /**
+     * Wakes everyone up for good. The consumer still gets the items published so far, waiting producers give up.
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+        LockSupport.unpark(producer);
+    }
+
+    private static void idle(int spins) {
+        if (spins < SPIN_COUNT) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * Picks the maximum frame latency of the swap chain based on how well the game keeps up with the display.
+ * <p>
+ * Frames are evaluated in windows of a fixed number of frames. A window with too many missed deadlines raises
+ * the latency by one frame, trading latency for throughput. Lowering requires several consecutive calm windows
+ * in which the render thread also spent a meaningful part of each frame waiting on the swap chain, so a single
+ * good window after a stutter does not immediately bring the stutter back.
+ * </p>
+ * <p>
+ * The controller is pure bookkeeping and can be fed recorded or synthetic frame timings.
+ * </p>
+ */
+public class FrameLatencyController {
+
+    public static final int MIN_FRAME_LATENCY = 1;
+    public static final int MAX_FRAME_LATENCY = 3;
+
+    private final int windowFrames;
+    private final double raiseMissRatio;
+    private final double lowerMissRatio;
+    private final int calmWindowsToLower;
+
+    private int pinnedLatency = 0;
+    private int latency = MIN_FRAME_LATENCY;
+
+    private int frames = 0;
+    private int missedFrames = 0;
+    private long totalWait = 0;
+    private int calmWindows = 0;
+
+    public FrameLatencyController() {
+        this(120, 0.05, 0.01, 4);
+    }
+
+    /**
+     * @param windowFrames number of frames evaluated together
+     * @param raiseMissRatio fraction of missed frames in a window at which the latency is raised
+     * @param lowerMissRatio fraction of missed frames in a window below which the window counts as calm
+     * @param calmWindowsToLower number of consecutive calm windows before the latency is lowered
+     */
+    public FrameLatencyController(int windowFrames, double raiseMissRatio, double lowerMissRatio, int calmWindowsToLower) {
+        if (windowFrames <= 0 || calmWindowsToLower <= 0 || lowerMissRatio > raiseMissRatio) {
+            throw new IllegalArgumentException("Invalid controller parameters");
+        }
+        this.windowFrames = windowFrames;
+        this.raiseMissRatio = raiseMissRatio;
+        this.lowerMissRatio = lowerMissRatio;
+        this.calmWindowsToLower = calmWindowsToLower;
+    }
+
+    /**
+     * @param latency a fixed frame latency, or {@code 0} to let the controller decide
+     */
+    public void setPinnedLatency(int latency) {
+        if (latency != 0 && (latency < MIN_FRAME_LATENCY || latency > MAX_FRAME_LATENCY)) {
+            throw new IllegalArgumentException("Unsupported frame latency: " + latency);
+        }
+        this.pinnedLatency = latency;
+        if (latency != 0) {
+            this.latency = latency;
+        }
+        resetWindow();
+        calmWindows = 0;
+    }
+
+    public int getLatency() {
+        return latency;
+    }
+
+    /**
+     * Feeds a presented frame into the controller.
+     *
+     * @param presentInterval time since the previous present
+     * @param swapChainWait time the frame spent blocked on the swap chain
+     * @param targetInterval the interval the frame should have been presented at, usually the refresh period
+     * @return {@code true} if {@link #getLatency()} changed
+     */
+    public boolean onFrame(long presentInterval, long swapChainWait, long targetInterval) {
+        if (pinnedLatency != 0) {
+            return false;
+        }
+
+        frames++;
+        totalWait += swapChainWait;
+        if (presentInterval * 2 > targetInterval * 3) {
+            missedFrames++;
+        }
+        if (frames < windowFrames) {
+            return false;
+        }
+
+        var missRatio = (double) missedFrames / frames;
+        var averageWait = totalWait / frames;
+        resetWindow();
+
+        var previous = latency;
+        if (missRatio >= raiseMissRatio) {
+            calmWindows = 0;
+            latency = Math.min(latency + 1, MAX_FRAME_LATENCY);
+        } else if (missRatio <= lowerMissRatio && averageWait * 4 >= targetInterval) {
+            if (++calmWindows >= calmWindowsToLower) {
+                calmWindows = 0;
+                latency = Math.max(latency - 1, MIN_FRAME_LATENCY);
+            }
+        } else {
+            calmWindows = 0;
+        }
+        return latency != previous;
+    }
+
+    private void resetWindow() {
+        frames = 0;
+        missedFrames = 0;
+        totalWait = 0;
+    }
+}
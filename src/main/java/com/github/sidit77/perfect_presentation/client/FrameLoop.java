@@ -0,0 +1,407 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * The per-frame logic that sits between Minecraft's render loop and a {@link PresentationBackend}.
+ * <p>
+ * The mixins only forward the relevant points of {@code Minecraft.runTick} to this class, which keeps it free of
+ * game classes so it can be driven by a {@link HeadlessBackend} just as well.
+ * </p>
+ */
+public class FrameLoop {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // the largest sync interval DXGI accepts
+    private static final int MAX_SYNC_INTERVAL = 4;
+
+    private final PresentationBackend backend;
+    private final FrameClock clock;
+    private final FrameTimingRecorder timings;
+    private final FrameLatencyController latencyController = new FrameLatencyController();
+    private final FrameStartScheduler frameStartScheduler = new FrameStartScheduler(1_000_000);
+    private final FrameRateLimiter frameRateLimiter;
+    private final RenderScaleGovernor renderScale = new RenderScaleGovernor();
+    private final FrameStatisticsTracker frameStatistics;
+    private final InputLatencyTracker input;
+    private final FrameStatisticsTracker.Sample frameStatisticsSample = new FrameStatisticsTracker.Sample();
+    private final IdleGovernor idle = new IdleGovernor();
+    private final AdaptiveTearingPolicy tearingPolicy = new AdaptiveTearingPolicy();
+
+    private int refreshRate = 60;
+    private long refreshPeriod = NANOS_PER_SECOND / 60;
+    private FrameRateLimiter.Mode frameRateLimiterMode = FrameRateLimiter.Mode.VANILLA;
+    private boolean frameStartScheduling = false;
+    private boolean waitedThisFrame = false;
+    private long frameStart = Long.MIN_VALUE;
+    private long frameSwapChainWait = 0;
+    private long lastPresentStart = Long.MIN_VALUE;
+    private long gpuFrameTime = 0;
+    private boolean resizePending = false;
+    private int pendingWidth;
+    private int pendingHeight;
+    private int syncInterval;
+    private TearingMode tearingMode = TearingMode.UNSYNCED;
+    private boolean contentStatic = false;
+    private long frameBeginTime = Long.MIN_VALUE;
+    private long idleWakeUp = Long.MIN_VALUE;
+    // a frame that waited for the swap chain but presented nothing leaves the signal to the next one
+    private boolean swapChainSignalHeld = false;
+
+    public FrameLoop(PresentationBackend backend, FrameTimingRecorder timings) {
+        this.backend = backend;
+        this.clock = backend.clock();
+        this.timings = timings;
+        this.frameRateLimiter = new FrameRateLimiter(clock);
+        this.frameStatistics = new FrameStatisticsTracker(new FrameStatisticsTracker.Listener() {
+            @Override
+            public void onFrameDisplayed(long frame, long presentTime, long displayTime) {
+                timings.recordDisplayLatency(frame, displayTime - presentTime);
+                input.onFrameDisplayed(frame, displayTime);
+                var event = new PresentationEvents.FrameDisplayed();
+                if (event.shouldCommit()) {
+                    event.frame = frame;
+                    event.latency = displayTime - presentTime;
+                    event.commit();
+                }
+            }
+
+            @Override
+            public void onFrameDropped(long frame) {
+                timings.recordDroppedFrame(frame);
+            }
+
+            @Override
+            public void onGlitch(int repeatedRefreshes, int droppedFrames) {
+                timings.recordGlitch(repeatedRefreshes, droppedFrames);
+                var event = new PresentationEvents.DisplayGlitch();
+                if (event.shouldCommit()) {
+                    event.repeatedRefreshes = repeatedRefreshes;
+                    event.droppedFrames = droppedFrames;
+                    event.commit();
+                }
+            }
+        });
+        this.input = new InputLatencyTracker(new InputLatencyTracker.Listener() {
+            @Override
+            public void onEventPresented(InputLatencyTracker.Kind kind, long frame, long latency) {
+                timings.recordInputLatency(latency);
+                var event = new PresentationEvents.InputLatency();
+                if (event.shouldCommit()) {
+                    event.kind = kind.name();
+                    event.frame = frame;
+                    event.latency = latency;
+                    event.commit();
+                }
+            }
+
+            @Override
+            public void onEventDisplayed(InputLatencyTracker.Kind kind, long frame, long latency) {
+                timings.recordInputDisplayLatency(latency);
+            }
+        });
+        backend.setMaximumFrameLatency(latencyController.getLatency());
+        this.syncInterval = backend.getSyncInterval();
+    }
+
+    public PresentationBackend getBackend() {
+        return backend;
+    }
+
+    public RenderScaleGovernor getRenderScale() {
+        return renderScale;
+    }
+
+    /**
+     * @return whether anything uses the GPU frame time, if not there is no need to measure it
+     */
+    public boolean isGpuFrameTimeNeeded() {
+        return renderScale.isDynamic() || frameStartScheduling;
+    }
+
+    /**
+     * Reports the GPU time of a recently finished frame, as measured by a {@link GpuFrameTimer}.
+     *
+     * @return {@code true} if the render scale changed
+     */
+    public boolean onGpuFrameTime(long gpuFrameTime) {
+        this.gpuFrameTime = gpuFrameTime;
+        return renderScale.onGpuFrameTime(gpuFrameTime);
+    }
+
+    /**
+     * Sets the sync interval the game asked for. While the window is in the background it may be raised, so the
+     * swap chain paces the background frame rate.
+     */
+    public void setSyncInterval(int syncInterval) {
+        this.syncInterval = Math.max(syncInterval, 0);
+        applySyncInterval();
+    }
+
+    private void applySyncInterval() {
+        var interval = syncInterval;
+        var limit = idle.getFrameRateLimit();
+        if (interval > 0 && limit > 0) {
+            interval = Math.max(interval, Math.min(refreshRate / limit, MAX_SYNC_INTERVAL));
+        }
+        if (interval != backend.getSyncInterval()) {
+            backend.setSyncInterval(interval);
+        }
+    }
+
+    /**
+     * @param threshold for {@link TearingMode#ADAPTIVE}, how far into a refresh period a late frame may still tear
+     */
+    public void setTearingMode(TearingMode tearingMode, double threshold) {
+        this.tearingMode = tearingMode;
+        tearingPolicy.setThreshold(threshold);
+        // the backend only has to know that presents without vsync may tear, which ones do is decided here
+        backend.setTearingMode(tearingMode == TearingMode.ADAPTIVE ? TearingMode.UNSYNCED : tearingMode);
+    }
+
+    /**
+     * @param skipUnchangedFrames whether frames of static content may be skipped instead of presented
+     * @param backgroundFrameRate frame rate while idle or unfocused, {@code 0} to not limit it
+     * @see IdleGovernor
+     */
+    public void setIdleBehavior(boolean skipUnchangedFrames, int backgroundFrameRate) {
+        idle.configure(skipUnchangedFrames, backgroundFrameRate);
+        markActivity();
+    }
+
+    /**
+     * @param contentStatic whether the next frame looks exactly like the last one unless there is input, for example
+     *                      because the game is paused
+     */
+    public void setContentStatic(boolean contentStatic) {
+        this.contentStatic = contentStatic;
+    }
+
+    /**
+     * Called for every input event as soon as GLFW reports it. Ends idling right away.
+     */
+    public void onInput(InputLatencyTracker.Kind kind) {
+        var now = clock.nanoTime();
+        input.onEvent(kind, now);
+        idle.onActivity(now);
+        idleWakeUp = Long.MIN_VALUE;
+    }
+
+    /**
+     * Called right before the game reads the input of a new frame, after the last events were polled.
+     */
+    public void consumeInput() {
+        input.onFrameStart();
+    }
+
+    private void markActivity() {
+        idle.onActivity(clock.nanoTime());
+        idleWakeUp = Long.MIN_VALUE;
+    }
+
+    public void setFocused(boolean focused) {
+        idle.setFocused(focused, clock.nanoTime());
+        idleWakeUp = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return until when the render loop should sleep before the next frame, waking up early for input, or
+     * {@code Long.MIN_VALUE} to go on right away
+     */
+    public long getIdleWakeUpTime() {
+        return idleWakeUp;
+    }
+
+    public void setRefreshRate(int refreshRate) {
+        if (refreshRate > 0) {
+            this.refreshRate = refreshRate;
+            this.refreshPeriod = NANOS_PER_SECOND / refreshRate;
+        }
+    }
+
+    public void setFrameRateLimiterMode(FrameRateLimiter.Mode mode) {
+        this.frameRateLimiterMode = mode;
+    }
+
+    public FrameRateLimiter.Mode getFrameRateLimiterMode() {
+        return frameRateLimiterMode;
+    }
+
+    /**
+     * @param frameRateLimit the limit requested by the game
+     * @return the limit that should actually be applied
+     */
+    public int adjustFrameRateLimit(int frameRateLimit) {
+        if (frameRateLimiterMode == FrameRateLimiter.Mode.AUTO) {
+            return Math.min(frameRateLimit, FrameRateLimiter.getAutoFrameRate(refreshRate));
+        }
+        return frameRateLimit;
+    }
+
+    /**
+     * Blocks until the next frame is due. Only call this if the limiter mode is not {@link FrameRateLimiter.Mode#VANILLA}.
+     */
+    public void limitFrameRate(int frameRate) {
+        frameRateLimiter.waitForNextFrame(frameRate);
+    }
+
+    public long getRefreshPeriod() {
+        return refreshPeriod;
+    }
+
+    /**
+     * @param latency a fixed maximum frame latency, or {@code 0} to adapt it automatically
+     */
+    public void setPinnedFrameLatency(int latency) {
+        latencyController.setPinnedLatency(latency);
+        backend.setMaximumFrameLatency(latencyController.getLatency());
+    }
+
+    /**
+     * @param enabled whether {@link #beginFrame()} should hold back the frame start to just before its deadline
+     * @param margin time reserved on top of the predicted frame cost
+     */
+    public void setFrameStartScheduling(boolean enabled, long margin) {
+        if (enabled != frameStartScheduling) {
+            frameStartScheduler.reset();
+            gpuFrameTime = 0;
+        }
+        this.frameStartScheduling = enabled;
+        this.frameStartScheduler.setMargin(margin);
+    }
+
+    /**
+     * Called before the game polls input for a new frame.
+     * <p>
+     * With frame start scheduling enabled this waits for the swap chain and then until the latest point at which
+     * the frame is still predicted to make its present deadline.
+     * </p>
+     *
+     * @return {@code true} if the frame start was delayed and input should be polled again
+     */
+    public boolean beginFrame() {
+        frameBeginTime = clock.nanoTime();
+        idle.beginFrame(frameBeginTime, contentStatic);
+        applySyncInterval();
+        if (!frameStartScheduling || idle.getAction() != IdleGovernor.Action.PRESENT) {
+            return false;
+        }
+        waitForSwapChain();
+        var now = clock.nanoTime();
+        // the waitable object signals when the previous frame was picked up, which happens on a vblank
+        var deadline = now + refreshPeriod * Math.max(backend.getSyncInterval(), 1);
+        var start = backend.getSyncInterval() == 0 ? now : frameStartScheduler.getFrameStart(now, deadline);
+        if (start > now) {
+            clock.waitUntil(start);
+            frameStart = clock.nanoTime();
+            return true;
+        }
+        frameStart = now;
+        return false;
+    }
+
+    public void waitForSwapChain() {
+        if (waitedThisFrame) {
+            return;
+        }
+        var start = clock.nanoTime();
+        if (!swapChainSignalHeld) {
+            backend.waitForSwapChainSignal();
+        }
+        var end = clock.nanoTime();
+        var duration = end - start;
+        frameSwapChainWait += duration;
+        timings.recordSwapChainWait(duration);
+        waitedThisFrame = true;
+        frameStart = end;
+    }
+
+    /**
+     * Requests a new swap chain size. Resizes are coalesced and applied right before the next blit, so dragging the
+     * window edge costs at most one resize per presented frame.
+     */
+    public void resizeSwapChain(int width, int height) {
+        resizePending = true;
+        pendingWidth = width;
+        pendingHeight = height;
+        markActivity();
+    }
+
+    public void blit(int glTextureIdentifier) {
+        if (idle.getAction() != IdleGovernor.Action.PRESENT) {
+            // the shared texture stays with OpenGL and the next frame simply renders into it again
+            return;
+        }
+        var start = clock.nanoTime();
+        if (resizePending) {
+            resizePending = false;
+            backend.resizeSwapChain(pendingWidth, pendingHeight);
+        }
+        backend.blitSharedTextureToSwapChain(glTextureIdentifier);
+        timings.recordBlit(clock.nanoTime() - start);
+    }
+
+    /**
+     * @return {@code false} if the frame was skipped because it would not have changed anything on screen
+     */
+    public boolean present() {
+        var action = idle.getAction();
+        if (action != IdleGovernor.Action.PRESENT) {
+            if (action == IdleGovernor.Action.TEST_OCCLUSION) {
+                idle.onOcclusionTested(clock.nanoTime(), backend.testOcclusion());
+            }
+            swapChainSignalHeld |= waitedThisFrame;
+            waitedThisFrame = false;
+            frameStart = Long.MIN_VALUE;
+            frameSwapChainWait = 0;
+            // the pause says nothing about whether frames make their deadline
+            lastPresentStart = Long.MIN_VALUE;
+            idleWakeUp = idle.getWakeUpTime(frameBeginTime, refreshPeriod);
+            return false;
+        }
+
+        var start = clock.nanoTime();
+        var interval = backend.getSyncInterval();
+        var adaptive = tearingMode == TearingMode.ADAPTIVE && interval == 1;
+        var tear = adaptive && tearingPolicy.shouldTear(start, refreshPeriod);
+        input.onPresent(timings.getFrameCount(), start);
+        if (tear) {
+            backend.setSyncInterval(0);
+        }
+        backend.swapChainPresent();
+        var end = clock.nanoTime();
+        timings.recordPresent(start, end, backend.getSyncInterval());
+        if (tear) {
+            backend.setSyncInterval(interval);
+        }
+        tearingPolicy.onPresented(end - start, adaptive);
+
+        backend.getFrameStatistics(frameStatisticsSample);
+        frameStatistics.onPresent(timings.getFrameCount() - 1, frameStatisticsSample.presentId, start);
+        frameStatistics.onStatistics(frameStatisticsSample, interval, refreshPeriod);
+        if (frameStatisticsSample.available) {
+            tearingPolicy.onVblank(frameStatisticsSample.syncTime);
+        }
+
+        if (frameStartScheduling && frameStart != Long.MIN_VALUE) {
+            // a GPU-bound frame is only done once the GPU is, even if the CPU finished long before
+            frameStartScheduler.onFrameCompleted(Math.max(end - frameStart, gpuFrameTime));
+        }
+        waitedThisFrame = false;
+        frameStart = Long.MIN_VALUE;
+
+        if (lastPresentStart != Long.MIN_VALUE) {
+            var targetInterval = refreshPeriod * Math.max(backend.getSyncInterval(), 1);
+            if (latencyController.onFrame(start - lastPresentStart, frameSwapChainWait, targetInterval)) {
+                backend.setMaximumFrameLatency(latencyController.getLatency());
+            }
+        }
+        lastPresentStart = start;
+        frameSwapChainWait = 0;
+
+        var occluded = backend.isOccluded();
+        // an occluded present may not show up on the waitable object, so do not wait for it
+        swapChainSignalHeld = occluded;
+        idle.onPresented(end, occluded, contentStatic);
+        idleWakeUp = idle.getWakeUpTime(frameBeginTime, refreshPeriod);
+        return true;
+    }
+}
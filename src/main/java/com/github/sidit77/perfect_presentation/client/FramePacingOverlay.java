@@ -0,0 +1,142 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import com.github.sidit77.perfect_presentation.api.FrameMetrics;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphics;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Scrolling graph of the most recent frames for the debug screen, one pixel column per frame.
+ * <p>
+ * Each column stacks the time the frame spent waiting on the swap chain, rendering (whatever is left of the
+ * present interval), blitting and presenting. Guide lines mark whole refresh intervals, so a frame that took one
+ * refresh too long is easy to spot.
+ * </p>
+ * <p>
+ * The frames are read from the ring of the {@link FrameTimingRecorder} into a single reused record and the numbers
+ * above the graph are only formatted again when the recorder finishes a window, so drawing does not allocate.
+ * </p>
+ */
+public class FramePacingOverlay {
+
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 60;
+    // how many refresh intervals fit into the height of the graph, longer frames are cut off
+    private static final int REFRESH_INTERVALS = 3;
+
+    private static final int BACKGROUND_COLOR = 0x90505050;
+    private static final int GUIDE_COLOR = 0xC0FFFFFF;
+    private static final int TEXT_COLOR = 0xFFE0E0E0;
+    private static final String[] LEGEND = { "wait", "render", "blit", "present" };
+    private static final int[] COLORS = { 0xFF4C7BD9, 0xFF4CC35A, 0xFFE0C23A, 0xFFE0643A };
+
+    private final FrameTimingRecorder recorder;
+    private final FrameTimingRecorder.FrameRecord record = new FrameTimingRecorder.FrameRecord();
+    private final long[] stages = new long[LEGEND.length];
+    private final int[] legendOffsets = new int[LEGEND.length];
+    private final Runnable drawCall = this::draw;
+
+    private long formattedWindow = -1;
+    private String statistics = "";
+    private boolean legendMeasured = false;
+
+    // only valid during render
+    private GuiGraphics graphics;
+    private Font font;
+    private int right;
+    private int bottom;
+    private long refreshPeriod;
+
+    public FramePacingOverlay(FrameTimingRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Draws the graph with its bottom right corner at the given position.
+     */
+    public void render(GuiGraphics graphics, Font font, int right, int bottom, long refreshPeriod) {
+        this.graphics = graphics;
+        this.font = font;
+        this.right = right;
+        this.bottom = bottom;
+        this.refreshPeriod = refreshPeriod;
+        // batches all the quads into a single draw
+        graphics.drawManaged(drawCall);
+        this.graphics = null;
+        this.font = null;
+    }
+
+    private void draw() {
+        var left = right - WIDTH;
+        var top = bottom - HEIGHT;
+        graphics.fill(left, top, right, bottom, BACKGROUND_COLOR);
+
+        var scale = (double) HEIGHT / (REFRESH_INTERVALS * refreshPeriod);
+        var count = recorder.getFrameCount();
+        for (int i = 0; i < WIDTH && i < count; i++) {
+            if (!recorder.readFrame(count - 1 - i, record)) {
+                break;
+            }
+            if (record.presentInterval <= 0) {
+                continue;
+            }
+            stages[0] = record.swapChainWait;
+            stages[1] = Math.max(record.presentInterval - record.swapChainWait - record.blit - record.present, 0);
+            stages[2] = record.blit;
+            stages[3] = record.present;
+
+            var x = right - 1 - i;
+            var y = bottom;
+            for (int stage = 0; stage < stages.length && y > top; stage++) {
+                var segmentTop = Math.max(y - (int) Math.round(stages[stage] * scale), top);
+                if (segmentTop < y) {
+                    graphics.fill(x, segmentTop, x + 1, y, COLORS[stage]);
+                    y = segmentTop;
+                }
+            }
+        }
+
+        for (int interval = 1; interval < REFRESH_INTERVALS; interval++) {
+            var y = bottom - (int) Math.round(interval * refreshPeriod * scale);
+            graphics.fill(left, y, right, y + 1, GUIDE_COLOR);
+        }
+
+        drawLegend(left, top - font.lineHeight - 1);
+        graphics.drawString(font, getStatistics(), left, top - 2 * (font.lineHeight + 1), TEXT_COLOR);
+    }
+
+    private void drawLegend(int left, int y) {
+        if (!legendMeasured) {
+            var offset = 0;
+            for (int i = 0; i < LEGEND.length; i++) {
+                legendOffsets[i] = offset;
+                offset += font.lineHeight + font.width(LEGEND[i]) + 6;
+            }
+            legendMeasured = true;
+        }
+        for (int i = 0; i < LEGEND.length; i++) {
+            var x = left + legendOffsets[i];
+            graphics.fill(x, y, x + font.lineHeight - 2, y + font.lineHeight - 2, COLORS[i]);
+            graphics.drawString(font, LEGEND[i], x + font.lineHeight, y, TEXT_COLOR);
+        }
+    }
+
+    private String getStatistics() {
+        var window = recorder.getWindowCount();
+        if (window != formattedWindow) {
+            formattedWindow = window;
+            var snapshot = recorder.getSnapshot(FrameMetrics.Stage.PRESENT_INTERVAL);
+            var input = recorder.getSnapshot(FrameMetrics.Stage.INPUT_TO_PRESENT);
+            statistics = snapshot.count() == 0 ? "" : String.format(Locale.ROOT, "p99 %.1f ms  1%% low %.0f fps  repeated %d",
+                    snapshot.p99() / 1e6,
+                    1e9 / Math.max(snapshot.p99(), 1),
+                    recorder.getRepeatedRefreshCount());
+            if (input.count() > 0) {
+                statistics += String.format(Locale.ROOT, "  input p99 %.1f ms", input.p99() / 1e6);
+            }
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * Limits the frame rate by planning frame starts on a fixed cadence.
+ * <p>
+ * Unlike vanilla's limiter, which waits for {@code 1 / fps} after the end of the previous wait, the next target is
+ * always derived from the previous target. Wake-up jitter therefore does not accumulate into the interval. If the
+ * game falls behind by more than a whole interval the cadence is restarted instead of trying to catch up.
+ * </p>
+ */
+public class FrameRateLimiter {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final FrameClock clock;
+    private long nextFrameStart = Long.MIN_VALUE;
+    private int frameRate = 0;
+
+    public FrameRateLimiter(FrameClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return the cap used in {@link Mode#AUTO}: a few frames below the refresh rate to stay inside the VRR range
+     */
+    public static int getAutoFrameRate(int refreshRate) {
+        return refreshRate - Math.max(3, refreshRate / 50);
+    }
+
+    /**
+     * Blocks until the next frame is due.
+     *
+     * @param frameRate the frame rate to limit to
+     */
+    public void waitForNextFrame(int frameRate) {
+        if (frameRate <= 0) {
+            return;
+        }
+        var interval = NANOS_PER_SECOND / frameRate;
+        var now = clock.nanoTime();
+        if (frameRate != this.frameRate || nextFrameStart == Long.MIN_VALUE || now - nextFrameStart > interval) {
+            this.frameRate = frameRate;
+            nextFrameStart = now + interval;
+            return;
+        }
+        clock.waitUntil(nextFrameStart);
+        nextFrameStart += interval;
+    }
+
+    public enum Mode {
+        /** Use Minecraft's own limiter */
+        VANILLA,
+        /** Replace Minecraft's limiter with {@link FrameRateLimiter} */
+        PRECISE,
+        /** Like {@link #PRECISE}, but never exceed {@link #getAutoFrameRate(int)} */
+        AUTO
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * Decides how long to hold back the start of a frame so that it finishes just in time for its present deadline.
+ * <p>
+ * The cost of a frame is predicted with an exponentially weighted moving average plus a multiple of the
+ * exponentially weighted mean deviation, the same estimator TCP uses for retransmission timeouts. Starting the
+ * frame at {@code deadline - predictedCost - margin} means input is sampled as late as possible while a frame
+ * that is slightly more expensive than average still makes it.
+ * </p>
+ */
+public class FrameStartScheduler {
+
+    private static final double MEAN_WEIGHT = 0.125;
+    private static final double DEVIATION_WEIGHT = 0.25;
+    private static final int DEVIATION_FACTOR = 2;
+
+    private long margin;
+    private double meanCost = -1;
+    private double meanDeviation = 0;
+
+    /**
+     * @param margin extra time reserved on top of the predicted frame cost
+     */
+    public FrameStartScheduler(long margin) {
+        this.margin = margin;
+    }
+
+    public void setMargin(long margin) {
+        this.margin = margin;
+    }
+
+    /**
+     * @return the predicted cost of the next frame, or {@code -1} if no frame has been observed yet
+     */
+    public long getPredictedCost() {
+        if (meanCost < 0) {
+            return -1;
+        }
+        return (long) (meanCost + DEVIATION_FACTOR * meanDeviation);
+    }
+
+    /**
+     * @param now the current time
+     * @param deadline the time the frame has to be presented by
+     * @return the time the frame should start, never earlier than {@code now}
+     */
+    public long getFrameStart(long now, long deadline) {
+        var predictedCost = getPredictedCost();
+        if (predictedCost < 0) {
+            return now;
+        }
+        return Math.max(now, deadline - predictedCost - margin);
+    }
+
+    /**
+     * @param cost the time between the start of a frame and the end of its present, or its GPU time if that is longer
+     */
+    public void onFrameCompleted(long cost) {
+        if (meanCost < 0) {
+            meanCost = cost;
+            meanDeviation = cost / 2.0;
+            return;
+        }
+        meanDeviation += DEVIATION_WEIGHT * (Math.abs(cost - meanCost) - meanDeviation);
+        meanCost += MEAN_WEIGHT * (cost - meanCost);
+    }
+
+    public void reset() {
+        meanCost = -1;
+        meanDeviation = 0;
+    }
+}
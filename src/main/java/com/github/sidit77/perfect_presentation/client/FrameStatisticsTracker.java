@@ -0,0 +1,175 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * Matches the presents of the render thread with DXGI frame statistics to find out when each frame actually
+ * reached the screen.
+ * <p>
+ * DXGI reports the ID of the most recently displayed present, the vblank it was first shown on and the time of the
+ * most recent vblank. Comparing two consecutive reports tells how many new frames were shown over how many
+ * vblanks: more vblanks than expected means the previous frame was repeated, fewer means presents were replaced
+ * before they were ever shown. Without any such glitch every present in between was shown exactly
+ * {@code syncInterval} vblanks after its predecessor, so all of them can be given a display time.
+ * </p>
+ * <p>
+ * All counters are 32-bit unsigned values that wrap around, which is why they are only ever compared through their
+ * difference. A statistics sample that is not {@link Sample#available available} (the window is occluded or the
+ * statistics are disjoint after a mode change) or that goes backwards discards everything, the next sample starts
+ * over.
+ * </p>
+ * <p>
+ * Never allocates after construction. Not thread-safe.
+ * </p>
+ */
+public class FrameStatisticsTracker {
+
+    public interface Listener {
+        /**
+         * @param presentTime the time passed to {@link #onPresent}
+         * @param displayTime the time of the vblank the frame was first shown on
+         */
+        void onFrameDisplayed(long frame, long presentTime, long displayTime);
+
+        /**
+         * @param repeatedRefreshes vblanks on which the previous frame was shown again because no new one was ready
+         * @param droppedFrames presents that were replaced before they were ever shown
+         */
+        void onGlitch(int repeatedRefreshes, int droppedFrames);
+
+        /**
+         * Called for presents that are known to have been replaced before they were ever shown. When only some of
+         * the presents between two samples were dropped there is no telling which, so not every dropped frame is
+         * reported here.
+         */
+        void onFrameDropped(long frame);
+    }
+
+    /**
+     * Mutable holder for the statistics queried right after a present, meant to be reused.
+     */
+    public static final class Sample {
+        /** ID of the present that was just made */
+        public int presentId;
+        /** {@code false} if the statistics can not be trusted for this frame */
+        public boolean available;
+        /** ID of the most recently displayed present */
+        public int presentCount;
+        /** vblank on which that present was first shown */
+        public int presentRefreshCount;
+        /** the most recent vblank */
+        public int syncRefreshCount;
+        /** time of {@link #syncRefreshCount}, on the same clock as the present times */
+        public long syncTime;
+    }
+
+    // must be a power of two
+    private static final int PENDING_CAPACITY = 64;
+    private static final int PENDING_MASK = PENDING_CAPACITY - 1;
+
+    private final Listener listener;
+
+    private final int[] pendingIds = new int[PENDING_CAPACITY];
+    private final long[] pendingFrames = new long[PENDING_CAPACITY];
+    private final long[] pendingTimes = new long[PENDING_CAPACITY];
+    private int pendingHead = 0;
+    private int pendingSize = 0;
+
+    private boolean hasBaseline = false;
+    private int basePresentCount;
+    private int basePresentRefreshCount;
+
+    public FrameStatisticsTracker(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Registers a present that may show up in a later statistics sample.
+     */
+    public void onPresent(long frame, int presentId, long presentTime) {
+        if (pendingSize == PENDING_CAPACITY) {
+            // statistics have not moved for a long time, the oldest present will never be matched
+            pendingHead = (pendingHead + 1) & PENDING_MASK;
+            pendingSize--;
+        }
+        var index = (pendingHead + pendingSize) & PENDING_MASK;
+        pendingIds[index] = presentId;
+        pendingFrames[index] = frame;
+        pendingTimes[index] = presentTime;
+        pendingSize++;
+    }
+
+    /**
+     * @param syncInterval the sync interval the presents were made with, glitches are not counted for {@code 0}
+     * @param refreshPeriod the length of a vblank interval
+     */
+    public void onStatistics(Sample sample, int syncInterval, long refreshPeriod) {
+        if (!sample.available) {
+            reset();
+            return;
+        }
+
+        // differences of the raw counters stay correct when they wrap around
+        var presents = hasBaseline ? sample.presentCount - basePresentCount : 0;
+        var refreshes = hasBaseline ? sample.presentRefreshCount - basePresentRefreshCount : 0;
+        if (presents < 0 || refreshes < 0 || sample.syncRefreshCount - sample.presentRefreshCount < 0) {
+            reset();
+            return;
+        }
+        if (hasBaseline && presents == 0) {
+            // no new frame reached the screen since the last sample
+            return;
+        }
+
+        var evenlySpaced = false;
+        // only the newest present made it to the screen, everything in between was replaced
+        var onlyNewestShown = false;
+        if (hasBaseline && syncInterval > 0) {
+            var expectedRefreshes = (long) presents * syncInterval;
+            var repeated = (int) Math.max(refreshes - expectedRefreshes, 0);
+            var dropped = refreshes < expectedRefreshes ? presents - refreshes / syncInterval : 0;
+            if (repeated > 0 || dropped > 0) {
+                listener.onGlitch(repeated, dropped);
+            }
+            evenlySpaced = repeated == 0 && dropped == 0;
+            onlyNewestShown = refreshes <= syncInterval;
+        }
+
+        var displayTime = sample.syncTime - (long) (sample.syncRefreshCount - sample.presentRefreshCount) * refreshPeriod;
+        while (pendingSize > 0) {
+            var index = pendingHead;
+            var behind = sample.presentCount - pendingIds[index];
+            if (behind < 0) {
+                // not on screen yet
+                break;
+            }
+            if (behind == 0) {
+                report(index, displayTime);
+            } else if (evenlySpaced && behind < presents) {
+                report(index, displayTime - (long) behind * syncInterval * refreshPeriod);
+            } else if (onlyNewestShown && behind < presents) {
+                listener.onFrameDropped(pendingFrames[index]);
+            }
+            pendingHead = (pendingHead + 1) & PENDING_MASK;
+            pendingSize--;
+        }
+
+        hasBaseline = true;
+        basePresentCount = sample.presentCount;
+        basePresentRefreshCount = sample.presentRefreshCount;
+    }
+
+    private void report(int index, long displayTime) {
+        // a display time before the present means the IDs got mixed up, e.g. by a recreated swap chain
+        if (displayTime >= pendingTimes[index]) {
+            listener.onFrameDisplayed(pendingFrames[index], pendingTimes[index], displayTime);
+        }
+    }
+
+    /**
+     * Forgets all pending presents and the last sample.
+     */
+    public void reset() {
+        pendingHead = 0;
+        pendingSize = 0;
+        hasBaseline = false;
+    }
+}
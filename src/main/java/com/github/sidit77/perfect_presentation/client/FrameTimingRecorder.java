@@ -0,0 +1,281 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import com.github.sidit77.perfect_presentation.api.FrameMetrics;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects per-frame timings on the render thread.
+ * <p>
+ * Every stage is aggregated into a {@link LogLinearHistogram} whose percentiles are written into one of two
+ * preallocated buffers at the end of each window. {@link #getSnapshot} turns the last completed window into an
+ * immutable {@link FrameMetrics.Snapshot} on the reading thread. In addition, the raw timings of the most recent
+ * {@link #RING_CAPACITY} frames are kept in a ring buffer that other threads can read without locking.
+ * </p>
+ * <p>
+ * All {@code record*} methods must be called from the same thread and never allocate.
+ * </p>
+ */
+public class FrameTimingRecorder implements FrameMetrics {
+
+    public static final int RING_CAPACITY = 4096;
+    private static final int RING_MASK = RING_CAPACITY - 1;
+
+    private static final Stage[] STAGES = Stage.values();
+    // windowStart, windowEnd, count, p50, p99, p999, max
+    private static final int SNAPSHOT_FIELDS = 7;
+
+    private final LogLinearHistogram[] histograms = new LogLinearHistogram[STAGES.length];
+    // window n is written to windows[n & 1], so the buffer a reader copies from is only reused one window later
+    private final long[][] windows = new long[2][STAGES.length * SNAPSHOT_FIELDS];
+    // number of completed windows, written with release semantics after the window's buffer
+    private volatile long windowCount = 0;
+    private volatile long windowLength;
+    private long windowStart = Long.MIN_VALUE;
+
+    private final long[] ringPresentStart = new long[RING_CAPACITY];
+    private final long[] ringPresentInterval = new long[RING_CAPACITY];
+    private final long[] ringSwapChainWait = new long[RING_CAPACITY];
+    private final long[] ringBlit = new long[RING_CAPACITY];
+    private final long[] ringPresent = new long[RING_CAPACITY];
+    private final int[] ringSyncInterval = new int[RING_CAPACITY];
+    // filled in a few frames later, once the frame statistics show when the frame reached the screen
+    private final long[] ringDisplayLatency = new long[RING_CAPACITY];
+    // latency of the oldest input event the frame reacted to
+    private final long[] ringInputLatency = new long[RING_CAPACITY];
+    // set a few frames later if the frame statistics show that the frame was never shown
+    private final boolean[] ringDropped = new boolean[RING_CAPACITY];
+    // number of frames committed to the ring, written with release semantics after the frame's slots
+    private final AtomicLong frameCount = new AtomicLong();
+    private final AtomicLong repeatedRefreshes = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    private long pendingSwapChainWait = 0;
+    private long pendingBlit = 0;
+    private long pendingInputLatency = -1;
+    private long lastPresentStart = Long.MIN_VALUE;
+
+    public FrameTimingRecorder(long windowLength) {
+        this.windowLength = windowLength;
+        for (int i = 0; i < STAGES.length; i++) {
+            histograms[i] = new LogLinearHistogram();
+        }
+    }
+
+    public void setWindowLength(long windowLength) {
+        this.windowLength = windowLength;
+    }
+
+    public void recordSwapChainWait(long duration) {
+        pendingSwapChainWait += duration;
+        histograms[Stage.SWAP_CHAIN_WAIT.ordinal()].record(duration);
+    }
+
+    public void recordBlit(long duration) {
+        pendingBlit += duration;
+        histograms[Stage.BLIT.ordinal()].record(duration);
+    }
+
+    /**
+     * Records an input event the current frame reacted to. Call before {@link #recordPresent}.
+     *
+     * @param latency time from the event to the start of the {@code Present} call
+     */
+    public void recordInputLatency(long latency) {
+        pendingInputLatency = Math.max(pendingInputLatency, latency);
+        histograms[Stage.INPUT_TO_PRESENT.ordinal()].record(latency);
+    }
+
+    /**
+     * @param latency time from an input event to the vblank the frame that reacted to it was first shown on
+     */
+    public void recordInputDisplayLatency(long latency) {
+        histograms[Stage.INPUT_TO_DISPLAY.ordinal()].record(latency);
+    }
+
+    /**
+     * Records the {@code Present} call and finishes the current frame.
+     *
+     * @param presentStart time right before the {@code Present} call
+     * @param presentEnd time right after the {@code Present} call returned
+     * @param syncInterval the sync interval the frame was presented with
+     */
+    public void recordPresent(long presentStart, long presentEnd, int syncInterval) {
+        var presentDuration = presentEnd - presentStart;
+        histograms[Stage.PRESENT.ordinal()].record(presentDuration);
+
+        var interval = lastPresentStart == Long.MIN_VALUE ? 0 : presentStart - lastPresentStart;
+        if (lastPresentStart != Long.MIN_VALUE) {
+            histograms[Stage.PRESENT_INTERVAL.ordinal()].record(interval);
+        }
+        lastPresentStart = presentStart;
+
+        var frame = frameCount.get();
+        var slot = (int) (frame & RING_MASK);
+        ringPresentStart[slot] = presentStart;
+        ringPresentInterval[slot] = interval;
+        ringSwapChainWait[slot] = pendingSwapChainWait;
+        ringBlit[slot] = pendingBlit;
+        ringPresent[slot] = presentDuration;
+        ringSyncInterval[slot] = syncInterval;
+        ringDisplayLatency[slot] = -1;
+        ringInputLatency[slot] = pendingInputLatency;
+        ringDropped[slot] = false;
+        frameCount.lazySet(frame + 1);
+
+        pendingSwapChainWait = 0;
+        pendingBlit = 0;
+        pendingInputLatency = -1;
+
+        if (windowStart == Long.MIN_VALUE) {
+            windowStart = presentStart;
+        } else if (presentEnd - windowStart >= windowLength) {
+            var completed = windowCount + 1;
+            var window = windows[(int) (completed & 1)];
+            // keep the writes below from becoming visible before the previous window was published
+            VarHandle.releaseFence();
+            for (int i = 0; i < STAGES.length; i++) {
+                var histogram = histograms[i];
+                var offset = i * SNAPSHOT_FIELDS;
+                window[offset] = windowStart;
+                window[offset + 1] = presentEnd;
+                window[offset + 2] = histogram.getTotalCount();
+                window[offset + 3] = histogram.getValueAtPercentile(50.0);
+                window[offset + 4] = histogram.getValueAtPercentile(99.0);
+                window[offset + 5] = histogram.getValueAtPercentile(99.9);
+                window[offset + 6] = histogram.getMax();
+                histogram.reset();
+            }
+            windowCount = completed;
+            windowStart = presentEnd;
+        }
+    }
+
+    /**
+     * Records when an already finished frame reached the screen.
+     *
+     * @param frame the index of the frame, as counted by {@link #getFrameCount()}
+     * @param latency time from the start of its {@code Present} call to the vblank it was first shown on
+     */
+    public void recordDisplayLatency(long frame, long latency) {
+        histograms[Stage.DISPLAY_LATENCY.ordinal()].record(latency);
+        var count = frameCount.get();
+        if (frame < count && count - frame <= RING_CAPACITY) {
+            ringDisplayLatency[(int) (frame & RING_MASK)] = latency;
+        }
+    }
+
+    /**
+     * Records that an already finished frame was replaced before it reached the screen.
+     *
+     * @param frame the index of the frame, as counted by {@link #getFrameCount()}
+     */
+    public void recordDroppedFrame(long frame) {
+        var count = frameCount.get();
+        if (frame < count && count - frame <= RING_CAPACITY) {
+            ringDropped[(int) (frame & RING_MASK)] = true;
+        }
+    }
+
+    public void recordGlitch(int repeatedRefreshes, int droppedFrames) {
+        this.repeatedRefreshes.lazySet(this.repeatedRefreshes.get() + repeatedRefreshes);
+        this.droppedFrames.lazySet(this.droppedFrames.get() + droppedFrames);
+    }
+
+    /**
+     * Allocates the returned snapshot, use {@link #getWindowCount()} to find out whether there is a new one.
+     */
+    @Override
+    public Snapshot getSnapshot(Stage stage) {
+        var offset = stage.ordinal() * SNAPSHOT_FIELDS;
+        while (true) {
+            var completed = windowCount;
+            if (completed == 0) {
+                return Snapshot.EMPTY;
+            }
+            var window = windows[(int) (completed & 1)];
+            var snapshot = new Snapshot(
+                    window[offset],
+                    window[offset + 1],
+                    window[offset + 2],
+                    window[offset + 3],
+                    window[offset + 4],
+                    window[offset + 5],
+                    window[offset + 6]);
+            // the render thread only starts overwriting this buffer after it published the next window
+            VarHandle.acquireFence();
+            if (windowCount == completed) {
+                return snapshot;
+            }
+        }
+    }
+
+    /**
+     * @return the number of windows completed so far
+     */
+    public long getWindowCount() {
+        return windowCount;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return frameCount.get();
+    }
+
+    @Override
+    public long getRepeatedRefreshCount() {
+        return repeatedRefreshes.get();
+    }
+
+    @Override
+    public long getDroppedFrameCount() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Copies a frame out of the ring buffer. Safe to call from any thread.
+     *
+     * @param frame the index of the frame, must be smaller than {@link #getFrameCount()}
+     * @param target receives the timings
+     * @return {@code false} if the frame has already been overwritten
+     */
+    public boolean readFrame(long frame, FrameRecord target) {
+        if (frame >= frameCount.get()) {
+            throw new IllegalArgumentException("Frame " + frame + " has not been recorded yet");
+        }
+        var slot = (int) (frame & RING_MASK);
+        target.frame = frame;
+        target.presentStart = ringPresentStart[slot];
+        target.presentInterval = ringPresentInterval[slot];
+        target.swapChainWait = ringSwapChainWait[slot];
+        target.blit = ringBlit[slot];
+        target.present = ringPresent[slot];
+        target.syncInterval = ringSyncInterval[slot];
+        target.displayLatency = ringDisplayLatency[slot];
+        target.inputLatency = ringInputLatency[slot];
+        target.dropped = ringDropped[slot];
+        // the writer may have lapped us while we were copying, and it fills the slot of the frame that is
+        // RING_CAPACITY ahead before publishing the new count
+        return frameCount.get() - frame < RING_CAPACITY;
+    }
+
+    /**
+     * Mutable holder for a single frame, meant to be reused by readers.
+     */
+    public static class FrameRecord {
+        public long frame;
+        public long presentStart;
+        public long presentInterval;
+        public long swapChainWait;
+        public long blit;
+        public long present;
+        public int syncInterval;
+        /** {@code -1} if it is not known (yet) when the frame reached the screen */
+        public long displayLatency;
+        /** time from the oldest input event the frame reacted to until its {@code Present} call, {@code -1} if there was none */
+        public long inputLatency;
+        /** {@code true} if the frame is known to have been replaced before it was ever shown */
+        public boolean dropped;
+    }
+}
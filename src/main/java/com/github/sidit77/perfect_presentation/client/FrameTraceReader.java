@@ -0,0 +1,96 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads the traces written by {@link FrameTraceWriter}.
+ */
+public class FrameTraceReader {
+
+    /**
+     * Mutable holder for a single record, meant to be reused. Which fields are set depends on the type.
+     */
+    public static class Record {
+        public int type;
+        /** time of the record relative to the first one, for frames the start of the frame */
+        public long time;
+
+        public long tick;
+        public long swapChainWait;
+        public long render;
+        public long blit;
+        public long presentGap;
+        public long present;
+        public int frameRateLimit;
+
+        public int width;
+        public int height;
+        /** the new sync interval or refresh rate */
+        public int value;
+    }
+
+    private final byte[] data;
+    private int position;
+    private long lastTime = 0;
+
+    public FrameTraceReader(Path file) throws IOException {
+        data = Files.readAllBytes(file);
+        var magic = FrameTraceWriter.MAGIC;
+        if (data.length < magic.length + 1 || !Arrays.equals(data, 0, magic.length, magic, 0, magic.length)) {
+            throw new IOException(file + " is not a frame trace");
+        }
+        if (data[magic.length] != FrameTraceWriter.VERSION) {
+            throw new IOException("Unsupported frame trace version " + data[magic.length]);
+        }
+        position = magic.length + 1;
+    }
+
+    /**
+     * @return {@code false} at the end of the trace, or if the last record was cut off
+     */
+    public boolean next(Record record) {
+        try {
+            var type = data[position++];
+            var delta = getVarLong();
+            var time = lastTime + ((delta >>> 1) ^ -(delta & 1));
+            record.type = type;
+            record.time = time;
+            switch (type) {
+                case FrameTraceWriter.FRAME -> {
+                    record.tick = getVarLong();
+                    record.swapChainWait = getVarLong();
+                    record.render = getVarLong();
+                    record.blit = getVarLong();
+                    record.presentGap = getVarLong();
+                    record.present = getVarLong();
+                    record.frameRateLimit = (int) getVarLong();
+                    time += record.tick + record.swapChainWait + record.render + record.blit + record.presentGap + record.present;
+                }
+                case FrameTraceWriter.RESIZE -> {
+                    record.width = (int) getVarLong();
+                    record.height = (int) getVarLong();
+                }
+                case FrameTraceWriter.SYNC_INTERVAL, FrameTraceWriter.REFRESH_RATE -> record.value = (int) getVarLong();
+                default -> throw new IllegalStateException("Unknown record type " + type + " at offset " + (position - 1));
+            }
+            lastTime = time;
+            return true;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    private long getVarLong() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            var b = data[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.lwjgl.opengl.GL11;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a trace written by {@link FrameTraceWriter} through the pacing and limiting logic again, on a
+ * {@link HeadlessBackend} instead of the real swap chain.
+ * <p>
+ * The traced tick, render and blit times are replayed as they were, while the swap chain waits, the frame start
+ * scheduling and the frame rate limiter are simulated with the given settings. That makes it possible to compare
+ * settings on exactly the same workload. There is no GPU model: a frame is done once its CPU side is, and a present
+ * costs the shortest present of the trace. The refresh period of the simulated display is fixed by the first refresh
+ * rate in the trace.
+ * </p>
+ * <p>
+ * Usage: {@code FrameTraceReplay <trace> [VANILLA|PRECISE|AUTO] [max frame latency, 0 adapts] [schedule frame start]
+ * [NEVER|UNSYNCED|ADAPTIVE] [adaptive tearing threshold]},
+ * or {@code gradlew replayFrameTrace --args="..."}.
+ * </p>
+ */
+public class FrameTraceReplay {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int SHARED_TEXTURE = 1;
+
+    private final FrameRateLimiter.Mode limiterMode;
+    private final int maxFrameLatency;
+    private final boolean scheduleFrameStart;
+    private final TearingMode tearingMode;
+    private final double tearingThreshold;
+
+    private VirtualClock clock;
+    private HeadlessBackend backend;
+    private FrameLoop frameLoop;
+    private long lastVanillaFrame = Long.MIN_VALUE;
+
+    private int refreshRate = 60;
+    private int syncInterval = 1;
+    private int width = 0;
+    private int height = 0;
+
+    private final LogLinearHistogram latency = new LogLinearHistogram();
+    private long frames = 0;
+    private long missedDeadlines = 0;
+    private long lastScanout = Long.MIN_VALUE;
+
+    public FrameTraceReplay(FrameRateLimiter.Mode limiterMode, int maxFrameLatency, boolean scheduleFrameStart,
+                            TearingMode tearingMode, double tearingThreshold) {
+        this.limiterMode = limiterMode;
+        this.maxFrameLatency = maxFrameLatency;
+        this.scheduleFrameStart = scheduleFrameStart;
+        this.tearingMode = tearingMode;
+        this.tearingThreshold = tearingThreshold;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: FrameTraceReplay <trace> [VANILLA|PRECISE|AUTO] [max frame latency] [schedule frame start] [NEVER|UNSYNCED|ADAPTIVE] [adaptive tearing threshold]");
+            System.exit(1);
+        }
+        var trace = Path.of(args[0]);
+        var replay = new FrameTraceReplay(
+                args.length > 1 ? FrameRateLimiter.Mode.valueOf(args[1].toUpperCase(Locale.ROOT)) : FrameRateLimiter.Mode.PRECISE,
+                args.length > 2 ? Integer.parseInt(args[2]) : 0,
+                args.length > 3 && Boolean.parseBoolean(args[3]),
+                args.length > 4 ? TearingMode.valueOf(args[4].toUpperCase(Locale.ROOT)) : TearingMode.UNSYNCED,
+                args.length > 5 ? Double.parseDouble(args[5]) : 0.25);
+        replay.run(trace);
+        replay.printSummary();
+    }
+
+    public void run(Path trace) throws IOException {
+        var minPresent = Long.MAX_VALUE;
+        var reader = new FrameTraceReader(trace);
+        var record = new FrameTraceReader.Record();
+        while (reader.next(record)) {
+            if (record.type == FrameTraceWriter.FRAME) {
+                minPresent = Math.min(minPresent, record.present);
+            }
+        }
+
+        reader = new FrameTraceReader(trace);
+        while (reader.next(record)) {
+            switch (record.type) {
+                case FrameTraceWriter.FRAME -> replayFrame(record, minPresent);
+                case FrameTraceWriter.RESIZE -> {
+                    width = record.width;
+                    height = record.height;
+                    if (frameLoop != null) {
+                        frameLoop.resizeSwapChain(width, height);
+                    }
+                }
+                case FrameTraceWriter.SYNC_INTERVAL -> {
+                    syncInterval = record.value;
+                    if (frameLoop != null) {
+                        frameLoop.setSyncInterval(syncInterval);
+                    }
+                }
+                case FrameTraceWriter.REFRESH_RATE -> {
+                    refreshRate = record.value;
+                    if (frameLoop != null) {
+                        frameLoop.setRefreshRate(refreshRate);
+                    }
+                }
+            }
+        }
+    }
+
+    private void start(long presentCost) {
+        clock = new VirtualClock();
+        // the traced blit times already contain the resizes
+        backend = new HeadlessBackend(clock, NANOS_PER_SECOND / Math.max(refreshRate, 1), presentCost, 0, 0);
+        backend.setSyncInterval(syncInterval);
+        backend.allocateSharedTexture(SHARED_TEXTURE, GL11.GL_TEXTURE_2D, GL11.GL_RGBA8, width, height);
+        frameLoop = new FrameLoop(backend, new FrameTimingRecorder(NANOS_PER_SECOND));
+        frameLoop.setRefreshRate(refreshRate);
+        frameLoop.setFrameRateLimiterMode(limiterMode);
+        frameLoop.setPinnedFrameLatency(maxFrameLatency);
+        frameLoop.setFrameStartScheduling(scheduleFrameStart, TimeUnit.MILLISECONDS.toNanos(1));
+        frameLoop.setTearingMode(tearingMode, tearingThreshold);
+        if (width > 0 && height > 0) {
+            frameLoop.resizeSwapChain(width, height);
+        }
+    }
+
+    private void replayFrame(FrameTraceReader.Record frame, long presentCost) {
+        // the backend is only built at the first frame, once the initial refresh rate and sync interval are known
+        if (frameLoop == null) {
+            start(presentCost);
+        }
+        frameLoop.beginFrame();
+        var frameStart = clock.nanoTime();
+        clock.advance(frame.tick);
+        frameLoop.waitForSwapChain();
+        backend.acquireSharedTexture(SHARED_TEXTURE);
+        clock.advance(frame.render + frame.blit);
+        frameLoop.blit(SHARED_TEXTURE);
+        clock.advance(frame.presentGap);
+        frameLoop.present();
+
+        var scanout = backend.getLastScanout();
+        latency.record(scanout - frameStart);
+        if (lastScanout != Long.MIN_VALUE && scanout - lastScanout > backend.getRefreshPeriod() * Math.max(backend.getSyncInterval(), 1)) {
+            missedDeadlines++;
+        }
+        lastScanout = scanout;
+        frames++;
+
+        // Minecraft only limits below 260
+        if (frame.frameRateLimit > 0 && frame.frameRateLimit < 260) {
+            var limit = frameLoop.adjustFrameRateLimit(frame.frameRateLimit);
+            if (limiterMode != FrameRateLimiter.Mode.VANILLA) {
+                frameLoop.limitFrameRate(limit);
+            } else {
+                limitLikeVanilla(limit);
+            }
+        }
+    }
+
+    /**
+     * Same as {@code RenderSystem.limitDisplayFPS}, which waits for a whole interval after the end of the last wait.
+     */
+    private void limitLikeVanilla(int frameRate) {
+        if (lastVanillaFrame != Long.MIN_VALUE) {
+            clock.waitUntil(lastVanillaFrame + NANOS_PER_SECOND / frameRate);
+        }
+        lastVanillaFrame = clock.nanoTime();
+    }
+
+    /**
+     * @return the time from the start of each replayed frame until it reached the screen
+     */
+    public LogLinearHistogram getLatency() {
+        return latency;
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * @return the number of frames that were shown more than a sync interval after the previous one
+     */
+    public long getMissedDeadlines() {
+        return missedDeadlines;
+    }
+
+    public void printSummary() {
+        if (frames == 0) {
+            System.out.println("The trace contains no frames");
+            return;
+        }
+        System.out.printf(Locale.ROOT, "frames:                 %d over %.1f s%n", frames, clock.nanoTime() / 1e9);
+        System.out.printf(Locale.ROOT, "start to scanout p50:   %.2f ms%n", latency.getValueAtPercentile(50) / 1e6);
+        System.out.printf(Locale.ROOT, "start to scanout p99:   %.2f ms%n", latency.getValueAtPercentile(99) / 1e6);
+        System.out.printf(Locale.ROOT, "start to scanout p99.9: %.2f ms%n", latency.getValueAtPercentile(99.9) / 1e6);
+        System.out.printf(Locale.ROOT, "start to scanout max:   %.2f ms%n", latency.getMax() / 1e6);
+        System.out.printf(Locale.ROOT, "missed deadlines:       %d (%.2f%%)%n", missedDeadlines, 100.0 * missedDeadlines / frames);
+    }
+}
@@ -0,0 +1,207 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Records the timing of every frame into a compact binary trace that {@link FrameTraceReplay} can run through the
+ * pacing logic again.
+ * <p>
+ * The file starts with the magic {@code PPTR} and a version byte, followed by a stream of records. Every record
+ * starts with its type and its time relative to the previous record as a zigzag encoded varint. The time of a frame is
+ * its start, but the record after it is relative to the end of its present. All other numbers are unsigned LEB128
+ * varints:
+ * </p>
+ * <ul>
+ *     <li>{@link #FRAME}: the durations of the tick, the swap chain wait, rendering, the blit, the gap before the
+ *     present and the present, followed by the frame rate limit the game asked for ({@code 0} if not known yet)</li>
+ *     <li>{@link #RESIZE}: width and height</li>
+ *     <li>{@link #SYNC_INTERVAL}: the new sync interval</li>
+ *     <li>{@link #REFRESH_RATE}: the new refresh rate in Hz</li>
+ * </ul>
+ * <p>
+ * A frame is usually a dozen bytes. Records are collected in a fixed buffer that is written out whenever it fills
+ * up, so recording does not allocate. A trace that was cut off mid-record is still readable up to that point.
+ * </p>
+ */
+public class FrameTraceWriter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FrameTraceWriter.class);
+
+    static final byte[] MAGIC = { 'P', 'P', 'T', 'R' };
+    static final int VERSION = 1;
+
+    static final int FRAME = 1;
+    static final int RESIZE = 2;
+    static final int SYNC_INTERVAL = 3;
+    static final int REFRESH_RATE = 4;
+
+    // the longest record is a frame with eight varints of at most ten bytes each
+    private static final int MAX_RECORD_SIZE = 1 + 8 * 10;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private long lastTime = Long.MIN_VALUE;
+    private boolean failed = false;
+
+    private long frameStart = Long.MIN_VALUE;
+    private long tickEnd;
+    private long renderStart;
+    private long blitStart;
+    private long blitEnd;
+    private long presentStart;
+    private long presentEnd;
+    private boolean framePending = false;
+    private int frameRateLimit;
+
+    public FrameTraceWriter(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE);
+        buffer.put(MAGIC).put((byte) VERSION);
+    }
+
+    /**
+     * The game starts a frame, right after the frame start scheduling.
+     */
+    public void beginFrame(long time) {
+        writePendingFrame();
+        frameStart = time;
+        tickEnd = renderStart = blitStart = blitEnd = time;
+    }
+
+    /**
+     * The game finished ticking and is about to wait for the swap chain.
+     */
+    public void endTick(long time) {
+        tickEnd = time;
+    }
+
+    /**
+     * The game starts rendering.
+     */
+    public void beginRender(long time) {
+        renderStart = time;
+    }
+
+    public void blit(long start, long end) {
+        blitStart = start;
+        blitEnd = end;
+    }
+
+    /**
+     * The frame rate limit the game applies after the present of the current frame. Kept for the following frames
+     * until it changes.
+     */
+    public void frameRateLimit(int frameRateLimit) {
+        this.frameRateLimit = frameRateLimit;
+    }
+
+    /**
+     * Finishes the current frame. It is written once the next one begins, as the game only picks the frame rate
+     * limit after the present. Other records written before that take the previous limit for it.
+     */
+    public void present(long start, long end) {
+        if (frameStart == Long.MIN_VALUE) {
+            // the first frame started before the trace
+            return;
+        }
+        presentStart = start;
+        presentEnd = end;
+        framePending = true;
+    }
+
+    private void writePendingFrame() {
+        if (!framePending) {
+            return;
+        }
+        framePending = false;
+        beginRecord(FRAME, frameStart);
+        putDuration(tickEnd - frameStart);
+        putDuration(renderStart - tickEnd);
+        putDuration(blitStart - renderStart);
+        putDuration(blitEnd - blitStart);
+        putDuration(presentStart - blitEnd);
+        putDuration(presentEnd - presentStart);
+        putVarLong(Math.max(frameRateLimit, 0));
+        lastTime = presentEnd;
+        frameStart = Long.MIN_VALUE;
+    }
+
+    public void resize(long time, int width, int height) {
+        writePendingFrame();
+        beginRecord(RESIZE, time);
+        putVarLong(width);
+        putVarLong(height);
+    }
+
+    public void syncInterval(long time, int syncInterval) {
+        writePendingFrame();
+        beginRecord(SYNC_INTERVAL, time);
+        putVarLong(syncInterval);
+    }
+
+    public void refreshRate(long time, int refreshRate) {
+        writePendingFrame();
+        beginRecord(REFRESH_RATE, time);
+        putVarLong(refreshRate);
+    }
+
+    private void beginRecord(int type, long time) {
+        if (buffer.remaining() < MAX_RECORD_SIZE) {
+            flush();
+        }
+        buffer.put((byte) type);
+        // zigzag encoded, frames are only written once they are done, so a resize in the middle of a frame comes
+        // before a record that starts earlier
+        var delta = lastTime == Long.MIN_VALUE ? 0 : time - lastTime;
+        putVarLong((delta << 1) ^ (delta >> 63));
+        lastTime = time;
+    }
+
+    private void putDuration(long duration) {
+        putVarLong(Math.max(duration, 0));
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void flush() {
+        buffer.flip();
+        if (!failed) {
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write the frame trace, dropping the rest of it", e);
+                failed = true;
+            }
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() {
+        writePendingFrame();
+        flush();
+        failed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close the frame trace", e);
+        }
+    }
+}
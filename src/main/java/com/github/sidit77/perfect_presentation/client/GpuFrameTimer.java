@@ -0,0 +1,78 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.lwjgl.opengl.GL;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * Measures the GPU time of a section of the frame with a pair of {@code GL_TIMESTAMP} queries.
+ * <p>
+ * Timestamps are used instead of a {@code GL_TIME_ELAPSED} query because those can not be nested, and vanilla runs one
+ * of its own while the debug screen is open. Results are read back a few frames later so querying them never stalls
+ * the pipeline. Must only be used on the thread that owns the OpenGL context.
+ * </p>
+ */
+public class GpuFrameTimer implements AutoCloseable {
+
+    private static final int QUERY_COUNT = 4;
+
+    // the start of section i is at 2 * i, its end right after
+    private final int[] queries = new int[QUERY_COUNT * 2];
+    private final boolean[] pending = new boolean[QUERY_COUNT];
+    private final boolean supported;
+    private int current = 0;
+    private boolean running = false;
+
+    public GpuFrameTimer() {
+        supported = GL.getCapabilities().GL_ARB_timer_query;
+        if (supported) {
+            glGenQueries(queries);
+        }
+    }
+
+    public void begin() {
+        if (!supported || running || pending[current]) {
+            return;
+        }
+        glQueryCounter(queries[2 * current], GL_TIMESTAMP);
+        running = true;
+    }
+
+    public void end() {
+        if (!running) {
+            return;
+        }
+        glQueryCounter(queries[2 * current + 1], GL_TIMESTAMP);
+        pending[current] = true;
+        current = (current + 1) % QUERY_COUNT;
+        running = false;
+    }
+
+    /**
+     * @return the GPU time of the oldest finished section in nanoseconds, or {@code -1} if none is available
+     */
+    public long poll() {
+        // the oldest query is the one that will be reused next
+        var oldest = current;
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            var index = (oldest + i) % QUERY_COUNT;
+            if (!pending[index]) {
+                continue;
+            }
+            // the end is written after the start, so once it is available both are
+            if (glGetQueryObjecti(queries[2 * index + 1], GL_QUERY_RESULT_AVAILABLE) == GL_FALSE) {
+                return -1;
+            }
+            pending[index] = false;
+            return glGetQueryObjecti64(queries[2 * index + 1], GL_QUERY_RESULT) - glGetQueryObjecti64(queries[2 * index], GL_QUERY_RESULT);
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() {
+        if (supported) {
+            glDeleteQueries(queries);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * A {@link PresentationBackend} without any GPU behind it.
+ * <p>
+ * It models a flip-model swap chain with a frame latency waitable object: presents are queued until the next
+ * vblank (or shown immediately with a sync interval of 0), and {@link #waitForSwapChainSignal()} blocks while the
+ * queue holds {@code maxFrameLatency} frames. All costs are charged to a {@link VirtualClock}.
+ * </p>
+ */
+public class HeadlessBackend implements PresentationBackend {
+
+    private static final int MAX_QUEUED_FRAMES = 16;
+
+    private final VirtualClock clock;
+    private final long refreshPeriod;
+    private final long presentCost;
+    private final long blitCost;
+    private final long resizeCost;
+
+    // scanout times of presented frames that are not on screen yet
+    private final long[] queue = new long[MAX_QUEUED_FRAMES];
+    private int queueHead = 0;
+    private int queueSize = 0;
+
+    private final Int2ObjectMap<int[]> sharedTextures = new Int2ObjectOpenHashMap<>();
+
+    private int syncInterval = 1;
+    private int maxFrameLatency = 1;
+    private boolean occluded = false;
+    private int width = 0;
+    private int height = 0;
+
+    private final long[] queueIds = new long[MAX_QUEUED_FRAMES];
+    private long presentedFrames = 0;
+    private long lastScanout = Long.MIN_VALUE;
+    private long lastDisplayedFrame = 0;
+    private long lastDisplayedScanout = Long.MIN_VALUE;
+    private long lastPresentCall = 0;
+
+    public HeadlessBackend(VirtualClock clock, long refreshPeriod, long presentCost, long blitCost, long resizeCost) {
+        if (refreshPeriod <= 0) {
+            throw new IllegalArgumentException("Refresh period must be positive");
+        }
+        this.clock = clock;
+        this.refreshPeriod = refreshPeriod;
+        this.presentCost = presentCost;
+        this.blitCost = blitCost;
+        this.resizeCost = resizeCost;
+    }
+
+    @Override
+    public VirtualClock clock() {
+        return clock;
+    }
+
+    @Override
+    public void setSyncInterval(int syncInterval) {
+        this.syncInterval = Math.max(syncInterval, 0);
+    }
+
+    @Override
+    public int getSyncInterval() {
+        return syncInterval;
+    }
+
+    @Override
+    public void setTearingMode(TearingMode tearingMode) {
+        // presents without vsync are shown right away either way
+    }
+
+    @Override
+    public void setSwapChainBufferCount(int bufferCount) { }
+
+    @Override
+    public void setMaximumFrameLatency(int maxFrameLatency) {
+        if (maxFrameLatency < 1 || maxFrameLatency > MAX_QUEUED_FRAMES) {
+            throw new IllegalArgumentException("Unsupported frame latency: " + maxFrameLatency);
+        }
+        this.maxFrameLatency = maxFrameLatency;
+    }
+
+    @Override
+    public int getMaximumFrameLatency() {
+        return maxFrameLatency;
+    }
+
+    @Override
+    public void setSharpness(float sharpness) { }
+
+    public long getRefreshPeriod() {
+        return refreshPeriod;
+    }
+
+    public long getPresentedFrames() {
+        return presentedFrames;
+    }
+
+    /**
+     * @return the time the most recently presented frame reaches (or reached) the screen
+     */
+    public long getLastScanout() {
+        return lastScanout;
+    }
+
+    /**
+     * @return the time the most recent {@link #swapChainPresent()} call was made
+     */
+    public long getLastPresentCall() {
+        return lastPresentCall;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    private void retireDisplayedFrames() {
+        var now = clock.nanoTime();
+        while (queueSize > 0 && queue[queueHead] <= now) {
+            lastDisplayedFrame = queueIds[queueHead];
+            lastDisplayedScanout = queue[queueHead];
+            queueHead = (queueHead + 1) % MAX_QUEUED_FRAMES;
+            queueSize--;
+        }
+    }
+
+    @Override
+    public void waitForSwapChainSignal() {
+        retireDisplayedFrames();
+        while (queueSize >= maxFrameLatency) {
+            clock.waitUntil(queue[queueHead]);
+            retireDisplayedFrames();
+        }
+    }
+
+    @Override
+    public void swapChainPresent() {
+        lastPresentCall = clock.nanoTime();
+        clock.advance(presentCost);
+        retireDisplayedFrames();
+        // the real swap chain would block inside Present here
+        while (queueSize >= MAX_QUEUED_FRAMES) {
+            clock.waitUntil(queue[queueHead]);
+            retireDisplayedFrames();
+        }
+
+        var now = clock.nanoTime();
+        long scanout;
+        if (syncInterval == 0) {
+            scanout = now;
+        } else {
+            var earliest = Math.max(now, lastScanout == Long.MIN_VALUE ? now : lastScanout + syncInterval * refreshPeriod);
+            scanout = Math.ceilDiv(earliest, refreshPeriod) * refreshPeriod;
+        }
+        lastScanout = scanout;
+        presentedFrames++;
+
+        if (scanout > now) {
+            queue[(queueHead + queueSize) % MAX_QUEUED_FRAMES] = scanout;
+            queueIds[(queueHead + queueSize) % MAX_QUEUED_FRAMES] = presentedFrames;
+            queueSize++;
+        } else {
+            lastDisplayedFrame = presentedFrames;
+            lastDisplayedScanout = scanout;
+        }
+    }
+
+    /**
+     * Simulates the window being hidden. Presents still go through, but the occlusion is reported.
+     */
+    public void setOccluded(boolean occluded) {
+        this.occluded = occluded;
+    }
+
+    @Override
+    public boolean isOccluded() {
+        return occluded;
+    }
+
+    @Override
+    public boolean testOcclusion() {
+        return occluded;
+    }
+
+    @Override
+    public void getFrameStatistics(FrameStatisticsTracker.Sample target) {
+        retireDisplayedFrames();
+        // present IDs and vblank counters are 32-bit like the DXGI ones, so they wrap just the same
+        var vblank = Math.floorDiv(clock.nanoTime(), refreshPeriod);
+        target.presentId = (int) presentedFrames;
+        target.available = lastDisplayedScanout != Long.MIN_VALUE;
+        target.presentCount = (int) lastDisplayedFrame;
+        target.presentRefreshCount = (int) Math.floorDiv(lastDisplayedScanout, refreshPeriod);
+        target.syncRefreshCount = (int) vblank;
+        target.syncTime = vblank * refreshPeriod;
+    }
+
+    @Override
+    public void resizeSwapChain(int width, int height) {
+        this.width = width;
+        this.height = height;
+        clock.advance(resizeCost);
+    }
+
+    @Override
+    public void setSharedTextureRingSize(int size) { }
+
+    @Override
+    public void setPresentationThread(boolean enabled) {
+        // everything runs on the virtual clock of the calling thread
+    }
+
+    @Override
+    public int acquireSharedTexture(int glTextureIdentifier) {
+        if (!sharedTextures.containsKey(glTextureIdentifier)) {
+            throw new IllegalStateException("No shared texture allocated for this identifier: " + glTextureIdentifier);
+        }
+        return glTextureIdentifier;
+    }
+
+    @Override
+    public void blitSharedTextureToSwapChain(int glTextureIdentifier) {
+        if (!sharedTextures.containsKey(glTextureIdentifier)) {
+            throw new IllegalStateException("No shared texture allocated for this identifier: " + glTextureIdentifier);
+        }
+        clock.advance(blitCost);
+    }
+
+    @Override
+    public boolean requestReadback(int glTextureIdentifier, Consumer<PixelImage> consumer) {
+        return false;
+    }
+
+    @Override
+    public void setFrameCapture(@Nullable FrameCapture capture) {
+        // there are no pixels to capture, but the capture is still owned by the backend
+        if (capture != null) {
+            capture.close();
+        }
+    }
+
+    @Override
+    public void allocateSharedTexture(int glTextureIdentifier, int glTextureType, int glTextureFormat, int width, int height) {
+        if (sharedTextures.containsKey(glTextureIdentifier))
+            throw new IllegalStateException("Shared texture already allocated for this identifier: " + glTextureIdentifier);
+        sharedTextures.put(glTextureIdentifier, new int[] { width, height });
+    }
+
+    @Override
+    public void deallocateSharedTexture(int glTextureIdentifier) {
+        if (sharedTextures.remove(glTextureIdentifier) == null)
+            throw new IllegalStateException("No shared texture allocated for this identifier: " + glTextureIdentifier);
+    }
+
+    @Override
+    public void close() {
+        sharedTextures.clear();
+        queueSize = 0;
+        lastDisplayedScanout = Long.MIN_VALUE;
+    }
+}
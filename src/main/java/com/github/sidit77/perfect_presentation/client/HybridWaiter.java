@@ -0,0 +1,51 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits for a deadline on {@link System#nanoTime()} by parking for most of the time and spinning for the rest.
+ * <p>
+ * How long a park oversleeps depends on the OS timer resolution, which on Windows can be anywhere between 0.5 and
+ * 15.6 ms depending on what else is running. The waiter measures the overshoot of every park and keeps the spin
+ * phase just long enough to absorb it.
+ * </p>
+ */
+public class HybridWaiter {
+
+    private static final long MIN_SPIN_THRESHOLD = 100_000;
+    private static final long MAX_SPIN_THRESHOLD = 4_000_000;
+    private static final double OVERSHOOT_WEIGHT = 0.1;
+
+    private double overshoot = 1_000_000;
+    private double overshootDeviation = 250_000;
+
+    /**
+     * @return how far before the deadline parking stops
+     */
+    public long getSpinThreshold() {
+        var threshold = (long) (overshoot + 4 * overshootDeviation);
+        return Math.clamp(threshold, MIN_SPIN_THRESHOLD, MAX_SPIN_THRESHOLD);
+    }
+
+    public void waitUntil(long deadline) {
+        var spinThreshold = getSpinThreshold();
+        for (long remaining = deadline - System.nanoTime(); remaining > spinThreshold; remaining = deadline - System.nanoTime()) {
+            var requested = remaining - spinThreshold;
+            var parkStart = System.nanoTime();
+            LockSupport.parkNanos(requested);
+            calibrate(System.nanoTime() - parkStart - requested);
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void calibrate(long measuredOvershoot) {
+        // an early wakeup (spurious or interrupt) says nothing about the timer resolution
+        if (measuredOvershoot < 0) {
+            return;
+        }
+        overshootDeviation += OVERSHOOT_WEIGHT * (Math.abs(measuredOvershoot - overshoot) - overshootDeviation);
+        overshoot += OVERSHOOT_WEIGHT * (measuredOvershoot - overshoot);
+    }
+}
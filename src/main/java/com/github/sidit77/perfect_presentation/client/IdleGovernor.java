@@ -0,0 +1,158 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * Decides for every frame whether presenting it is worth anything, and how fast the render loop has to run.
+ * <p>
+ * Three situations slow things down:
+ * </p>
+ * <ul>
+ *     <li>Occluded: the last present reported that nothing of the window is visible. Frames are neither blitted nor
+ *     presented, only a test present checks whether the window is visible again, at intervals that double up to
+ *     {@link #MAX_OCCLUSION_BACKOFF}.</li>
+ *     <li>Idle: the content is static (the game is paused) and there was no input for {@link #INPUT_GRACE_PERIOD}.
+ *     The first static frame is still presented, the identical ones after it are skipped and the loop runs at the
+ *     background frame rate, or at the refresh rate if there is none.</li>
+ *     <li>Unfocused: every frame is presented, but only at the background frame rate.</li>
+ * </ul>
+ * <p>
+ * Input or damage (like a resize) ends all of them right away. Not thread-safe, everything happens on the render
+ * thread.
+ * </p>
+ */
+public class IdleGovernor {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    static final long INPUT_GRACE_PERIOD = 500_000_000L;
+    static final long MIN_OCCLUSION_BACKOFF = 16_000_000L;
+    static final long MAX_OCCLUSION_BACKOFF = 500_000_000L;
+
+    public enum Action {
+        /** Blit and present as usual */
+        PRESENT,
+        /** Leave the screen as it is */
+        SKIP,
+        /** Only check whether the window is still occluded */
+        TEST_OCCLUSION
+    }
+
+    private boolean skipUnchangedFrames = false;
+    private int backgroundFrameRate = 0;
+
+    private Action action = Action.PRESENT;
+    private boolean focused = true;
+    private boolean occluded = false;
+    private long occlusionBackoff = MIN_OCCLUSION_BACKOFF;
+    private long nextOcclusionTest = 0;
+    private long lastActivity = Long.MIN_VALUE;
+    private boolean staticFramePresented = false;
+
+    /**
+     * @param skipUnchangedFrames whether frames of static content may be skipped
+     * @param backgroundFrameRate frame rate while idle or unfocused, {@code 0} to not limit it
+     */
+    public void configure(boolean skipUnchangedFrames, int backgroundFrameRate) {
+        this.skipUnchangedFrames = skipUnchangedFrames;
+        this.backgroundFrameRate = Math.max(backgroundFrameRate, 0);
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public boolean isOccluded() {
+        return occluded;
+    }
+
+    /**
+     * Something changed what is on screen, for example the user typed or the window was resized.
+     */
+    public void onActivity(long now) {
+        lastActivity = now;
+        staticFramePresented = false;
+        if (occluded) {
+            // look again right away
+            occlusionBackoff = MIN_OCCLUSION_BACKOFF;
+            nextOcclusionTest = now;
+        }
+    }
+
+    public void setFocused(boolean focused, long now) {
+        this.focused = focused;
+        if (focused) {
+            onActivity(now);
+        }
+    }
+
+    /**
+     * @param contentStatic whether the game draws the same frame as last time unless there is input
+     */
+    public Action beginFrame(long now, boolean contentStatic) {
+        if (occluded) {
+            action = now - nextOcclusionTest >= 0 ? Action.TEST_OCCLUSION : Action.SKIP;
+        } else if (!contentStatic) {
+            staticFramePresented = false;
+            action = Action.PRESENT;
+        } else if (skipUnchangedFrames && staticFramePresented && now - lastActivity >= INPUT_GRACE_PERIOD) {
+            action = Action.SKIP;
+        } else {
+            action = Action.PRESENT;
+        }
+        return action;
+    }
+
+    /**
+     * Called after a frame was presented.
+     *
+     * @param occluded whether the present reported the window as occluded
+     */
+    public void onPresented(long now, boolean occluded, boolean contentStatic) {
+        if (occluded) {
+            this.occluded = true;
+            occlusionBackoff = MIN_OCCLUSION_BACKOFF;
+            nextOcclusionTest = now + occlusionBackoff;
+        } else if (contentStatic) {
+            staticFramePresented = true;
+        }
+    }
+
+    /**
+     * Called after {@link Action#TEST_OCCLUSION}.
+     */
+    public void onOcclusionTested(long now, boolean occluded) {
+        if (occluded) {
+            occlusionBackoff = Math.min(occlusionBackoff * 2, MAX_OCCLUSION_BACKOFF);
+            nextOcclusionTest = now + occlusionBackoff;
+        } else {
+            this.occluded = false;
+            occlusionBackoff = MIN_OCCLUSION_BACKOFF;
+            staticFramePresented = false;
+        }
+    }
+
+    /**
+     * @return the frame rate the presented frames should be limited to, {@code 0} for no limit
+     */
+    public int getFrameRateLimit() {
+        if (backgroundFrameRate > 0 && (!focused || action == Action.SKIP)) {
+            return backgroundFrameRate;
+        }
+        return 0;
+    }
+
+    /**
+     * @param frameStart when the current frame started
+     * @param refreshPeriod the refresh period of the display, skipped frames never wait on the swap chain so they
+     *                      are at least paced by this
+     * @return when the render loop should start the next frame, {@code Long.MIN_VALUE} to start it right away
+     */
+    public long getWakeUpTime(long frameStart, long refreshPeriod) {
+        if (occluded) {
+            return nextOcclusionTest;
+        }
+        var limit = getFrameRateLimit();
+        if (limit > 0) {
+            return frameStart + NANOS_PER_SECOND / limit;
+        }
+        return action == Action.SKIP ? frameStart + refreshPeriod : Long.MIN_VALUE;
+    }
+}
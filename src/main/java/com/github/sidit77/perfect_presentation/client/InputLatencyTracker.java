@@ -0,0 +1,122 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * Follows input events from the moment they arrive to the present, and if possible the vblank, of the frame that
+ * reacted to them.
+ * <p>
+ * Events are timestamped when GLFW hands them to the game, which is as early as they can be seen from Java. Each
+ * one goes through three steps: it is received, a frame consumes it when it starts, and that frame is presented and
+ * later shown. Events received while a frame is running are consumed by the next one. Frames that are not presented
+ * pass their events on to the next frame that is.
+ * </p>
+ * <p>
+ * All events live in a preallocated ring, so a 1000 Hz mouse costs a few array writes per event and nothing is
+ * allocated. Once the ring is full, the oldest events waiting for their vblank are given up, and if none are left
+ * new events are dropped. Not thread-safe, GLFW calls back on the render thread.
+ * </p>
+ */
+public class InputLatencyTracker {
+
+    public enum Kind {
+        KEY,
+        MOUSE_BUTTON,
+        CURSOR,
+        SCROLL
+    }
+
+    public interface Listener {
+        /**
+         * @param latency time from receiving the event to the start of the {@code Present} call of its frame
+         */
+        void onEventPresented(Kind kind, long frame, long latency);
+
+        /**
+         * @param latency time from receiving the event to the vblank its frame was first shown on
+         */
+        void onEventDisplayed(Kind kind, long frame, long latency);
+    }
+
+    // must be a power of two
+    private static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+    // presented frames whose vblank is still unknown after this many frames never get one
+    private static final int MAX_DISPLAY_DELAY = 64;
+    private static final Kind[] KINDS = Kind.values();
+
+    private final Listener listener;
+    private final long[] times = new long[CAPACITY];
+    private final byte[] kinds = new byte[CAPACITY];
+    private final long[] frames = new long[CAPACITY];
+
+    // [head, presented) wait for their vblank, [presented, consumed) for their present, [consumed, tail) for a frame
+    private long head = 0;
+    private long presented = 0;
+    private long consumed = 0;
+    private long tail = 0;
+    private long droppedEvents = 0;
+
+    public InputLatencyTracker(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the number of events that found the ring full
+     */
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    public void onEvent(Kind kind, long time) {
+        if (tail - head == CAPACITY) {
+            if (head == presented) {
+                droppedEvents++;
+                return;
+            }
+            head++;
+        }
+        var slot = (int) (tail & MASK);
+        times[slot] = time;
+        kinds[slot] = (byte) kind.ordinal();
+        tail++;
+    }
+
+    /**
+     * A frame starts and reads every event received so far.
+     */
+    public void onFrameStart() {
+        consumed = tail;
+    }
+
+    /**
+     * @param frame the index of the frame, the same one later passed to {@link #onFrameDisplayed}
+     * @param presentTime the time right before the {@code Present} call
+     */
+    public void onPresent(long frame, long presentTime) {
+        // events of frames the statistics never reported on
+        while (head < presented && frame - frames[(int) (head & MASK)] > MAX_DISPLAY_DELAY) {
+            head++;
+        }
+        for (; presented < consumed; presented++) {
+            var slot = (int) (presented & MASK);
+            frames[slot] = frame;
+            listener.onEventPresented(KINDS[kinds[slot]], frame, presentTime - times[slot]);
+        }
+    }
+
+    /**
+     * @param frame the index of a presented frame
+     * @param displayTime the time of the vblank it was first shown on
+     */
+    public void onFrameDisplayed(long frame, long displayTime) {
+        for (; head < presented; head++) {
+            var slot = (int) (head & MASK);
+            if (frames[slot] > frame) {
+                break;
+            }
+            // earlier frames were replaced before they were ever shown
+            if (frames[slot] == frame) {
+                listener.onEventDisplayed(KINDS[kinds[slot]], frame, displayTime - times[slot]);
+            }
+        }
+    }
+}
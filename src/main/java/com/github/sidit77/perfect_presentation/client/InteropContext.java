@@ -1,109 +1,183 @@
 package com.github.sidit77.perfect_presentation.client;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import org.jetbrains.annotations.Nullable;
-import org.lwjgl.system.MemoryStack;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.system.JNI;
 import org.lwjgl.system.windows.WindowsUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import windows.win32.foundation.WAIT_EVENT;
-import windows.win32.graphics.direct3d.D3D_DRIVER_TYPE;
 import windows.win32.graphics.direct3d.D3D_PRIMITIVE_TOPOLOGY;
-import windows.win32.graphics.direct3d.ID3DBlob;
 import windows.win32.graphics.direct3d11.*;
 import windows.win32.graphics.dxgi.*;
 import windows.win32.graphics.dxgi.common.DXGI_ALPHA_MODE;
 import windows.win32.graphics.dxgi.common.DXGI_FORMAT;
 import windows.win32.graphics.dxgi.common.DXGI_SAMPLE_DESC;
-import windows.win32.system.com.IUnknown;
 
 import java.lang.foreign.Arena;
 import java.lang.foreign.Linker;
 import java.lang.foreign.MemorySegment;
 import java.lang.foreign.ValueLayout;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.Function;
-
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static com.github.sidit77.perfect_presentation.client.ComObjects.asRaw;
+import static com.github.sidit77.perfect_presentation.client.ComObjects.comCast;
+import static com.github.sidit77.perfect_presentation.client.ComObjects.makeResource;
 import static com.github.sidit77.perfect_presentation.client.WinError.checkSuccessful;
-import static com.mojang.blaze3d.platform.GlConst.GL_RGBA8;
+import static com.mojang.blaze3d.platform.GlConst.*;
 import static java.lang.foreign.MemorySegment.NULL;
 import static java.lang.foreign.ValueLayout.ADDRESS;
-import static java.nio.charset.StandardCharsets.*;
-import static org.lwjgl.opengl.WGLNVDXInterop.*;
-import static org.lwjgl.system.Checks.check;
-import static windows.win32.foundation.Apis.CloseHandle;
-import static windows.win32.graphics.direct3d.fxc.Apis.D3DCompile;
-import static windows.win32.graphics.direct3d11.Apis.D3D11CreateDevice;
-import static windows.win32.graphics.direct3d11.Constants.D3D11_SDK_VERSION;
-import static windows.win32.graphics.direct3d11.D3D11_CREATE_DEVICE_FLAG.D3D11_CREATE_DEVICE_BGRA_SUPPORT;
-import static windows.win32.graphics.direct3d11.D3D11_CREATE_DEVICE_FLAG.D3D11_CREATE_DEVICE_DEBUG;
-import static windows.win32.graphics.dxgi.Apis.CreateDXGIFactory1;
-import static windows.win32.system.threading.Apis.WaitForSingleObject;
-
-public class InteropContext implements AutoCloseable {
+import static org.lwjgl.system.MemoryUtil.memAddress;
+import static org.lwjgl.system.MemoryUtil.memAllocPointer;
+import static org.lwjgl.system.MemoryUtil.memFree;
 
-    private static final ThreadLocal<InteropContext> CURRENT_CONTEXT = new ThreadLocal<>();
-    public static InteropContext getCurrentContext() {
-        var context = CURRENT_CONTEXT.get();
-        if(context == null) {
-            throw new IllegalStateException("No context bound to the current thread");
-        }
-        return context;
-    }
+public class InteropContext implements PresentationBackend {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(InteropContext.class);
     private static final int SWAP_CHAIN_FLAGS = DXGI_SWAP_CHAIN_FLAG.ALLOW_TEARING | DXGI_SWAP_CHAIN_FLAG.FRAME_LATENCY_WAITABLE_OBJECT;
-
-    private final WGLContext openglContext;
+    // constant buffers have to be a multiple of 16 bytes
+    static final long BLIT_CONSTANTS_SIZE = 16;
+    // how many unused shared textures are kept around for reuse
+    private static final int SHARED_TEXTURE_POOL_CAPACITY = 2;
+    // how many readbacks can be in flight at once, a capture drops frames while the GPU is further behind than this
+    private static final int READBACK_RING_SIZE = 3;
+    private static final int DXGI_ERROR_WAS_STILL_DRAWING = 0x887A000A;
+    private static final int DXGI_STATUS_OCCLUDED = 0x087A0001;
+    private static final int DXGI_MAX_SWAP_CHAIN_BUFFERS = 16;
+    // how many frames the render thread may hand to the presentation thread before it has to wait
+    private static final int PRESENT_QUEUE_CAPACITY = 2;
+
+    private final InteropPlatform platform;
+    private final InteropPlatform.Context openglContext;
+
+    // Lives as long as the context; everything the per-frame path hands to native code is allocated here once
+    private final Arena contextArena = Arena.ofShared();
+    private final MemorySegment shaderResourceViewPtr = contextArena.allocate(ADDRESS);
+    private final MemorySegment renderTargetViewPtr = contextArena.allocate(ADDRESS);
+    private final MemorySegment copyBox = D3D11_BOX.allocate(contextArena);
+    private final MemorySegment mappedReadback = D3D11_MAPPED_SUBRESOURCE.allocate(contextArena);
+    private final MemorySegment frameStatistics = DXGI_FRAME_STATISTICS.allocate(contextArena);
+    private final MemorySegment lastPresentCount = contextArena.allocate(ValueLayout.JAVA_INT);
+    private final MemorySegment pointSamplerPtr = contextArena.allocate(ADDRESS);
+    private final MemorySegment linearSamplerPtr = contextArena.allocate(ADDRESS);
+    private final MemorySegment constantBufferPtr = contextArena.allocate(ADDRESS);
+    private final MemorySegment blitConstants = contextArena.allocate(BLIT_CONSTANTS_SIZE, 16);
 
     private final long interopDeviceHandle;
+    // entry points of wglDX(Un)LockObjectsNV, called through interopLock
+    private final long lockObjectsFunction;
+    private final long unlockObjectsFunction;
 
     private final ID3D11Device device;
     private final ID3D11DeviceContext context;
     private final IDXGISwapChain2 swapChain;
     private final WaitHandle waitHandle;
     private @Nullable ID3D11RenderTargetView renderTargetView = null;
-
-    private final Map<Integer, SharedTexture> sharedTextures = new HashMap<>();
+    private int backBufferWidth = 0;
+    private int backBufferHeight = 0;
+
+    private final ID3D11PixelShader pixelShader;
+    private final ID3D11PixelShader sharpenPixelShader;
+    private final ID3D11SamplerState pointSampler;
+    private final ID3D11SamplerState linearSampler;
+    private final ID3D11Buffer constantBuffer;
+    private @Nullable BlitMode boundBlitMode = null;
+    // set by the render thread, picked up by whichever thread blits
+    private float requestedSharpness = 0.0f;
+    private float sharpness = 0.0f;
+    private boolean blitConstantsDirty = true;
+
+    private final Int2ObjectMap<SharedTextureChain> sharedTextures = new Int2ObjectOpenHashMap<>();
+    private @Nullable SharedTextureChain lastBlitTexture = null;
+    private final ArrayList<SharedTextureChain> sharedTexturePool = new ArrayList<>(SHARED_TEXTURE_POOL_CAPACITY);
+    private final ArrayDeque<ReadbackRequest> readbackRequests = new ArrayDeque<>();
+    private final ReadbackTexture[] readbackRing = new ReadbackTexture[READBACK_RING_SIZE];
+    private int pendingReadbacks = 0;
+    private @Nullable FrameCapture frameCapture = null;
+    private int sharedTextureRingSize = 1;
     private int syncInterval = 1;
+    // written by the render thread, read by resizes on the presentation thread
+    private volatile int maxFrameLatency = 1;
+    private int bufferCount = 2;
+    private volatile int requestedBufferCount = 0;
+    private TearingMode tearingMode = TearingMode.UNSYNCED;
+    private long frameIndex = 0;
+    private final long qpcFrequency;
+    private boolean frameStatisticsAvailable = false;
+    // written by whichever thread presents
+    private volatile boolean occluded = false;
+
+    private @Nullable FrameHandoff<PresentRequest> presentQueue = null;
+    private @Nullable Thread presentationThread = null;
+    private volatile @Nullable Throwable presentationFailure = null;
+    // claimed by the blit or a resize, published by the present
+    private @Nullable PresentRequest pendingRequest = null;
+    private boolean multithreadProtected = false;
+
+    /**
+     * @param resources the window independent part of the context, usually started by
+     *                  {@link DeviceResources#createAsync(boolean, ShaderCache)} well before the window exists
+     */
+    public InteropContext(long hwnd, ContextCreationFlags flags, CompletableFuture<DeviceResources> resources) {
+        this(InteropPlatform.WGL, hwnd, flags, resources);
+    }
 
-    public InteropContext(long hwnd, ContextCreationFlags flags) {
-        openglContext = new WGLContext(flags);
-        try (var arena = Arena.ofConfined()) {
-
-            {
-                var devicePtr = arena.allocate(ADDRESS);
-                var contextPtr = arena.allocate(ADDRESS);
-                var hr = D3D11CreateDevice(
-                        NULL,
-                        D3D_DRIVER_TYPE.HARDWARE,
-                        NULL,
-                        D3D11_CREATE_DEVICE_BGRA_SUPPORT | (PerfectPresentationClient.config.useDxDebugLayer() ? D3D11_CREATE_DEVICE_DEBUG : 0),
-                        NULL,
-                        0,
-                        D3D11_SDK_VERSION,
-                        devicePtr,
-                        NULL,
-                        contextPtr
-                );
-                checkSuccessful(hr);
-
-                this.device = ID3D11Device.wrap(devicePtr.get(ADDRESS, 0));
-                this.context = ID3D11DeviceContext.wrap(contextPtr.get(ADDRESS, 0));
-            }
-
-            this.interopDeviceHandle = check(wglDXOpenDeviceNV(asRaw(device).address()));
-
-            var factory = makeResource(arena, ptr -> CreateDXGIFactory1(IDXGIFactory2.iid(), ptr), IDXGIFactory2::wrap);
+    /**
+     * @param platform {@link InteropPlatform#WGL} outside of tests
+     */
+    InteropContext(InteropPlatform platform, long hwnd, ContextCreationFlags flags, CompletableFuture<DeviceResources> resources) {
+        var start = System.nanoTime();
+        this.platform = platform;
+        // WGL is bound to the calling thread, so this part can not be moved off the main thread
+        openglContext = DeviceResources.timed("WGL context", () -> platform.createContext(flags));
+
+        var waitStart = System.nanoTime();
+        var deviceResources = resources.join();
+        LOGGER.info("Waited {} µs for the Direct3D resources", (System.nanoTime() - waitStart) / 1000);
+
+        this.device = deviceResources.device;
+        this.context = deviceResources.context;
+        this.pixelShader = deviceResources.pixelShader;
+        this.sharpenPixelShader = deviceResources.sharpenPixelShader;
+        this.pointSampler = deviceResources.pointSampler;
+        this.linearSampler = deviceResources.linearSampler;
+        this.constantBuffer = deviceResources.constantBuffer;
+        pointSamplerPtr.set(ADDRESS, 0, asRaw(pointSampler));
+        linearSamplerPtr.set(ADDRESS, 0, asRaw(linearSampler));
+        constantBufferPtr.set(ADDRESS, 0, asRaw(constantBuffer));
+
+        this.interopDeviceHandle = DeviceResources.timed("wglDXOpenDeviceNV", () -> platform.openDevice(asRaw(device)));
+        this.lockObjectsFunction = platform.lockObjectsFunction();
+        this.unlockObjectsFunction = platform.unlockObjectsFunction();
+
+        this.swapChain = DeviceResources.timed("swap chain", () -> createSwapChain(deviceResources.factory, hwnd));
+        checkSuccessful(swapChain.SetMaximumFrameLatency(maxFrameLatency));
+        waitHandle = new WaitHandle(swapChain.GetFrameLatencyWaitableObject(), contextArena.allocate(Linker.Option.captureStateLayout()), platform);
+        qpcFrequency = platform.queryPerformanceFrequency();
+
+        context.IASetPrimitiveTopology(D3D_PRIMITIVE_TOPOLOGY.D3D11_PRIMITIVE_TOPOLOGY_TRIANGLELIST);
+        context.VSSetShader(asRaw(deviceResources.vertexShader), NULL, 0);
+        context.RSSetState(asRaw(deviceResources.rasterizerState));
+        context.PSSetConstantBuffers(0, 1, constantBufferPtr);
+
+        deviceResources.releaseSetupObjects();
+        LOGGER.info("Interop context created in {} ms on the main thread", (System.nanoTime() - start) / 1_000_000);
+    }
 
+    private IDXGISwapChain2 createSwapChain(IDXGIFactory2 factory, long hwnd) {
+        try (var arena = Arena.ofConfined()) {
             var swapChainDesc = DXGI_SWAP_CHAIN_DESC1.allocate(arena);
             DXGI_SWAP_CHAIN_DESC1.Format(swapChainDesc, DXGI_FORMAT.B8G8R8A8_UNORM);
             DXGI_SAMPLE_DESC.Count(DXGI_SWAP_CHAIN_DESC1.SampleDesc(swapChainDesc), 1);
             DXGI_SAMPLE_DESC.Quality(DXGI_SWAP_CHAIN_DESC1.SampleDesc(swapChainDesc), 0);
             DXGI_SWAP_CHAIN_DESC1.BufferUsage(swapChainDesc, DXGI_USAGE.RENDER_TARGET_OUTPUT);
-            DXGI_SWAP_CHAIN_DESC1.BufferCount(swapChainDesc, 2);
+            DXGI_SWAP_CHAIN_DESC1.BufferCount(swapChainDesc, bufferCount);
             DXGI_SWAP_CHAIN_DESC1.Scaling(swapChainDesc, DXGI_SCALING.NONE);
             DXGI_SWAP_CHAIN_DESC1.SwapEffect(swapChainDesc, DXGI_SWAP_EFFECT.FLIP_DISCARD);
             DXGI_SWAP_CHAIN_DESC1.AlphaMode(swapChainDesc, DXGI_ALPHA_MODE.UNSPECIFIED);
@@ -119,104 +193,24 @@ public class InteropContext implements AutoCloseable {
                             ptr),
                     IDXGISwapChain1::wrap);
 
-            swapChain = comCast(arena, swapChain1, IDXGISwapChain2.class);
-
-            checkSuccessful(swapChain.SetMaximumFrameLatency(1));
-            waitHandle = new WaitHandle(swapChain.GetFrameLatencyWaitableObject());
-
+            var swapChain2 = comCast(arena, swapChain1, IDXGISwapChain2.iid(), IDXGISwapChain2::wrap);
             swapChain1.Release();
-            factory.Release();
-
-            var shaderSource = arena.allocateFrom(BLIT_SHADER_SOURCE, UTF_8);
-
-            var vertexShaderBlob = compileShaderSource(arena, shaderSource, "VsMain", "vs_5_0");
-            var vertexShader = makeResource(arena, ptr -> device.CreateVertexShader(vertexShaderBlob.GetBufferPointer(), vertexShaderBlob.GetBufferSize(), NULL, ptr), ID3D11VertexShader::wrap);
-            vertexShaderBlob.Release();
-
-            var pixelShaderBlob = compileShaderSource(arena, shaderSource, "PsMain", "ps_5_0");
-            var pixelShader = makeResource(arena, ptr -> device.CreatePixelShader(pixelShaderBlob.GetBufferPointer(), pixelShaderBlob.GetBufferSize(), NULL, ptr), ID3D11PixelShader::wrap);
-            pixelShaderBlob.Release();
-
-            var rasterizerStateDesc = D3D11_RASTERIZER_DESC.allocate(arena);
-            D3D11_RASTERIZER_DESC.FillMode(rasterizerStateDesc, D3D11_FILL_MODE.D3D11_FILL_SOLID);
-            D3D11_RASTERIZER_DESC.CullMode(rasterizerStateDesc, D3D11_CULL_MODE.D3D11_CULL_NONE);
-            var rasterizerState = makeResource(arena, ptr -> device.CreateRasterizerState(rasterizerStateDesc, ptr), ID3D11RasterizerState::wrap);
-
-            var samplerStateDesc = D3D11_SAMPLER_DESC.allocate(arena);
-            D3D11_SAMPLER_DESC.Filter(samplerStateDesc, D3D11_FILTER.MIN_MAG_MIP_POINT);
-            D3D11_SAMPLER_DESC.AddressU(samplerStateDesc, D3D11_TEXTURE_ADDRESS_MODE.D3D11_TEXTURE_ADDRESS_CLAMP);
-            D3D11_SAMPLER_DESC.AddressV(samplerStateDesc, D3D11_TEXTURE_ADDRESS_MODE.D3D11_TEXTURE_ADDRESS_CLAMP);
-            D3D11_SAMPLER_DESC.AddressW(samplerStateDesc, D3D11_TEXTURE_ADDRESS_MODE.D3D11_TEXTURE_ADDRESS_CLAMP);
-            var samplerState = makeResource(arena, ptr -> device.CreateSamplerState(samplerStateDesc, ptr), ID3D11SamplerState::wrap);
-
-            context.IASetPrimitiveTopology(D3D_PRIMITIVE_TOPOLOGY.D3D11_PRIMITIVE_TOPOLOGY_TRIANGLELIST);
-            context.VSSetShader(asRaw(vertexShader), NULL, 0);
-            context.RSSetState(asRaw(rasterizerState));
-            context.PSSetShader(asRaw(pixelShader), NULL, 0);
-            context.PSSetSamplers(0, 1, arena.allocateFrom(ADDRESS, asRaw(samplerState)));
-
-            vertexShader.Release();
-            pixelShader.Release();
-            rasterizerState.Release();
-            samplerState.Release();
-        }
-    }
-
-    private static MemorySegment asRaw(IUnknown obj) {
-        if(obj instanceof IUnknown.$DOWNCALL downcall) {
-            return downcall.comObject;
-        }
-        throw new IllegalArgumentException("Not a native IUnknown object");
-    }
-    
-    private static ID3DBlob compileShaderSource(Arena arena, MemorySegment source, String entryPoint, String target) {
-        var vertexShaderBlobPtr = arena.allocate(ADDRESS);
-        var vertexShaderErrorBlobPtr = arena.allocateFrom(ADDRESS, NULL);
-        var hr = D3DCompile(
-                source,
-                source.byteSize(),
-                NULL, NULL, NULL,
-                arena.allocateFrom(entryPoint, UTF_8),
-                arena.allocateFrom(target, UTF_8),
-                0, 0,
-                vertexShaderBlobPtr, vertexShaderErrorBlobPtr);
-        if(hr != 0) {
-            var buffer = ID3DBlob.wrap(vertexShaderErrorBlobPtr.get(ADDRESS, 0));
-            var content = buffer.GetBufferPointer().reinterpret(buffer.GetBufferSize()).toArray(ValueLayout.JAVA_BYTE);
-            buffer.Release();
-            throw new RuntimeException("Failed to compile shader: " + new String(content, UTF_8));
-        }
-        checkSuccessful(hr);
-        return ID3DBlob.wrap(vertexShaderBlobPtr.get(ADDRESS, 0));
-    }
-
-    private static <T extends IUnknown> T makeResource(Arena arena, Function<MemorySegment, Integer> factory, Function<MemorySegment, T> wrapper) {
-        var ptr = arena.allocate(ADDRESS);
-        var hr = factory.apply(ptr);
-        checkSuccessful(hr);
-        return wrapper.apply(ptr.get(ADDRESS, 0));
-    }
-
-    public <T extends IUnknown> T comCast(Arena arena, IUnknown resource, Class<T> clazz){
-        try {
-            Method iidMethod = clazz.getMethod("iid");
-            MemorySegment iid = (MemorySegment) iidMethod.invoke(null);
-
-            Method wrapMethod = clazz.getMethod("wrap", MemorySegment.class);
-
-            var ptr = arena.allocate(ADDRESS);
-            checkSuccessful(resource.QueryInterface(iid, ptr));
-            return clazz.cast(wrapMethod.invoke(null, ptr.get(ADDRESS, 0)));
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException(e);
+            return swapChain2;
         }
     }
 
+    @Override
     public void makeCurrent() {
         openglContext.makeCurrent();
-        CURRENT_CONTEXT.set(this);
+        PresentationBackend.super.makeCurrent();
+    }
+
+    @Override
+    public FrameClock clock() {
+        return FrameClock.SYSTEM;
     }
 
+    @Override
     public void setSyncInterval(int syncInterval) {
         if(syncInterval < 0) {
             LOGGER.warn("Sync interval cannot be negative, clamping to 0");
@@ -225,104 +219,765 @@ public class InteropContext implements AutoCloseable {
         this.syncInterval = syncInterval;
     }
 
+    @Override
+    public int getSyncInterval() {
+        return syncInterval;
+    }
+
+    @Override
+    public void setTearingMode(TearingMode tearingMode) {
+        this.tearingMode = tearingMode;
+    }
+
+    @Override
+    public void setSwapChainBufferCount(int bufferCount) {
+        if(bufferCount != 0 && (bufferCount < 2 || bufferCount > DXGI_MAX_SWAP_CHAIN_BUFFERS)) {
+            LOGGER.warn("A flip model swap chain needs between 2 and {} buffers, ignoring {}", DXGI_MAX_SWAP_CHAIN_BUFFERS, bufferCount);
+            return;
+        }
+        this.requestedBufferCount = bufferCount;
+    }
+
+    @Override
+    public void setMaximumFrameLatency(int maxFrameLatency) {
+        if(maxFrameLatency == this.maxFrameLatency)
+            return;
+        // the swap chain is not safe to use from two threads at once
+        awaitPresentQueueIdle();
+        checkSuccessful(swapChain.SetMaximumFrameLatency(maxFrameLatency));
+        LOGGER.debug("Maximum frame latency changed from {} to {}", this.maxFrameLatency, maxFrameLatency);
+        this.maxFrameLatency = maxFrameLatency;
+    }
+
+    @Override
+    public int getMaximumFrameLatency() {
+        return maxFrameLatency;
+    }
+
+    @Override
+    public void setSharpness(float sharpness) {
+        this.requestedSharpness = Math.max(sharpness, 0.0f);
+    }
+
+    @Override
     public void waitForSwapChainSignal() {
+        var event = new PresentationEvents.SwapChainWait();
+        event.begin();
         waitHandle.waitForSignal();
+        event.end();
+        if(event.shouldCommit()) {
+            event.frame = frameIndex;
+            event.commit();
+        }
     }
 
+    @Override
     public void swapChainPresent() {
-        checkSuccessful(swapChain.Present(syncInterval, syncInterval == 0 ? DXGI_PRESENT.ALLOW_TEARING : 0));
+        var flags = syncInterval == 0 && tearingMode == TearingMode.UNSYNCED ? DXGI_PRESENT.ALLOW_TEARING : 0;
+        if(presentQueue != null) {
+            var request = claimPresentRequest();
+            request.syncInterval = syncInterval;
+            request.flags = flags;
+            pendingRequest = null;
+            presentQueue.publish();
+        } else {
+            present(syncInterval, flags, frameIndex);
+        }
+        frameIndex++;
     }
 
+    private void present(int syncInterval, int flags, long frame) {
+        var event = new PresentationEvents.Present();
+        event.begin();
+        var hr = swapChain.Present(syncInterval, flags);
+        event.end();
+        if(event.shouldCommit()) {
+            event.frame = frame;
+            event.syncInterval = syncInterval;
+            event.flags = flags;
+            event.hresult = hr;
+            event.commit();
+        }
+        checkSuccessful(hr);
+        occluded = hr == DXGI_STATUS_OCCLUDED;
+
+        // an occluded window shows nothing and its statistics stop moving; anything else failing, most notably
+        // DXGI_ERROR_FRAME_STATISTICS_DISJOINT after a mode change, just means there is nothing to report this time
+        frameStatisticsAvailable = hr != DXGI_STATUS_OCCLUDED
+                && swapChain.GetLastPresentCount(lastPresentCount) >= 0
+                && swapChain.GetFrameStatistics(frameStatistics) >= 0;
+
+        if(pendingReadbacks > 0) {
+            pollReadbacks();
+        }
+    }
+
+    @Override
+    public boolean isOccluded() {
+        return occluded;
+    }
+
+    @Override
+    public boolean testOcclusion() {
+        // the swap chain is not safe to use from two threads at once
+        awaitPresentQueueIdle();
+        var hr = swapChain.Present(0, DXGI_PRESENT.TEST);
+        checkSuccessful(hr);
+        occluded = hr == DXGI_STATUS_OCCLUDED;
+        return occluded;
+    }
+
+    @Override
+    public void getFrameStatistics(FrameStatisticsTracker.Sample target) {
+        // the statistics of a present made on the presentation thread can not be matched to the frame that asked for it
+        target.available = presentQueue == null && frameStatisticsAvailable;
+        if(!target.available)
+            return;
+        target.presentId = lastPresentCount.get(ValueLayout.JAVA_INT, 0);
+        target.presentCount = DXGI_FRAME_STATISTICS.PresentCount(frameStatistics);
+        target.presentRefreshCount = DXGI_FRAME_STATISTICS.PresentRefreshCount(frameStatistics);
+        target.syncRefreshCount = DXGI_FRAME_STATISTICS.SyncRefreshCount(frameStatistics);
+        target.syncTime = qpcToNanos(DXGI_FRAME_STATISTICS.SyncQPCTime(frameStatistics));
+    }
+
+    /**
+     * Converts a QPC timestamp to the time base of {@link System#nanoTime()}, which is QPC based on Windows.
+     */
+    private long qpcToNanos(long qpc) {
+        // split up to avoid overflowing after a few days of uptime
+        return qpc / qpcFrequency * 1_000_000_000L + qpc % qpcFrequency * 1_000_000_000L / qpcFrequency;
+    }
+
+    @Override
     public void resizeSwapChain(int width, int height) {
+        if(presentQueue != null) {
+            var request = claimPresentRequest();
+            request.resizeWidth = width;
+            request.resizeHeight = height;
+        } else {
+            resizeBuffers(width, height, frameIndex);
+        }
+    }
+
+    private void resizeBuffers(int width, int height, long frame) {
+        releaseRenderTargetView();
+        var event = new PresentationEvents.ResizeBuffers();
+        event.begin();
+        // by default one buffer on screen plus one per queued frame
+        var desiredBufferCount = requestedBufferCount > 0 ? requestedBufferCount : maxFrameLatency + 1;
+        var hr = swapChain.ResizeBuffers(desiredBufferCount == bufferCount ? 0 : desiredBufferCount, width, height, DXGI_FORMAT.UNKNOWN, SWAP_CHAIN_FLAGS);
+        if(hr >= 0)
+            bufferCount = desiredBufferCount;
+        event.end();
+        if(event.shouldCommit()) {
+            event.frame = frame;
+            event.width = width;
+            event.height = height;
+            event.hresult = hr;
+            event.commit();
+        }
+        checkSuccessful(hr);
+    }
+
+    private void createRenderTargetView() {
+        try (var arena = Arena.ofConfined()) {
+            var backBuffer = makeResource(arena, ptr -> swapChain.GetBuffer(0, ID3D11Texture2D.iid(), ptr), ID3D11Texture2D::wrap);
+
+            var view = makeResource(arena, ptr -> device.CreateRenderTargetView(asRaw(backBuffer), NULL, ptr), ID3D11RenderTargetView::wrap);
+
+            var backBufferDesc = D3D11_TEXTURE2D_DESC.allocate(arena);
+            backBuffer.GetDesc(backBufferDesc);
+
+            backBufferWidth = D3D11_TEXTURE2D_DESC.Width(backBufferDesc);
+            backBufferHeight = D3D11_TEXTURE2D_DESC.Height(backBufferDesc);
+
+            var viewPort = D3D11_VIEWPORT.allocate(arena);
+            D3D11_VIEWPORT.Width(viewPort, backBufferWidth);
+            D3D11_VIEWPORT.Height(viewPort, backBufferHeight);
+            D3D11_VIEWPORT.MaxDepth(viewPort, 1.0f);
+
+            context.RSSetViewports(1, viewPort);
+
+            backBuffer.Release();
+
+            renderTargetView = view;
+            renderTargetViewPtr.set(ADDRESS, 0, asRaw(view));
+        }
+    }
+
+    private void releaseRenderTargetView() {
         if(renderTargetView != null) {
             renderTargetView.Release();
             renderTargetView = null;
         }
-        checkSuccessful(swapChain.ResizeBuffers(0, width, height, DXGI_FORMAT.UNKNOWN, SWAP_CHAIN_FLAGS));
     }
 
+    private SharedTextureChain getSharedTexture(int glTextureIdentifier) {
+        var texture = lastBlitTexture;
+        if(texture == null || texture.glTextureIdentifier != glTextureIdentifier) {
+            texture = sharedTextures.get(glTextureIdentifier);
+            if(texture == null) {
+                throw new IllegalStateException("No shared texture allocated for this identifier: " + glTextureIdentifier);
+            }
+            lastBlitTexture = texture;
+        }
+        return texture;
+    }
+
+    @Override
+    public void setSharedTextureRingSize(int size) {
+        if(size < 1) {
+            LOGGER.warn("Shared texture ring needs at least one slot, clamping to 1");
+            size = 1;
+        }
+        this.sharedTextureRingSize = size;
+    }
+
+    @Override
+    public int acquireSharedTexture(int glTextureIdentifier) {
+        return getSharedTexture(glTextureIdentifier).acquire().glTextureIdentifier;
+    }
+
+    @Override
     public void blitSharedTextureToSwapChain(int glTextureIdentifier) {
-        var texture = sharedTextures.get(glTextureIdentifier);
-        if(texture == null) {
-            throw new IllegalStateException("No shared texture allocated for this identifier: " + glTextureIdentifier);
+        var chain = getSharedTexture(glTextureIdentifier);
+        if(presentQueue != null) {
+            var request = claimPresentRequest();
+            request.chain = chain;
+            request.texture = chain.submit(presentQueue.getClaimedSequence());
+            request.sharpness = requestedSharpness;
+        } else {
+            blit(chain, chain.submit(-1), requestedSharpness, frameIndex);
         }
-        texture.unlock();
-        try (var arena = Arena.ofConfined()) {
-            if(renderTargetView == null) {
-                var backBuffer = makeResource(arena, ptr -> swapChain.GetBuffer(0, ID3D11Texture2D.iid(), ptr), ID3D11Texture2D::wrap);
+        chain.afterBlit();
+    }
 
-                renderTargetView = makeResource(arena, ptr -> device.CreateRenderTargetView(asRaw(backBuffer), NULL, ptr), ID3D11RenderTargetView::wrap);
+    /**
+     * Draws a frame into the back buffer. Runs on the presentation thread if there is one.
+     */
+    private void blit(SharedTextureChain chain, SharedTexture texture, float sharpness, long frame) {
+        if(sharpness != this.sharpness) {
+            this.sharpness = sharpness;
+            blitConstantsDirty = true;
+        }
+        if(renderTargetView == null) {
+            createRenderTargetView();
+        }
 
-                var backBufferDesc = D3D11_TEXTURE2D_DESC.allocate(arena);
-                backBuffer.GetDesc(backBufferDesc);
+        var mode = BlitMode.select(chain.width, chain.height, backBufferWidth, backBufferHeight, sharpness > 0.0f);
+
+        var event = new PresentationEvents.BlitDraw();
+        event.begin();
+        bindBlitMode(mode);
+        draw(context, shaderResourceViewPtr, texture.rawTextureView, renderTargetViewPtr);
+        event.end();
+        if(event.shouldCommit()) {
+            event.frame = frame;
+            event.width = chain.width;
+            event.height = chain.height;
+            event.mode = mode.name();
+            event.commit();
+        }
 
-                var viewPort = D3D11_VIEWPORT.allocate(arena);
-                D3D11_VIEWPORT.Width(viewPort, D3D11_TEXTURE2D_DESC.Width(backBufferDesc));
-                D3D11_VIEWPORT.Height(viewPort, D3D11_TEXTURE2D_DESC.Height(backBufferDesc));
-                D3D11_VIEWPORT.MaxDepth(viewPort, 1.0f);
+        // only ever filled without a presentation thread
+        if(!readbackRequests.isEmpty() && readbackRequests.peekFirst().glTextureIdentifier == chain.glTextureIdentifier) {
+            if(startReadback(chain, texture, readbackRequests.peekFirst().consumer))
+                readbackRequests.removeFirst();
+        }
+        if(frameCapture != null) {
+            if(!frameCapture.wantsFrame() || !startReadback(chain, texture, null))
+                frameCapture.skipFrame();
+        }
+    }
 
-                context.RSSetViewports(1, viewPort);
+    @Override
+    public boolean requestReadback(int glTextureIdentifier, Consumer<PixelImage> consumer) {
+        // the pixels would arrive on the presentation thread, but the consumers expect the render thread
+        if(presentQueue != null)
+            return false;
+        if(!sharedTextures.containsKey(glTextureIdentifier))
+            throw new IllegalStateException("No shared texture allocated for this identifier: " + glTextureIdentifier);
+        readbackRequests.addLast(new ReadbackRequest(glTextureIdentifier, consumer));
+        return true;
+    }
 
-                backBuffer.Release();
+    @Override
+    public void setFrameCapture(@Nullable FrameCapture capture) {
+        awaitPresentQueueIdle();
+        if(frameCapture != null)
+            frameCapture.close();
+        frameCapture = capture;
+    }
+
+    /**
+     * Copies the frame into a free staging texture.
+     *
+     * @param consumer receives the frame, {@code null} sends it to the frame capture instead
+     * @return {@code false} if every staging texture is still waiting for the GPU
+     */
+    private boolean startReadback(SharedTextureChain chain, SharedTexture texture, @Nullable Consumer<PixelImage> consumer) {
+        ReadbackTexture target = null;
+        for (int i = 0; i < readbackRing.length && target == null; i++) {
+            var candidate = readbackRing[i];
+            if(candidate == null || !candidate.pending && (candidate.width != chain.width || candidate.height != chain.height)) {
+                if(candidate != null) {
+                    candidate.close();
+                }
+                target = readbackRing[i] = new ReadbackTexture(chain.width, chain.height);
+            } else if(!candidate.pending) {
+                target = candidate;
             }
+        }
+        if(target == null) {
+            return false;
+        }
+        D3D11_BOX.right(copyBox, chain.width);
+        D3D11_BOX.bottom(copyBox, chain.height);
+        D3D11_BOX.back(copyBox, 1);
+        context.CopySubresourceRegion(target.rawTexture, 0, 0, 0, 0, texture.rawTexture, 0, copyBox);
+        target.pending = true;
+        target.consumer = consumer;
+        target.timestamp = clock().nanoTime();
+        pendingReadbacks++;
+        return true;
+    }
 
-            context.PSSetShaderResources(0, 1, arena.allocateFrom(ADDRESS, asRaw(texture.textureView)));
-            context.OMSetRenderTargets(1, arena.allocateFrom(ADDRESS, asRaw(renderTargetView)), NULL);
-            context.Draw(3, 0);
+    private void pollReadbacks() {
+        for (var readback : readbackRing) {
+            if(readback == null || !readback.pending)
+                continue;
+            // never stall on the copy, just look again after the next present
+            var hr = context.Map(readback.rawTexture, 0, D3D11_MAP.READ, D3D11_MAP_FLAG.DO_NOT_WAIT, mappedReadback);
+            if(hr == DXGI_ERROR_WAS_STILL_DRAWING)
+                continue;
+            checkSuccessful(hr);
+            var rowPitch = D3D11_MAPPED_SUBRESOURCE.RowPitch(mappedReadback);
+            var data = D3D11_MAPPED_SUBRESOURCE.pData(mappedReadback).reinterpret((long) rowPitch * readback.height);
+            var consumer = readback.consumer;
+            // every shared texture is written by OpenGL, which stores the bottom row first
+            PixelImage image = null;
+            if(consumer != null) {
+                var rowSize = readback.width * 4;
+                var pixels = new byte[rowSize * readback.height];
+                for (int row = 0; row < readback.height; row++) {
+                    MemorySegment.copy(data, ValueLayout.JAVA_BYTE, (long) row * rowPitch, pixels, row * rowSize, rowSize);
+                }
+                image = new PixelImage(readback.width, readback.height, pixels, true);
+            } else if(frameCapture != null) {
+                frameCapture.offer(readback.timestamp, readback.width, readback.height, data, rowPitch, true);
+            }
+            context.Unmap(readback.rawTexture, 0);
 
+            readback.pending = false;
+            readback.consumer = null;
+            pendingReadbacks--;
+            if(image != null)
+                consumer.accept(image);
         }
-        texture.lock();
     }
 
+    /**
+     * The draw call of the blit, with every argument prepared up front so nothing is allocated per frame. Works with
+     * any device context, which is what the benchmarks and tests rely on.
+     *
+     * @param shaderResourceViewPtr one pointer of scratch space for the shader resource view
+     * @param renderTargetViewPtr points to the render target view
+     */
+    static void draw(ID3D11DeviceContext context, MemorySegment shaderResourceViewPtr, MemorySegment textureView, MemorySegment renderTargetViewPtr) {
+        shaderResourceViewPtr.set(ADDRESS, 0, textureView);
+        context.PSSetShaderResources(0, 1, shaderResourceViewPtr);
+        context.OMSetRenderTargets(1, renderTargetViewPtr, NULL);
+        context.Draw(3, 0);
+    }
+
+    /**
+     * Calls {@code wglDXLockObjectsNV} or {@code wglDXUnlockObjectsNV}, whichever {@code function} points to. Both take
+     * the same arguments, and calling the entry point directly lets the benchmarks and tests swap in a stand-in without
+     * a WGL context.
+     *
+     * @return whether the call succeeded
+     */
+    static boolean interopLock(long function, long device, PointerBuffer handles) {
+        return JNI.callPPI(device, handles.remaining(), memAddress(handles), function) != 0;
+    }
+
+    private void bindBlitMode(BlitMode mode) {
+        if(blitConstantsDirty) {
+            blitConstants.set(ValueLayout.JAVA_FLOAT, 0, sharpness);
+            context.UpdateSubresource(asRaw(constantBuffer), 0, NULL, blitConstants, 0, 0);
+            blitConstantsDirty = false;
+        }
+        if(mode == boundBlitMode)
+            return;
+        context.PSSetShader(asRaw(mode == BlitMode.DRAW_SHARPENED ? sharpenPixelShader : pixelShader), NULL, 0);
+        context.PSSetSamplers(0, 1, mode == BlitMode.DRAW ? pointSamplerPtr : linearSamplerPtr);
+        boundBlitMode = mode;
+    }
+
+    @Override
     public void allocateSharedTexture(int glTextureIdentifier, int glTextureType, int glTextureFormat, int width, int height) {
         if(sharedTextures.containsKey(glTextureIdentifier))
             throw new IllegalStateException("Shared texture already allocated for this identifier: " + glTextureIdentifier);
 
-        var texture = new SharedTexture(glTextureIdentifier, glTextureType, glTextureFormat, width, height);
-        texture.lock();
+        var event = new PresentationEvents.SharedTextureAllocation();
+        event.begin();
+        SharedTextureChain texture = null;
+        for (int i = 0; i < sharedTexturePool.size(); i++) {
+            if(sharedTexturePool.get(i).fits(glTextureType, glTextureFormat, width, height, sharedTextureRingSize)) {
+                texture = sharedTexturePool.remove(i);
+                break;
+            }
+        }
+        var reused = texture != null;
+        if(texture == null) {
+            texture = new SharedTextureChain(glTextureType, glTextureFormat, width, height, sharedTextureRingSize);
+        }
+        texture.assign(glTextureIdentifier);
+        event.end();
+        if(event.shouldCommit()) {
+            event.frame = frameIndex;
+            event.glTexture = glTextureIdentifier;
+            event.width = width;
+            event.height = height;
+            event.reused = reused;
+            event.commit();
+        }
         sharedTextures.put(glTextureIdentifier, texture);
     }
 
+    @Override
     public void deallocateSharedTexture(int glTextureIdentifier) {
         var texture = sharedTextures.remove(glTextureIdentifier);
         if(texture == null)
             throw new IllegalStateException("No shared texture allocated for this identifier: " + glTextureIdentifier);
-        texture.close();
+        if(texture == lastBlitTexture)
+            lastBlitTexture = null;
+        if(readbackRequests.removeIf(request -> request.glTextureIdentifier == glTextureIdentifier))
+            LOGGER.warn("Dropped a readback because its shared texture was released before the next frame");
+        var event = new PresentationEvents.SharedTextureRelease();
+        event.begin();
+        texture.recycle();
+        if(sharedTexturePool.size() == SHARED_TEXTURE_POOL_CAPACITY) {
+            sharedTexturePool.removeFirst().close();
+        }
+        sharedTexturePool.add(texture);
+        event.end();
+        if(event.shouldCommit()) {
+            event.frame = frameIndex;
+            event.glTexture = glTextureIdentifier;
+            event.commit();
+        }
     }
 
     @Override
     public void close() {
+        stopPresentationThread();
         context.ClearState();
 
         for (var texture : sharedTextures.values()) {
             texture.close();
         }
         sharedTextures.clear();
-
-        if (renderTargetView != null) {
-            renderTargetView.Release();
-            renderTargetView = null;
+        lastBlitTexture = null;
+        for (var texture : sharedTexturePool) {
+            texture.close();
         }
+        sharedTexturePool.clear();
+        readbackRequests.clear();
+        for (int i = 0; i < readbackRing.length; i++) {
+            if (readbackRing[i] != null) {
+                readbackRing[i].close();
+                readbackRing[i] = null;
+            }
+        }
+        pendingReadbacks = 0;
+        setFrameCapture(null);
+
+        releaseRenderTargetView();
 
         waitHandle.close();
         swapChain.Release();
 
-        wglDXCloseDeviceNV(interopDeviceHandle);
+        pixelShader.Release();
+        sharpenPixelShader.Release();
+        pointSampler.Release();
+        linearSampler.Release();
+        constantBuffer.Release();
+
+        platform.closeDevice(interopDeviceHandle);
 
         context.Release();
         device.Release();
 
         openglContext.close();
+        contextArena.close();
+    }
+
+    @Override
+    public void setPresentationThread(boolean enabled) {
+        if(enabled == (presentQueue != null))
+            return;
+        if(!enabled) {
+            stopPresentationThread();
+            return;
+        }
+        if(sharedTextureRingSize < 2)
+            LOGGER.warn("With a single shared texture the render thread waits for every blit, the presentation thread needs a ring of at least 2 to help");
+        if(!readbackRequests.isEmpty()) {
+            LOGGER.warn("Dropped {} readbacks because presentation moved to its own thread", readbackRequests.size());
+            readbackRequests.clear();
+        }
+        if(!multithreadProtected) {
+            // the interop locks on the render thread touch the Direct3D device while the presentation thread uses it
+            try (var arena = Arena.ofConfined()) {
+                var multithread = comCast(arena, context, ID3D11Multithread.iid(), ID3D11Multithread::wrap);
+                multithread.SetMultithreadProtected(1);
+                multithread.Release();
+            }
+            multithreadProtected = true;
+        }
+        var queue = new FrameHandoff<>(PRESENT_QUEUE_CAPACITY, PresentRequest::new);
+        presentationFailure = null;
+        presentQueue = queue;
+        presentationThread = new Thread(() -> runPresentationThread(queue), "Perfect Presentation Present");
+        presentationThread.setDaemon(true);
+        presentationThread.setPriority(Thread.MAX_PRIORITY);
+        presentationThread.start();
+        LOGGER.info("Presenting on a dedicated thread");
+    }
+
+    private void runPresentationThread(FrameHandoff<PresentRequest> queue) {
+        try {
+            for (var request = queue.take(); request != null; request = queue.take()) {
+                if(request.resizeWidth >= 0)
+                    resizeBuffers(request.resizeWidth, request.resizeHeight, request.frame);
+                if(request.chain != null && request.texture != null)
+                    blit(request.chain, request.texture, request.sharpness, request.frame);
+                present(request.syncInterval, request.flags, request.frame);
+                request.clear();
+                queue.release();
+            }
+        } catch (Throwable t) {
+            presentationFailure = t;
+            queue.close();
+        }
+    }
+
+    /**
+     * Finishes every published frame and brings presentation back onto the render thread.
+     */
+    private void stopPresentationThread() {
+        var queue = presentQueue;
+        if(queue == null)
+            return;
+        queue.close();
+        try {
+            presentationThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        presentQueue = null;
+        presentationThread = null;
+        // the next queue starts counting from zero again
+        for (var chain : sharedTextures.values())
+            chain.forgetPresentRequests();
+        for (var chain : sharedTexturePool)
+            chain.forgetPresentRequests();
+        // a frame that was blitted but not presented yet simply gets blitted again, only its resize must not be lost
+        var request = pendingRequest;
+        pendingRequest = null;
+        if(request != null && request.resizeWidth >= 0)
+            resizeBuffers(request.resizeWidth, request.resizeHeight, frameIndex);
+        var failure = presentationFailure;
+        if(failure != null)
+            LOGGER.warn("The presentation thread had failed", failure);
+    }
+
+    /**
+     * @return the request of the current frame, claiming one if the frame has none yet
+     */
+    private PresentRequest claimPresentRequest() {
+        if(pendingRequest == null) {
+            var request = presentQueue.claim();
+            if(request == null)
+                throw presentationThreadFailed();
+            request.frame = frameIndex;
+            pendingRequest = request;
+        }
+        return pendingRequest;
+    }
+
+    /**
+     * Waits until the presentation thread is done with the given request, negative requests are done right away.
+     */
+    private void awaitPresentQueue(long request) {
+        var queue = presentQueue;
+        if(queue != null && !queue.awaitReleased(request))
+            throw presentationThreadFailed();
+    }
+
+    /**
+     * Waits until the presentation thread is done with every frame handed to it so far.
+     */
+    private void awaitPresentQueueIdle() {
+        var queue = presentQueue;
+        if(queue != null && !queue.awaitIdle())
+            throw presentationThreadFailed();
+    }
+
+    private IllegalStateException presentationThreadFailed() {
+        return new IllegalStateException("The presentation thread failed", presentationFailure);
+    }
+
+    /**
+     * Everything the presentation thread needs for one frame, reused in turn.
+     */
+    private static final class PresentRequest {
+        private long frame;
+        private int resizeWidth = -1;
+        private int resizeHeight;
+        private @Nullable SharedTextureChain chain;
+        private @Nullable SharedTexture texture;
+        private float sharpness;
+        private int syncInterval;
+        private int flags;
+
+        void clear() {
+            resizeWidth = -1;
+            chain = null;
+            texture = null;
+        }
+    }
+
+    /**
+     * The ring of shared textures standing in for a single OpenGL color texture.
+     * <p>
+     * All OpenGL textures of the ring are owned by the chain, the texture the game created only serves as the key
+     * it is looked up by. The textures have exactly the size of the game's texture, since the game samples and reads
+     * back its color texture as a whole, so a pooled chain is only reused for the same size.
+     * </p>
+     */
+    private class SharedTextureChain implements AutoCloseable {
+
+        private int glTextureIdentifier;
+        private final int width;
+        private final int height;
+        private final int glTextureType;
+        private final int glTextureFormat;
+        private final SharedTexture[] slots;
+        // the present request each slot was last handed to the presentation thread with
+        private final long[] slotRequests;
+        private final SharedTextureRing ring;
+
+        SharedTextureChain(int glTextureType, int glTextureFormat, int width, int height, int size) {
+            this.width = width;
+            this.height = height;
+            this.glTextureType = glTextureType;
+            this.glTextureFormat = glTextureFormat;
+            this.ring = new SharedTextureRing(size);
+            this.slots = new SharedTexture[size];
+            this.slotRequests = new long[size];
+            Arrays.fill(slotRequests, -1);
+            for (int i = 0; i < size; i++) {
+                slots[i] = new SharedTexture(platform.createTexture(), glTextureType, glTextureFormat, width, height);
+                slots[i].lock();
+            }
+        }
+
+        boolean fits(int glTextureType, int glTextureFormat, int width, int height, int size) {
+            return this.glTextureType == glTextureType && this.glTextureFormat == glTextureFormat
+                    && this.width == width && this.height == height && ring.size() == size;
+        }
+
+        void assign(int glTextureIdentifier) {
+            this.glTextureIdentifier = glTextureIdentifier;
+        }
+
+        /**
+         * @return the texture OpenGL should render the current frame into
+         */
+        SharedTexture acquire() {
+            var slot = ring.getRenderSlot();
+            if(slot == -1) {
+                var next = ring.getNextSlot();
+                if(ring.getState(next) == SharedTextureRing.SlotState.PRESENTING) {
+                    awaitPresentQueue(slotRequests[next]);
+                    slots[next].lock();
+                    ring.reclaim(next);
+                }
+                slot = ring.beginRender();
+            }
+            return slots[slot];
+        }
+
+        /**
+         * Finishes the current frame and hands its texture over to Direct3D.
+         *
+         * @param request the present request that reads the texture on the presentation thread, or {@code -1}
+         */
+        SharedTexture submit(long request) {
+            acquire();
+            var slot = ring.endRender();
+            slotRequests[slot] = request;
+            var texture = slots[slot];
+            texture.unlock();
+            return texture;
+        }
+
+        void forgetPresentRequests() {
+            Arrays.fill(slotRequests, -1);
+        }
+
+        void afterBlit() {
+            // without a second slot OpenGL needs this texture back for the next frame right away
+            if(ring.size() == 1) {
+                awaitPresentQueue(slotRequests[0]);
+                slots[0].lock();
+                ring.reclaim(0);
+            }
+        }
+
+        /**
+         * Takes every texture back from Direct3D so the chain can be handed out again.
+         */
+        void recycle() {
+            for (int i = 0; i < slots.length; i++) {
+                if (!slots[i].locked) {
+                    awaitPresentQueue(slotRequests[i]);
+                    slots[i].lock();
+                }
+            }
+            ring.reset();
+            glTextureIdentifier = -1;
+        }
+
+        @Override
+        public void close() {
+            for (var texture : slots) {
+                texture.close();
+            }
+        }
     }
 
     public class SharedTexture implements AutoCloseable {
 
+        private final int glTextureIdentifier;
+        private final int width;
+        private final int height;
+        private final ID3D11Texture2D texture;
+        private final MemorySegment rawTexture;
         private final ID3D11ShaderResourceView textureView;
+        private final MemorySegment rawTextureView;
         private final long interopHandle;
+        // wglDX(Un)LockObjectsNV take an array of handles, so keep a single-element one around instead of building it per call
+        private final PointerBuffer interopHandles;
         private boolean locked = false;
 
         @SuppressWarnings("SwitchStatementWithTooFewBranches")
         public SharedTexture(int glTextureIdentifier, int glTextureType, int glTextureFormat, int width, int height) {
+            this.glTextureIdentifier = glTextureIdentifier;
+            this.width = width;
+            this.height = height;
             try (var arena = Arena.ofConfined()) {
                 var textureDesc = D3D11_TEXTURE2D_DESC.allocate(arena);
                 D3D11_TEXTURE2D_DESC.Width(textureDesc, width);
@@ -341,18 +996,14 @@ public class InteropContext implements AutoCloseable {
                 D3D11_TEXTURE2D_DESC.CPUAccessFlags(textureDesc, 0);
                 D3D11_TEXTURE2D_DESC.MiscFlags(textureDesc, 0);
 
-                var texture = makeResource(arena, ptr -> device.CreateTexture2D(textureDesc, NULL, ptr), ID3D11Texture2D::wrap);
+                texture = makeResource(arena, ptr -> device.CreateTexture2D(textureDesc, NULL, ptr), ID3D11Texture2D::wrap);
+                rawTexture = asRaw(texture);
                 textureView = makeResource(arena, ptr -> device.CreateShaderResourceView(asRaw(texture), NULL, ptr), ID3D11ShaderResourceView::wrap);
+                rawTextureView = asRaw(textureView);
 
-                interopHandle = check(wglDXRegisterObjectNV(
-                        interopDeviceHandle,
-                        asRaw(texture).address(),
-                        glTextureIdentifier,
-                        glTextureType,
-                        WGL_ACCESS_WRITE_DISCARD_NV));
-
-                texture.Release();
+                interopHandle = platform.registerObject(interopDeviceHandle, rawTexture, glTextureIdentifier, glTextureType);
 
+                interopHandles = memAllocPointer(1).put(0, interopHandle);
             }
         }
 
@@ -362,10 +1013,17 @@ public class InteropContext implements AutoCloseable {
                 return;
             }
 
-            try(var memStack = MemoryStack.stackPush()) {
-                if(!wglDXLockObjectsNV(interopDeviceHandle, memStack.callocPointer(1).put(0, interopHandle))) {
-                    WindowsUtil.windowsThrowException("Failed to lock the shared texture");
-                }
+            var event = new PresentationEvents.InteropLock();
+            event.begin();
+            var success = interopLock(lockObjectsFunction, interopDeviceHandle, interopHandles);
+            event.end();
+            if(event.shouldCommit()) {
+                event.frame = frameIndex;
+                event.glTexture = glTextureIdentifier;
+                event.commit();
+            }
+            if(!success) {
+                WindowsUtil.windowsThrowException("Failed to lock the shared texture");
             }
 
             locked = true;
@@ -377,10 +1035,17 @@ public class InteropContext implements AutoCloseable {
                 return;
             }
 
-            try(var memStack = MemoryStack.stackPush()) {
-                if(!wglDXUnlockObjectsNV(interopDeviceHandle, memStack.callocPointer(1).put(0, interopHandle))) {
-                    WindowsUtil.windowsThrowException("Failed to unlock the shared texture");
-                }
+            var event = new PresentationEvents.InteropUnlock();
+            event.begin();
+            var success = interopLock(unlockObjectsFunction, interopDeviceHandle, interopHandles);
+            event.end();
+            if(event.shouldCommit()) {
+                event.frame = frameIndex;
+                event.glTexture = glTextureIdentifier;
+                event.commit();
+            }
+            if(!success) {
+                WindowsUtil.windowsThrowException("Failed to unlock the shared texture");
             }
 
             locked = false;
@@ -391,19 +1056,71 @@ public class InteropContext implements AutoCloseable {
             if (locked) {
                 unlock();
             }
-            if(!wglDXUnregisterObjectNV(interopDeviceHandle, interopHandle)) {
+            if(!platform.unregisterObject(interopDeviceHandle, interopHandle)) {
                 WindowsUtil.windowsThrowException("Failed to unregister the shared texture");
             }
+            memFree(interopHandles);
             textureView.Release();
+            texture.Release();
+            platform.releaseTexture(glTextureIdentifier);
         }
     }
 
-    private record WaitHandle(MemorySegment handle) implements AutoCloseable {
+    private record ReadbackRequest(int glTextureIdentifier, Consumer<PixelImage> consumer) { }
+
+    /**
+     * A CPU readable copy of a frame.
+     */
+    private class ReadbackTexture implements AutoCloseable {
+
+        private final int width;
+        private final int height;
+        private final ID3D11Texture2D texture;
+        private final MemorySegment rawTexture;
+        private boolean pending = false;
+        // frames without a consumer go to the frame capture
+        private @Nullable Consumer<PixelImage> consumer = null;
+        private long timestamp = 0;
+
+        ReadbackTexture(int width, int height) {
+            this.width = width;
+            this.height = height;
+            try (var arena = Arena.ofConfined()) {
+                var textureDesc = D3D11_TEXTURE2D_DESC.allocate(arena);
+                D3D11_TEXTURE2D_DESC.Width(textureDesc, width);
+                D3D11_TEXTURE2D_DESC.Height(textureDesc, height);
+                D3D11_TEXTURE2D_DESC.MipLevels(textureDesc, 1);
+                D3D11_TEXTURE2D_DESC.ArraySize(textureDesc, 1);
+                D3D11_TEXTURE2D_DESC.Format(textureDesc, DXGI_FORMAT.R8G8B8A8_UNORM);
+                DXGI_SAMPLE_DESC.Count(D3D11_TEXTURE2D_DESC.SampleDesc(textureDesc), 1);
+                DXGI_SAMPLE_DESC.Quality(D3D11_TEXTURE2D_DESC.SampleDesc(textureDesc), 0);
+                D3D11_TEXTURE2D_DESC.Usage(textureDesc, D3D11_USAGE.STAGING);
+                D3D11_TEXTURE2D_DESC.BindFlags(textureDesc, 0);
+                D3D11_TEXTURE2D_DESC.CPUAccessFlags(textureDesc, D3D11_CPU_ACCESS_FLAG.D3D11_CPU_ACCESS_READ);
+                D3D11_TEXTURE2D_DESC.MiscFlags(textureDesc, 0);
+
+                texture = makeResource(arena, ptr -> device.CreateTexture2D(textureDesc, NULL, ptr), ID3D11Texture2D::wrap);
+                rawTexture = asRaw(texture);
+            }
+        }
+
+        @Override
+        public void close() {
+            texture.Release();
+        }
+    }
+
+    /**
+     * The waitable object of the swap chain.
+     *
+     * @param errorState preallocated space for the call state captured by every wait
+     * @param platform what {@code WaitForSingleObject} and {@code CloseHandle} are called through
+     */
+    record WaitHandle(MemorySegment handle, MemorySegment errorState, InteropPlatform platform) implements AutoCloseable {
 
         public void waitForSignal() {
-            try(var arena = Arena.ofConfined()) {
-                var errorState = arena.allocate(Linker.Option.captureStateLayout());
-                var result = WaitForSingleObject(errorState, handle, 1000);
+            try {
+                var result = platform.waitForSingleObject(errorState, handle, 1000);
 
                 switch (result) {
                     case WAIT_EVENT.WAIT_OBJECT_0 -> {}
@@ -418,9 +1135,8 @@ public class InteropContext implements AutoCloseable {
 
         @Override
         public void close() {
-            try(var arena = Arena.ofConfined()) {
-                var errorState = arena.allocate(Linker.Option.captureStateLayout());
-                var result = CloseHandle(errorState, handle);
+            try {
+                var result = platform.closeHandle(errorState, handle);
                 if(result == 0) {
                     checkSuccessful(errorState);
                 }
@@ -431,29 +1147,4 @@ public class InteropContext implements AutoCloseable {
         }
     }
 
-    private static final String BLIT_SHADER_SOURCE = """
-            struct VSOut
-            {
-                float4 pos : SV_Position;
-                float2 uv  : TEXCOORD0;
-            };
-            
-            VSOut VsMain(uint id : SV_VertexID)
-            {
-                VSOut o;
-                o.pos = float4(id >> 1, id & 1, 0, 0.5) * 4 - 1;
-                o.uv  = float2(id >> 1, id & 1) * 2;
-            
-                return o;
-            }
-            
-            Texture2D srcTex : register(t0);
-            SamplerState samp : register(s0);
-            
-            float4 PsMain(VSOut i) : SV_Target
-            {
-                return srcTex.Sample(samp, i.uv);
-            }
-            """;
-
 }
@@ -1,7 +0,0 @@
-package com.github.sidit77.perfect_presentation.client;
-
-public interface InteropContextProvider {
-
-    InteropContext prefect_presentation$getInteropContext();
-
-}
@@ -0,0 +1,174 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.platform.TextureUtil;
+import org.lwjgl.opengl.GL;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+import static com.github.sidit77.perfect_presentation.client.WinError.checkSuccessful;
+import static com.mojang.blaze3d.platform.GlConst.*;
+import static org.lwjgl.opengl.WGLNVDXInterop.*;
+import static org.lwjgl.system.Checks.check;
+import static windows.win32.foundation.Apis.CloseHandle;
+import static windows.win32.system.performance.Apis.QueryPerformanceFrequency;
+import static windows.win32.system.threading.Apis.WaitForSingleObject;
+
+/**
+ * Everything {@link InteropContext} needs besides Direct3D and DXGI: the hidden OpenGL context, the
+ * {@code WGL_NV_DX_interop} entry points, OpenGL texture names and a few kernel32 functions.
+ * <p>
+ * The game uses {@link #WGL}. The tests pair their own platform with fake COM objects, which runs the context
+ * without Windows, a GPU or an OpenGL context.
+ * </p>
+ */
+interface InteropPlatform {
+
+    InteropPlatform WGL = new InteropPlatform() {
+        @Override
+        public Context createContext(ContextCreationFlags flags) {
+            return new WGLContext(flags);
+        }
+
+        @Override
+        public long openDevice(MemorySegment device) {
+            return check(wglDXOpenDeviceNV(device.address()));
+        }
+
+        @Override
+        public void closeDevice(long device) {
+            wglDXCloseDeviceNV(device);
+        }
+
+        @Override
+        public long lockObjectsFunction() {
+            return check(GL.getCapabilitiesWGL().wglDXLockObjectsNV);
+        }
+
+        @Override
+        public long unlockObjectsFunction() {
+            return check(GL.getCapabilitiesWGL().wglDXUnlockObjectsNV);
+        }
+
+        @Override
+        public long registerObject(long device, MemorySegment object, int glTexture, int glTextureType) {
+            return check(wglDXRegisterObjectNV(device, object.address(), glTexture, glTextureType, WGL_ACCESS_WRITE_DISCARD_NV));
+        }
+
+        @Override
+        public boolean unregisterObject(long device, long object) {
+            return wglDXUnregisterObjectNV(device, object);
+        }
+
+        @Override
+        public int createTexture() {
+            var texture = TextureUtil.generateTextureId();
+            // a texture name only turns into an object once it was bound
+            GlStateManager._bindTexture(texture);
+            GlStateManager._texParameter(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+            GlStateManager._texParameter(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+            GlStateManager._texParameter(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+            GlStateManager._texParameter(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+            GlStateManager._bindTexture(0);
+            return texture;
+        }
+
+        @Override
+        public void releaseTexture(int texture) {
+            TextureUtil.releaseTextureId(texture);
+        }
+
+        @Override
+        public int waitForSingleObject(MemorySegment errorState, MemorySegment handle, int milliseconds) {
+            return WaitForSingleObject(errorState, handle, milliseconds);
+        }
+
+        @Override
+        public int closeHandle(MemorySegment errorState, MemorySegment handle) {
+            return CloseHandle(errorState, handle);
+        }
+
+        @Override
+        public long queryPerformanceFrequency() {
+            try (var arena = Arena.ofConfined()) {
+                var errorState = arena.allocate(Linker.Option.captureStateLayout());
+                var frequency = arena.allocate(ValueLayout.JAVA_LONG);
+                if(QueryPerformanceFrequency(errorState, frequency) == 0)
+                    checkSuccessful(errorState);
+                return frequency.get(ValueLayout.JAVA_LONG, 0);
+            }
+        }
+    };
+
+    /**
+     * Creates the hidden OpenGL context the interop runs on.
+     */
+    Context createContext(ContextCreationFlags flags);
+
+    /**
+     * {@code wglDXOpenDeviceNV}
+     *
+     * @param device the {@code ID3D11Device}
+     */
+    long openDevice(MemorySegment device);
+
+    /**
+     * {@code wglDXCloseDeviceNV}
+     */
+    void closeDevice(long device);
+
+    /**
+     * @return the entry point of {@code wglDXLockObjectsNV}, for {@link InteropContext#interopLock}
+     */
+    long lockObjectsFunction();
+
+    /**
+     * @return the entry point of {@code wglDXUnlockObjectsNV}, for {@link InteropContext#interopLock}
+     */
+    long unlockObjectsFunction();
+
+    /**
+     * {@code wglDXRegisterObjectNV} with write-discard access
+     *
+     * @param object the {@code ID3D11Texture2D} {@code glTexture} should alias
+     */
+    long registerObject(long device, MemorySegment object, int glTexture, int glTextureType);
+
+    /**
+     * {@code wglDXUnregisterObjectNV}
+     */
+    boolean unregisterObject(long device, long object);
+
+    /**
+     * @return a new 2D texture name that is already an object
+     */
+    int createTexture();
+
+    void releaseTexture(int texture);
+
+    /**
+     * {@code WaitForSingleObject}, called once per frame.
+     */
+    int waitForSingleObject(MemorySegment errorState, MemorySegment handle, int milliseconds);
+
+    /**
+     * {@code CloseHandle}
+     */
+    int closeHandle(MemorySegment errorState, MemorySegment handle);
+
+    /**
+     * @return the ticks per second of the performance counter, the clock of the frame statistics
+     */
+    long queryPerformanceFrequency();
+
+    interface Context extends AutoCloseable {
+
+        void makeCurrent();
+
+        @Override
+        void close();
+    }
+}
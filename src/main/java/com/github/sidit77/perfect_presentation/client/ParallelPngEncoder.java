@@ -0,0 +1,291 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * PNG encoder that filters and compresses horizontal strips of the image in parallel.
+ * <p>
+ * Every strip is deflated on its own and ended with a sync flush, which leaves the compressed data on a byte
+ * boundary, so the strips can simply be concatenated into one zlib stream. The Adler-32 checksums of the strips are
+ * combined into the one for the whole stream. Compression suffers a little because strips can not refer back into
+ * earlier ones, in exchange the work spreads over every core.
+ * </p>
+ * <p>
+ * Images are written by a single writer thread that takes them from a bounded queue; {@link #submit} refuses new
+ * images while the queue is full instead of piling up more pixel data.
+ * </p>
+ */
+public class ParallelPngEncoder implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelPngEncoder.class);
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int ROWS_PER_STRIP = 32;
+    // screenshots are opaque, so the alpha channel is dropped
+    private static final int BYTES_PER_PIXEL = 3;
+    private static final int COLOR_TYPE_RGB = 2;
+
+    private final ForkJoinPool pool;
+    private final int compressionLevel;
+    private final BlockingQueue<Job> queue;
+    private @Nullable Thread writer = null;
+
+    private record Job(PixelImage image, Path file, Consumer<@Nullable Throwable> onDone) { }
+
+    private record Strip(byte[] data, int length, long adler, int rawLength) { }
+
+    public ParallelPngEncoder(ForkJoinPool pool, int compressionLevel, int queueCapacity) {
+        this.pool = pool;
+        this.compressionLevel = compressionLevel;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * @return whether {@link #submit} would currently accept an image
+     */
+    public boolean hasCapacity() {
+        return queue.remainingCapacity() > 0;
+    }
+
+    /**
+     * Queues an image to be written to {@code file}.
+     *
+     * @param onDone called on the writer thread once the file was written, with the error if it failed
+     * @return {@code false} if the queue is full and the image was not accepted
+     */
+    public synchronized boolean submit(PixelImage image, Path file, Consumer<@Nullable Throwable> onDone) {
+        if (!queue.offer(new Job(image, file, onDone))) {
+            return false;
+        }
+        if (writer == null) {
+            writer = Thread.ofPlatform()
+                    .name("Perfect Presentation PNG Writer")
+                    .daemon()
+                    .start(this::run);
+        }
+        return true;
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                var job = queue.take();
+                Throwable error = null;
+                try {
+                    Files.createDirectories(job.file.toAbsolutePath().getParent());
+                    try (var out = new BufferedOutputStream(Files.newOutputStream(job.file))) {
+                        encode(job.image, out);
+                    }
+                } catch (Exception e) {
+                    LOGGER.warn("Failed to write {}", job.file, e);
+                    error = e;
+                }
+                job.onDone.accept(error);
+            }
+        } catch (InterruptedException ignored) { }
+    }
+
+    /**
+     * Encodes an image on the calling thread, with the strips compressed on the pool.
+     */
+    public void encode(PixelImage image, OutputStream out) throws IOException {
+        var strips = new ArrayList<ForkJoinTask<Strip>>();
+        for (int row = 0; row < image.height(); row += ROWS_PER_STRIP) {
+            var first = row;
+            var last = Math.min(row + ROWS_PER_STRIP, image.height());
+            var finish = last == image.height();
+            strips.add(pool.submit(() -> compressStrip(image, first, last, finish)));
+        }
+
+        out.write(SIGNATURE);
+        var header = ByteBuffer.allocate(13)
+                .putInt(image.width())
+                .putInt(image.height())
+                .put((byte) 8)
+                .put((byte) COLOR_TYPE_RGB)
+                .put((byte) 0) // deflate
+                .put((byte) 0) // adaptive filtering
+                .put((byte) 0) // no interlacing
+                .array();
+        writeChunk(out, "IHDR", header, header.length);
+
+        // zlib header: deflate with a 32K window, default compression; 0x789C is a multiple of 31 as required
+        writeChunk(out, "IDAT", new byte[] { 0x78, (byte) 0x9C }, 2);
+        var adler = 1L;
+        for (var task : strips) {
+            var strip = task.join();
+            writeChunk(out, "IDAT", strip.data, strip.length);
+            adler = combineAdler32(adler, strip.adler, strip.rawLength);
+        }
+        var trailer = ByteBuffer.allocate(4).putInt((int) adler).array();
+        writeChunk(out, "IDAT", trailer, trailer.length);
+        writeChunk(out, "IEND", new byte[0], 0);
+    }
+
+    private Strip compressStrip(PixelImage image, int firstRow, int lastRow, boolean finish) {
+        var stride = image.width() * BYTES_PER_PIXEL;
+        var previous = new byte[stride];
+        var current = new byte[stride];
+        var raw = new byte[(lastRow - firstRow) * (stride + 1)];
+        var candidate = new byte[stride];
+        var best = new byte[stride];
+
+        if (firstRow > 0) {
+            readRow(image, firstRow - 1, previous);
+        }
+        var offset = 0;
+        for (int row = firstRow; row < lastRow; row++) {
+            readRow(image, row, current);
+            var bestFilter = 0;
+            var bestScore = Long.MAX_VALUE;
+            for (int filter = 0; filter <= 4; filter++) {
+                var score = filterRow(filter, current, previous, candidate);
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestFilter = filter;
+                    System.arraycopy(candidate, 0, best, 0, stride);
+                }
+            }
+            raw[offset++] = (byte) bestFilter;
+            System.arraycopy(best, 0, raw, offset, stride);
+            offset += stride;
+
+            var swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        var checksum = new Adler32();
+        checksum.update(raw);
+
+        var deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setInput(raw);
+            if (finish) {
+                deflater.finish();
+            }
+            var output = new byte[raw.length / 2 + 64];
+            var length = 0;
+            while (true) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                var written = finish
+                        ? deflater.deflate(output, length, output.length - length)
+                        : deflater.deflate(output, length, output.length - length, Deflater.SYNC_FLUSH);
+                length += written;
+                // a flush is complete once it no longer fills the whole buffer
+                if (finish ? deflater.finished() : length < output.length && deflater.needsInput()) {
+                    break;
+                }
+            }
+            return new Strip(output, length, checksum.getValue(), raw.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void readRow(PixelImage image, int row, byte[] target) {
+        var sourceRow = image.bottomUp() ? image.height() - 1 - row : row;
+        var source = sourceRow * image.width() * 4;
+        var rgba = image.rgba();
+        for (int x = 0, i = 0; x < image.width(); x++, source += 4) {
+            target[i++] = rgba[source];
+            target[i++] = rgba[source + 1];
+            target[i++] = rgba[source + 2];
+        }
+    }
+
+    /**
+     * Applies one of the five PNG filters and returns the sum of absolute values as a measure of how well the
+     * result will compress.
+     */
+    private static long filterRow(int filter, byte[] row, byte[] previous, byte[] out) {
+        long score = 0;
+        for (int i = 0; i < row.length; i++) {
+            int x = row[i] & 0xFF;
+            int a = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xFF : 0;
+            int b = previous[i] & 0xFF;
+            int c = i >= BYTES_PER_PIXEL ? previous[i - BYTES_PER_PIXEL] & 0xFF : 0;
+            int predicted = switch (filter) {
+                case 0 -> 0;
+                case 1 -> a;
+                case 2 -> b;
+                case 3 -> (a + b) >>> 1;
+                default -> paeth(a, b, c);
+            };
+            var value = (byte) (x - predicted);
+            out[i] = value;
+            score += Math.abs(value);
+        }
+        return score;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * The Adler-32 of two concatenated byte sequences, as {@code adler32_combine} in zlib.
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        final long base = 65521;
+        var remainder = length2 % base;
+        var sum1 = adler1 & 0xFFFF;
+        var sum2 = (remainder * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + base - remainder;
+        if (sum1 >= base) sum1 -= base;
+        if (sum1 >= base) sum1 -= base;
+        if (sum2 >= base << 1) sum2 -= base << 1;
+        if (sum2 >= base) sum2 -= base;
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        var typeBytes = type.getBytes(US_ASCII);
+        var crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.write(ByteBuffer.allocate(4).putInt(length).array());
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (writer != null) {
+            writer.interrupt();
+            writer = null;
+        }
+    }
+}
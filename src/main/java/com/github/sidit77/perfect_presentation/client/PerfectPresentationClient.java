@@ -2,22 +2,179 @@ package com.github.sidit77.perfect_presentation.client;
 
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.loader.api.FabricLoader;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
 
 public class PerfectPresentationClient implements ClientModInitializer {
 
-    /*
-    TODO:
-        - Render resolution scale?
-     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PerfectPresentationClient.class);
+
+    //private static final Config DEFAULT_CONFIG = new Config(2.0f, true, 1000, 0, 1, true, 500, FrameRateLimiter.Mode.AUTO, 1.0f, 0.5f, 6.0f, 0.3f, 2, 3600, 2, true, 3, TearingMode.ADAPTIVE, 0.25f, true, true, 15);
+    private static final Config DEFAULT_CONFIG = new Config(1.0f, FabricLoader.getInstance().isDevelopmentEnvironment(), 1000, 0, 0, false, 1000, FrameRateLimiter.Mode.PRECISE, 1.0f, 0.5f, 0.0f, 0.0f, 1, 0, 1, false, 0, TearingMode.UNSYNCED, 0.25f, false, true, 30);
+
+    public static final ConfigFile CONFIG_FILE = new ConfigFile(FabricLoader.getInstance().getConfigDir().resolve("perfect_presentation.json"), DEFAULT_CONFIG);
+
+    // replaced by the config watcher thread
+    public static volatile Config config = CONFIG_FILE.load();
+
+    private static final AtomicReference<Config> pendingConfig = new AtomicReference<>();
+
+    public static final FrameTimingRecorder FRAME_TIMINGS = new FrameTimingRecorder(TimeUnit.MILLISECONDS.toNanos(config.metricsWindowMillis()));
+
+    public static final ShaderCache SHADER_CACHE = new ShaderCache(
+            FabricLoader.getInstance().getGameDir().resolve(".cache").resolve("perfect_presentation").resolve("shaders"),
+            new D3DShaderCompiler());
+
+    public static final ParallelPngEncoder SCREENSHOT_ENCODER = new ParallelPngEncoder(ForkJoinPool.commonPool(), Deflater.DEFAULT_COMPRESSION, 2);
 
-    //public static Config config = new Config(2.0f, true);
-    public static Config config = new Config(1.0f, FabricLoader.getInstance().isDevelopmentEnvironment());
+    private static @Nullable CompletableFuture<DeviceResources> deviceResources = null;
+
+    private static @Nullable FrameTraceWriter frameTrace = null;
+
+    private static @Nullable PresentMonCsvWriter frameTimingCsv = null;
 
     @Override
     public void onInitializeClient() {
+        // runs well before the window is created, which leaves plenty of time to get Direct3D ready in the background
+        deviceResources = DeviceResources.createAsync(config.useDxDebugLayer(), SHADER_CACHE);
+        CONFIG_FILE.watch(PerfectPresentationClient::onConfigChanged);
+
+        if (config.frameTimingCsvIntervalMillis() > 0) {
+            var file = timestampedFile("frames", ".csv");
+            try {
+                frameTimingCsv = new PresentMonCsvWriter(FRAME_TIMINGS, file, config.frameTimingCsvIntervalMillis());
+            } catch (IOException e) {
+                LOGGER.warn("Failed to create frame timing file {}", file, e);
+            }
+        }
+
+        if (config.recordFrameTrace()) {
+            var file = timestampedFile("trace", ".pptrace");
+            try {
+                frameTrace = new FrameTraceWriter(file);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to create frame trace {}", file, e);
+            }
+        }
+    }
 
+    private static void onConfigChanged(Config newConfig) {
+        if (newConfig.equals(config)) {
+            return;
+        }
+        LOGGER.info("Config file changed, applying it from the next frame on");
+        config = newConfig;
+        FRAME_TIMINGS.setWindowLength(TimeUnit.MILLISECONDS.toNanos(newConfig.metricsWindowMillis()));
+        pendingConfig.set(newConfig);
     }
 
-    public record Config(float debugPieScale, boolean useDxDebugLayer) { }
+    /**
+     * @return the new config if the file changed since the last call, {@code null} otherwise
+     */
+    public static @Nullable Config takeConfigChange() {
+        return pendingConfig.getAndSet(null);
+    }
+
+    /**
+     * Applies every setting that can change at runtime to the frame loop and its backend.
+     */
+    public static void applyConfig(FrameLoop frameLoop, Config config) {
+        var backend = frameLoop.getBackend();
+        frameLoop.setPinnedFrameLatency(config.maxFrameLatency());
+        frameLoop.setFrameStartScheduling(
+                config.scheduleFrameStart(),
+                TimeUnit.MICROSECONDS.toNanos(config.frameStartMarginMicros()));
+        frameLoop.setFrameRateLimiterMode(config.frameRateLimiter());
+        frameLoop.getRenderScale().configure(
+                config.renderScale(),
+                config.minRenderScale(),
+                (long) (config.targetGpuFrameTimeMillis() * 1_000_000));
+        backend.setSharpness(config.sharpness());
+        backend.setSharedTextureRingSize(config.sharedTextureRingSize());
+        frameLoop.setTearingMode(config.tearing(), config.adaptiveTearingThreshold());
+        backend.setSwapChainBufferCount(config.swapChainBufferCount());
+        backend.setPresentationThread(config.presentationThread());
+        frameLoop.setIdleBehavior(config.skipUnchangedFrames(), config.backgroundFrameRate());
+    }
+
+    /**
+     * @return the trace the render loop is recorded into, or {@code null} if tracing is disabled
+     */
+    public static @Nullable FrameTraceWriter getFrameTrace() {
+        return frameTrace;
+    }
+
+    /**
+     * @return the CSV file the frame timings are written to, or {@code null} if it is disabled
+     */
+    public static @Nullable PresentMonCsvWriter getFrameTimingCsv() {
+        return frameTimingCsv;
+    }
+
+    /**
+     * Hands out the Direct3D resources started by the mod initializer, starting them now if that did not happen.
+     */
+    public static CompletableFuture<DeviceResources> takeDeviceResources() {
+        var resources = deviceResources;
+        deviceResources = null;
+        return resources != null ? resources : DeviceResources.createAsync(config.useDxDebugLayer(), SHADER_CACHE);
+    }
+
+    /**
+     * @return a capture of the first frames as configured, or {@code null} if capturing is disabled
+     */
+    public static @Nullable FrameCapture createFrameCapture() {
+        if (config.frameCaptureFrames() <= 0) {
+            return null;
+        }
+        return new FrameCapture(timestampedFile("capture", ".y4m"), config.frameCaptureFrames(), config.frameCaptureDownscale(), 60, 4);
+    }
+
+    private static Path timestampedFile(String prefix, String extension) {
+        return FabricLoader.getInstance().getGameDir()
+                .resolve("perfect_presentation")
+                .resolve(prefix + "-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH.mm.ss")) + extension);
+    }
+
+    /**
+     * @param metricsWindowMillis length of the windows the public frame metrics are aggregated over
+     * @param frameTimingCsvIntervalMillis how often per-frame timings are appended to a CSV file, {@code 0} disables the file
+     * @param maxFrameLatency maximum number of queued frames between 1 and 3, {@code 0} adapts it to the current frame times
+     * @param scheduleFrameStart delay the start of each frame so that input is sampled as late as possible
+     * @param frameStartMarginMicros safety margin kept on top of the predicted frame cost when delaying the frame start
+     * @param frameRateLimiter which frame rate limiter to use
+     * @param renderScale fraction of the window size the game is rendered at, the upper limit if the scale is dynamic
+     * @param minRenderScale lower limit of the dynamic render scale
+     * @param targetGpuFrameTimeMillis GPU time per frame the dynamic render scale aims for, {@code 0} keeps the scale fixed
+     * @param sharpness strength of the sharpening applied when upscaling, {@code 0} disables it
+     * @param sharedTextureRingSize number of interop textures the game renders into in turn
+     * @param frameCaptureFrames number of presented frames written to a Y4M file from startup on, {@code 0} disables the capture
+     * @param frameCaptureDownscale factor the captured frames are shrunk by in each direction
+     * @param recordFrameTrace record the timings of every frame into a trace that can be replayed with {@link FrameTraceReplay}
+     * @param swapChainBufferCount number of swap chain buffers, {@code 0} uses one more than the maximum frame latency
+     * @param tearing whether presents without vsync may tear, and whether late frames may tear with vsync on
+     * @param adaptiveTearingThreshold how far into a refresh period a late frame may still tear in the adaptive mode
+     * @param presentationThread blit and present on a dedicated thread, needs a shared texture ring of at least 2
+     * @param skipUnchangedFrames stop presenting while the game is paused and there is no input
+     * @param backgroundFrameRate frame rate while idle or unfocused, {@code 0} does not limit it
+     */
+    public record Config(float debugPieScale, boolean useDxDebugLayer, int metricsWindowMillis, int frameTimingCsvIntervalMillis,
+                         int maxFrameLatency, boolean scheduleFrameStart, int frameStartMarginMicros,
+                         FrameRateLimiter.Mode frameRateLimiter, float renderScale, float minRenderScale,
+                         float targetGpuFrameTimeMillis, float sharpness, int sharedTextureRingSize,
+                         int frameCaptureFrames, int frameCaptureDownscale,
+                         boolean recordFrameTrace, int swapChainBufferCount, TearingMode tearing, float adaptiveTearingThreshold,
+                         boolean presentationThread, boolean skipUnchangedFrames, int backgroundFrameRate) { }
 
 }
@@ -0,0 +1,16 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * Tightly packed 8-bit RGBA pixels.
+ *
+ * @param bottomUp whether the first row in {@code rgba} is the bottom of the image, as it is for anything read back
+ *                 from an OpenGL texture
+ */
+public record PixelImage(int width, int height, byte[] rgba, boolean bottomUp) {
+
+    public PixelImage {
+        if (rgba.length != width * height * 4) {
+            throw new IllegalArgumentException("Expected " + width * height * 4 + " bytes but got " + rgba.length);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Periodically drains the frame ring of a {@link FrameTimingRecorder} into a CSV file.
+ * <p>
+ * The leading columns follow the layout of PresentMon's CSV output so existing analysis tools can read the
+ * file. Columns PresentMon does not have are appended at the end.
+ * </p>
+ * <p>
+ * The frame statistics tell a few presents later whether and when a frame reached the screen, so frames are held back
+ * until they do, or until {@link #MAX_DISPLAY_DELAY} newer frames were presented. Frames that are still unresolved
+ * then have {@code NA} as their display latency and count as not dropped. {@link #close()} writes every remaining
+ * frame.
+ * </p>
+ */
+public class PresentMonCsvWriter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PresentMonCsvWriter.class);
+
+    private static final String HEADER = "Application,ProcessID,SwapChainAddress,Runtime,SyncInterval,PresentFlags," +
+            "AllowsTearing,PresentMode,Dropped,TimeInSeconds,msInPresentAPI,msBetweenPresents," +
+            "msWaitingOnSwapChain,msInBlit,msUntilDisplayed,msInputToPresent,msInputToDisplayed";
+    private static final int DXGI_PRESENT_ALLOW_TEARING = 0x200;
+    // frames whose display time is still unknown after this many newer frames never get one
+    static final int MAX_DISPLAY_DELAY = 64;
+
+    private final FrameTimingRecorder recorder;
+    private final BufferedWriter writer;
+    private final long flushInterval;
+    private final @Nullable Thread thread;
+    private final String application;
+    private final long processId;
+
+    private final FrameTimingRecorder.FrameRecord record = new FrameTimingRecorder.FrameRecord();
+    private long nextFrame;
+    private long timeOrigin = Long.MIN_VALUE;
+    private volatile boolean running = true;
+
+    public PresentMonCsvWriter(FrameTimingRecorder recorder, Path file, long flushIntervalMillis) throws IOException {
+        this(recorder, file, flushIntervalMillis, true);
+    }
+
+    /**
+     * @param background whether to drain on a thread of its own, otherwise {@link #drain} has to be called by hand
+     */
+    PresentMonCsvWriter(FrameTimingRecorder recorder, Path file, long flushIntervalMillis, boolean background) throws IOException {
+        this.recorder = recorder;
+        this.flushInterval = flushIntervalMillis;
+        this.nextFrame = recorder.getFrameCount();
+
+        var handle = ProcessHandle.current();
+        this.processId = handle.pid();
+        this.application = handle.info().command()
+                .map(command -> Path.of(command).getFileName().toString())
+                .orElse("java");
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        this.writer.write(HEADER);
+        this.writer.newLine();
+
+        if (background) {
+            this.thread = new Thread(this::run, "Perfect Presentation CSV Writer");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        } else {
+            this.thread = null;
+        }
+    }
+
+    private void run() {
+        try {
+            var last = false;
+            while (!last) {
+                try {
+                    Thread.sleep(flushInterval);
+                } catch (InterruptedException ignored) { }
+                last = !running;
+                drain(last);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write frame timings", e);
+        } finally {
+            closeWriter();
+        }
+    }
+
+    private void closeWriter() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close frame timing file", e);
+        }
+    }
+
+    /**
+     * Writes every frame recorded since the last call that is ready to be written.
+     *
+     * @param all whether to write frames whose display time is not known yet as well
+     */
+    void drain(boolean all) throws IOException {
+        var available = recorder.getFrameCount();
+        if (available - nextFrame > FrameTimingRecorder.RING_CAPACITY) {
+            LOGGER.warn("Frame timing writer fell behind, skipping {} frames", available - nextFrame - FrameTimingRecorder.RING_CAPACITY);
+            nextFrame = available - FrameTimingRecorder.RING_CAPACITY;
+        }
+        for (; nextFrame < available; nextFrame++) {
+            if (!recorder.readFrame(nextFrame, record)) {
+                continue;
+            }
+            if (!all && record.displayLatency < 0 && !record.dropped && available - nextFrame <= MAX_DISPLAY_DELAY) {
+                // keeps the file in order, the frames after this one are not older
+                break;
+            }
+            if (timeOrigin == Long.MIN_VALUE) {
+                timeOrigin = record.presentStart;
+            }
+            var tearing = record.syncInterval == 0;
+            writer.write(String.format(Locale.ROOT, "%s,%d,0x0000000000000000,DXGI,%d,%d,%d,Unknown,%d,%.6f,%.3f,%.3f,%.3f,%.3f,%s,%s,%s",
+                    application,
+                    processId,
+                    record.syncInterval,
+                    tearing ? DXGI_PRESENT_ALLOW_TEARING : 0,
+                    tearing ? 1 : 0,
+                    record.dropped ? 1 : 0,
+                    (record.presentStart - timeOrigin) / 1e9,
+                    record.present / 1e6,
+                    record.presentInterval / 1e6,
+                    record.swapChainWait / 1e6,
+                    record.blit / 1e6,
+                    formatLatency(record.displayLatency),
+                    formatLatency(record.inputLatency),
+                    record.inputLatency < 0 ? "NA" : formatLatency(record.displayLatency < 0 ? -1 : record.inputLatency + record.displayLatency)));
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    private static String formatLatency(long latency) {
+        return latency < 0 ? "NA" : String.format(Locale.ROOT, "%.3f", latency / 1e6);
+    }
+
+    /**
+     * Writes the remaining frames and closes the file. Blocks until the writer thread is done.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (thread == null) {
+            try {
+                drain(true);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write frame timings", e);
+            }
+            closeWriter();
+            return;
+        }
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
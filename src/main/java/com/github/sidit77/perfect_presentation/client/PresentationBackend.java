@@ -0,0 +1,141 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * Everything the frame loop needs from the thing that puts frames on screen.
+ * <p>
+ * The mixins only talk to this interface. {@link InteropContext} implements it on top of a DXGI swap chain,
+ * {@link HeadlessBackend} simulates one on a {@link VirtualClock}.
+ * </p>
+ */
+public interface PresentationBackend extends AutoCloseable {
+
+    static PresentationBackend getCurrent() {
+        var backend = Binding.CURRENT.get();
+        if (backend == null) {
+            throw new IllegalStateException("No presentation backend bound to the current thread");
+        }
+        return backend;
+    }
+
+    /**
+     * Binds this backend (and its OpenGL context, if it has one) to the calling thread.
+     */
+    default void makeCurrent() {
+        Binding.CURRENT.set(this);
+    }
+
+    /**
+     * @return the clock all timings of this backend are measured with
+     */
+    FrameClock clock();
+
+    void setSyncInterval(int syncInterval);
+
+    int getSyncInterval();
+
+    /**
+     * Sets whether presents without vsync may tear. Applies from the next present on.
+     */
+    void setTearingMode(TearingMode tearingMode);
+
+    /**
+     * Sets the number of swap chain buffers, {@code 0} uses one per queued frame plus the one on screen. Applies on
+     * the next {@link #resizeSwapChain(int, int)}.
+     */
+    void setSwapChainBufferCount(int bufferCount);
+
+    /**
+     * Sets how many frames may be queued in the swap chain. Backends that have to recreate buffers for this
+     * apply it on the next {@link #resizeSwapChain(int, int)}.
+     */
+    void setMaximumFrameLatency(int maxFrameLatency);
+
+    int getMaximumFrameLatency();
+
+    /**
+     * Sets the strength of the sharpening applied when the shared texture has to be scaled to the swap chain size.
+     * {@code 0} disables sharpening.
+     */
+    void setSharpness(float sharpness);
+
+    /**
+     * Blocks until the swap chain is ready to accept another frame.
+     */
+    void waitForSwapChainSignal();
+
+    void swapChainPresent();
+
+    /**
+     * @return whether the window was completely hidden at the last present, so nothing presented reaches the screen
+     */
+    boolean isOccluded();
+
+    /**
+     * Checks whether the window is still occluded without presenting anything.
+     *
+     * @return the new state of {@link #isOccluded()}
+     */
+    boolean testOcclusion();
+
+    /**
+     * Fills {@code target} with the frame statistics queried after the last {@link #swapChainPresent()}.
+     * Backends without frame statistics mark the sample as not available.
+     */
+    void getFrameStatistics(FrameStatisticsTracker.Sample target);
+
+    void resizeSwapChain(int width, int height);
+
+    /**
+     * Sets how many textures back each shared texture allocated from now on. With more than one, OpenGL renders
+     * the next frame into a different texture than the one Direct3D is still reading from.
+     */
+    void setSharedTextureRingSize(int size);
+
+    /**
+     * Asks the backend to blit and present on a dedicated thread, so the render thread does not block inside the
+     * driver. Backends that can not do this present on the calling thread.
+     */
+    void setPresentationThread(boolean enabled);
+
+    /**
+     * Called before rendering a frame into a shared texture.
+     *
+     * @param glTextureIdentifier the identifier the shared texture was allocated with
+     * @return the OpenGL texture to render the current frame into
+     */
+    int acquireSharedTexture(int glTextureIdentifier);
+
+    void blitSharedTextureToSwapChain(int glTextureIdentifier);
+
+    /**
+     * Requests a copy of the next frame blitted from the given shared texture, without stalling the render thread.
+     *
+     * @param consumer receives the pixels on the render thread a few frames later
+     * @return {@code false} if the backend can not read frames back
+     */
+    boolean requestReadback(int glTextureIdentifier, Consumer<PixelImage> consumer);
+
+    /**
+     * Streams every presented frame into {@code capture} for as long as it keeps up, {@code null} stops capturing.
+     * The backend takes ownership of the capture and closes it when it is replaced or the backend is closed.
+     */
+    void setFrameCapture(@Nullable FrameCapture capture);
+
+    void allocateSharedTexture(int glTextureIdentifier, int glTextureType, int glTextureFormat, int width, int height);
+
+    void deallocateSharedTexture(int glTextureIdentifier);
+
+    @Override
+    void close();
+
+    final class Binding {
+        private static final ThreadLocal<PresentationBackend> CURRENT = new ThreadLocal<>();
+
+        private Binding() { }
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.github.sidit77.perfect_presentation.client;
+
+public interface PresentationBackendProvider {
+
+    PresentationBackend perfect_presentation$getPresentationBackend();
+
+    FrameLoop perfect_presentation$getFrameLoop();
+
+}
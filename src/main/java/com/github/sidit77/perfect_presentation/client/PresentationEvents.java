@@ -0,0 +1,172 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder events for the individual stages of the interop presentation path.
+ * <p>
+ * The usage pattern is always {@code begin()}, the native call, {@code end()} and then filling the fields and
+ * calling {@code commit()} only if {@code shouldCommit()} says so. When the events are disabled the JIT removes
+ * the event allocation entirely.
+ * </p>
+ */
+public final class PresentationEvents {
+
+    private static final String CATEGORY = "Perfect Presentation";
+
+    @Name("perfect_presentation.SwapChainWait")
+    @Label("Swap Chain Wait")
+    @Description("Time blocked on the frame latency waitable object")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class SwapChainWait extends Event {
+        @Label("Frame")
+        public long frame;
+    }
+
+    @Name("perfect_presentation.InteropUnlock")
+    @Label("Interop Unlock")
+    @Description("wglDXUnlockObjectsNV handing a shared texture over to Direct3D")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class InteropUnlock extends Event {
+        @Label("Frame")
+        public long frame;
+        @Label("GL Texture")
+        public int glTexture;
+    }
+
+    @Name("perfect_presentation.InteropLock")
+    @Label("Interop Lock")
+    @Description("wglDXLockObjectsNV handing a shared texture back to OpenGL")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class InteropLock extends Event {
+        @Label("Frame")
+        public long frame;
+        @Label("GL Texture")
+        public int glTexture;
+    }
+
+    @Name("perfect_presentation.BlitDraw")
+    @Label("Blit Draw")
+    @Description("Direct3D 11 draw copying the shared texture into the back buffer")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class BlitDraw extends Event {
+        @Label("Frame")
+        public long frame;
+        @Label("Source Width")
+        public int width;
+        @Label("Source Height")
+        public int height;
+        @Label("Mode")
+        public String mode;
+    }
+
+    @Name("perfect_presentation.Present")
+    @Label("Present")
+    @Description("IDXGISwapChain::Present")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class Present extends Event {
+        @Label("Frame")
+        public long frame;
+        @Label("Sync Interval")
+        public int syncInterval;
+        @Label("Present Flags")
+        public int flags;
+        @Label("HRESULT")
+        public int hresult;
+    }
+
+    @Name("perfect_presentation.FrameDisplayed")
+    @Label("Frame Displayed")
+    @Description("A frame reaching the screen, as reported by the DXGI frame statistics")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class FrameDisplayed extends Event {
+        @Label("Frame")
+        public long frame;
+        @Label("Display Latency")
+        @Description("Time from the start of the Present call to the vblank the frame was first shown on")
+        @Timespan
+        public long latency;
+    }
+
+    @Name("perfect_presentation.InputLatency")
+    @Label("Input Latency")
+    @Description("An input event reaching the Present call of the frame that reacted to it, the FrameDisplayed event of the same frame adds the time until it was shown")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class InputLatency extends Event {
+        @Label("Kind")
+        public String kind;
+        @Label("Frame")
+        public long frame;
+        @Label("Latency")
+        @Description("Time from receiving the event to the start of the Present call")
+        @Timespan
+        public long latency;
+    }
+
+    @Name("perfect_presentation.DisplayGlitch")
+    @Label("Display Glitch")
+    @Description("Frames that were not shown on the vblank they were meant for")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class DisplayGlitch extends Event {
+        @Label("Repeated Refreshes")
+        public int repeatedRefreshes;
+        @Label("Dropped Frames")
+        public int droppedFrames;
+    }
+
+    @Name("perfect_presentation.ResizeBuffers")
+    @Label("Resize Buffers")
+    @Description("IDXGISwapChain::ResizeBuffers")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class ResizeBuffers extends Event {
+        @Label("Frame")
+        public long frame;
+        @Label("Width")
+        public int width;
+        @Label("Height")
+        public int height;
+        @Label("HRESULT")
+        public int hresult;
+    }
+
+    @Name("perfect_presentation.SharedTextureAllocation")
+    @Label("Shared Texture Allocation")
+    @Description("Creation and interop registration of a shared texture")
+    @Category(CATEGORY)
+    public static class SharedTextureAllocation extends Event {
+        @Label("Frame")
+        public long frame;
+        @Label("GL Texture")
+        public int glTexture;
+        @Label("Width")
+        public int width;
+        @Label("Height")
+        public int height;
+        @Label("Reused")
+        @Description("Whether a pooled texture was handed out instead of registering a new one")
+        public boolean reused;
+    }
+
+    @Name("perfect_presentation.SharedTextureRelease")
+    @Label("Shared Texture Release")
+    @Description("Interop unregistration and release of a shared texture")
+    @Category(CATEGORY)
+    public static class SharedTextureRelease extends Event {
+        @Label("Frame")
+        public long frame;
+        @Label("GL Texture")
+        public int glTexture;
+    }
+
+    private PresentationEvents() { }
+
+}
@@ -0,0 +1,101 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * Chooses the fraction of the window size the main render target is rendered at.
+ * <p>
+ * In static mode the scale is simply the configured one. In dynamic mode the GPU time of each frame is averaged
+ * over a window of frames; assuming the GPU time grows with the pixel count, the scale that would hit the target
+ * is {@code scale * sqrt(target / average)}. The governor moves towards it in quantized steps and only when the
+ * average leaves a dead band around the target, since every change reallocates the render targets.
+ * </p>
+ */
+public class RenderScaleGovernor {
+
+    public static final float STEP = 0.05f;
+    private static final int MAX_STEPS_PER_CHANGE = 2;
+    private static final double UPPER_BAND = 1.05;
+    private static final double LOWER_BAND = 0.85;
+
+    private final int windowFrames;
+
+    private float minScale = 0.5f;
+    private float maxScale = 1.0f;
+    private long targetFrameTime = 0;
+    private float scale = 1.0f;
+
+    private int frames = 0;
+    private long totalFrameTime = 0;
+
+    public RenderScaleGovernor() {
+        this(30);
+    }
+
+    public RenderScaleGovernor(int windowFrames) {
+        this.windowFrames = windowFrames;
+    }
+
+    /**
+     * @param scale the scale to render at, or the upper limit if {@code targetFrameTime} is set
+     * @param minScale lower limit in dynamic mode
+     * @param targetFrameTime the GPU time per frame to aim for, {@code 0} for a static scale
+     */
+    public void configure(float scale, float minScale, long targetFrameTime) {
+        this.maxScale = quantize(scale);
+        this.minScale = Math.min(quantize(minScale), this.maxScale);
+        this.targetFrameTime = targetFrameTime;
+        if (targetFrameTime <= 0) {
+            this.scale = this.maxScale;
+        } else {
+            this.scale = Math.clamp(this.scale, this.minScale, this.maxScale);
+        }
+        frames = 0;
+        totalFrameTime = 0;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public boolean isDynamic() {
+        return targetFrameTime > 0;
+    }
+
+    public int scale(int size) {
+        return Math.max(1, Math.round(size * scale));
+    }
+
+    /**
+     * @param gpuFrameTime the measured GPU time of a frame
+     * @return {@code true} if {@link #getScale()} changed
+     */
+    public boolean onGpuFrameTime(long gpuFrameTime) {
+        if (targetFrameTime <= 0) {
+            return false;
+        }
+        frames++;
+        totalFrameTime += gpuFrameTime;
+        if (frames < windowFrames) {
+            return false;
+        }
+        var average = (double) totalFrameTime / frames;
+        frames = 0;
+        totalFrameTime = 0;
+
+        if (average <= targetFrameTime * UPPER_BAND && average >= targetFrameTime * LOWER_BAND) {
+            return false;
+        }
+        var desired = scale * Math.sqrt(targetFrameTime / Math.max(average, 1.0));
+        var steps = (int) Math.round((desired - scale) / STEP);
+        steps = Math.clamp(steps, -MAX_STEPS_PER_CHANGE, MAX_STEPS_PER_CHANGE);
+        var next = Math.clamp(quantize(scale + steps * STEP), minScale, maxScale);
+        if (next == scale) {
+            return false;
+        }
+        scale = next;
+        return true;
+    }
+
+    private static float quantize(float scale) {
+        return Math.round(scale / STEP) * STEP;
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Content addressed on-disk cache of compiled shader bytecode.
+ * <p>
+ * Every blob is stored in its own file named after a SHA-256 hash of the compiler, source, entry point, target and
+ * flags, so a changed shader simply misses and never has to be invalidated. Files start with a small header holding
+ * the payload length and its CRC-32; blobs that fail validation are deleted and compiled again. New blobs are written
+ * to a temporary file first and then moved into place, so a crash never leaves a half written blob behind.
+ * </p>
+ */
+public class ShaderCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShaderCache.class);
+
+    private static final int MAGIC = 0x43535050; // "PPSC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final ValueLayout.OfInt HEADER_INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final String EXTENSION = ".dxbc";
+
+    private final Path directory;
+    private final ShaderCompiler compiler;
+
+    public ShaderCache(Path directory, ShaderCompiler compiler) {
+        this.directory = directory;
+        this.compiler = compiler;
+    }
+
+    /**
+     * Returns the bytecode for the given shader, compiling it only if no valid cached copy exists.
+     *
+     * @param arena the arena the returned segment is mapped or allocated in
+     * @return the bytecode, valid as long as {@code arena} is alive
+     */
+    public MemorySegment get(Arena arena, String source, String entryPoint, String target, int flags) {
+        var file = directory.resolve(key(source, entryPoint, target, flags) + EXTENSION);
+
+        var cached = load(arena, file);
+        if (cached != null) {
+            LOGGER.debug("Loaded shader {} ({}) from {}", entryPoint, target, file);
+            return cached;
+        }
+
+        var start = System.nanoTime();
+        var bytecode = compiler.compile(source, entryPoint, target, flags);
+        LOGGER.debug("Compiled shader {} ({}) in {} µs", entryPoint, target, (System.nanoTime() - start) / 1000);
+        store(file, bytecode);
+
+        var segment = arena.allocate(bytecode.length);
+        MemorySegment.copy(bytecode, 0, segment, ValueLayout.JAVA_BYTE, 0, bytecode.length);
+        return segment;
+    }
+
+    String key(String source, String entryPoint, String target, int flags) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            // the separator keeps ("ab", "c") and ("a", "bc") apart
+            for (var part : new String[] { compiler.getIdentifier(), source, entryPoint, target, Integer.toString(flags) }) {
+                digest.update(part.getBytes(UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private @Nullable MemorySegment load(Arena arena, Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            boolean valid;
+            // Windows refuses to delete or replace a file while it is mapped, so check it in a mapping of its own first
+            try (var scratch = Arena.ofConfined()) {
+                valid = validate(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), scratch)) != null;
+            }
+            if (valid) {
+                return validate(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena));
+            }
+            LOGGER.warn("Discarding corrupt shader cache entry {}", file);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read shader cache entry {}", file, e);
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete shader cache entry {}", file, e);
+        }
+        return null;
+    }
+
+    static @Nullable MemorySegment validate(MemorySegment blob) {
+        if (blob.byteSize() < HEADER_SIZE
+                || blob.get(HEADER_INT, 0) != MAGIC
+                || blob.get(HEADER_INT, 4) != VERSION
+                || blob.get(HEADER_INT, 8) != blob.byteSize() - HEADER_SIZE) {
+            return null;
+        }
+        var payload = blob.asSlice(HEADER_SIZE);
+        var crc = new CRC32();
+        crc.update(payload.asByteBuffer());
+        if ((int) crc.getValue() != blob.get(HEADER_INT, 12)) {
+            return null;
+        }
+        return payload;
+    }
+
+    static byte[] encode(byte[] bytecode) {
+        var crc = new CRC32();
+        crc.update(bytecode);
+        return ByteBuffer.allocate(HEADER_SIZE + bytecode.length)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(bytecode.length)
+                .putInt((int) crc.getValue())
+                .put(bytecode)
+                .array();
+    }
+
+    private void store(Path file, byte[] bytecode) {
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (var channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                var buffer = ByteBuffer.wrap(encode(bytecode));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // the cache is only an optimization, the freshly compiled bytecode is still good
+            LOGGER.warn("Failed to write shader cache entry {}", file, e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) { }
+            }
+        }
+    }
+}
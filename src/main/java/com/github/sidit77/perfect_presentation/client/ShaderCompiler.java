@@ -0,0 +1,23 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * Turns HLSL source into shader bytecode.
+ */
+public interface ShaderCompiler {
+
+    /**
+     * Identifies the compiler and its version. Part of the cache key, so bytecode from a different compiler is
+     * never reused.
+     */
+    String getIdentifier();
+
+    /**
+     * @param source the HLSL source
+     * @param entryPoint the function to compile
+     * @param target the shader model, e.g. {@code ps_5_0}
+     * @param flags compiler flags
+     * @return the compiled bytecode
+     */
+    byte[] compile(String source, String entryPoint, String target, int flags);
+
+}
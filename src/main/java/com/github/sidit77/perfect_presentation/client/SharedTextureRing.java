@@ -0,0 +1,113 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import java.util.Arrays;
+
+/**
+ * Tracks which API owns each slot of a ring of interop textures.
+ * <p>
+ * OpenGL renders into one slot per frame. When the frame is finished the slot is handed to Direct3D (unlocked)
+ * and stays there while OpenGL moves on to the next slot. A slot is only taken back (locked) once the ring
+ * wraps around to it, so with more than one slot OpenGL never has to wait for the Direct3D copy of the frame it
+ * just finished. With a single slot it is taken back right after the copy, which is the classic behaviour.
+ * </p>
+ * <p>
+ * This class only does the bookkeeping and refuses illegal transitions; locking is up to the caller.
+ * </p>
+ */
+public class SharedTextureRing {
+
+    public enum SlotState {
+        /** Locked for OpenGL, not in use */
+        IDLE,
+        /** Locked for OpenGL, the current frame is rendered into it */
+        RENDERING,
+        /** Unlocked, Direct3D may read the finished frame */
+        PRESENTING
+    }
+
+    private final SlotState[] states;
+    private int renderSlot = -1;
+    private int nextSlot = 0;
+
+    public SharedTextureRing(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("A ring needs at least one slot");
+        }
+        states = new SlotState[size];
+        Arrays.fill(states, SlotState.IDLE);
+    }
+
+    public int size() {
+        return states.length;
+    }
+
+    public SlotState getState(int slot) {
+        return states[slot];
+    }
+
+    /**
+     * @return the slot OpenGL is currently rendering into, or {@code -1}
+     */
+    public int getRenderSlot() {
+        return renderSlot;
+    }
+
+    /**
+     * @return the slot the next call to {@link #beginRender()} will return
+     */
+    public int getNextSlot() {
+        return nextSlot;
+    }
+
+    /**
+     * Puts every slot back into the idle state. Only call this once all slots are locked for OpenGL again.
+     */
+    public void reset() {
+        Arrays.fill(states, SlotState.IDLE);
+        renderSlot = -1;
+        nextSlot = 0;
+    }
+
+    /**
+     * Marks a slot that was handed to Direct3D as locked for OpenGL again.
+     */
+    public void reclaim(int slot) {
+        if (states[slot] != SlotState.PRESENTING) {
+            throw new IllegalStateException("Slot " + slot + " is not presenting but " + states[slot]);
+        }
+        states[slot] = SlotState.IDLE;
+    }
+
+    /**
+     * Starts rendering into the next slot, which must have been {@linkplain #reclaim(int) reclaimed} already.
+     *
+     * @return the slot to render into
+     */
+    public int beginRender() {
+        if (renderSlot != -1) {
+            throw new IllegalStateException("Slot " + renderSlot + " is still being rendered to");
+        }
+        if (states[nextSlot] != SlotState.IDLE) {
+            throw new IllegalStateException("Slot " + nextSlot + " is not idle but " + states[nextSlot]);
+        }
+        renderSlot = nextSlot;
+        states[renderSlot] = SlotState.RENDERING;
+        nextSlot = (nextSlot + 1) % states.length;
+        return renderSlot;
+    }
+
+    /**
+     * Finishes the current frame and hands its slot to Direct3D.
+     *
+     * @return the slot that was rendered into
+     */
+    public int endRender() {
+        if (renderSlot == -1) {
+            throw new IllegalStateException("No slot is being rendered to");
+        }
+        var slot = renderSlot;
+        states[slot] = SlotState.PRESENTING;
+        renderSlot = -1;
+        return slot;
+    }
+}
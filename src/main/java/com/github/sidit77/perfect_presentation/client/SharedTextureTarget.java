@@ -0,0 +1,15 @@
+package com.github.sidit77.perfect_presentation.client;
+
+public interface SharedTextureTarget {
+
+    /**
+     * @return the identifier the shared color texture of this render target was allocated with
+     */
+    int perfect_presentation$getSharedTextureKey();
+
+    /**
+     * Attaches a different color texture to this render target.
+     */
+    void perfect_presentation$setColorTexture(int glTextureIdentifier);
+
+}
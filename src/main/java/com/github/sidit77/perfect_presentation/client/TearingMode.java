@@ -0,0 +1,13 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * When a present may tear instead of waiting for the next vblank.
+ */
+public enum TearingMode {
+    /** Never tear, presents without vsync are still queued behind the next vblank */
+    NEVER,
+    /** Tear whenever vsync is off */
+    UNSYNCED,
+    /** Tear whenever vsync is off, and with vsync on tear frames that barely miss their vblank, see {@link AdaptiveTearingPolicy} */
+    ADAPTIVE
+}
@@ -0,0 +1,36 @@
+package com.github.sidit77.perfect_presentation.client;
+
+/**
+ * A {@link FrameClock} that only moves when it is told to. Not thread-safe.
+ */
+public class VirtualClock implements FrameClock {
+
+    private long now;
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    public VirtualClock(long start) {
+        this.now = start;
+    }
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    @Override
+    public void waitUntil(long deadline) {
+        if (deadline > now) {
+            now = deadline;
+        }
+    }
+
+    public void advance(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Time can not go backwards");
+        }
+        now += nanos;
+    }
+}
@@ -14,7 +14,7 @@ import static org.lwjgl.system.windows.GDI32.SetPixelFormat;
 import static org.lwjgl.system.windows.User32.*;
 import static org.lwjgl.system.windows.WindowsUtil.windowsThrowException;
 
-public class WGLContext implements AutoCloseable {
+public class WGLContext implements InteropPlatform.Context {
 
     private final long hwnd;
     private final long hdc;
@@ -21,16 +21,23 @@ public class WinError {
             MemoryLayout.sequenceLayout(Long.MAX_VALUE, JAVA_BYTE));
 
     private static final MemoryLayout errorStateLayout = Linker.Option.captureStateLayout();
-    private static final VarHandle callStateGetLastErrorVarHandle =
-            errorStateLayout.varHandle(MemoryLayout.PathElement.groupElement("GetLastError"));
 
-    private static final MemorySegment ntModuleHandle;
+    // The holders below are only initialized when first needed, which keeps checking an HRESULT free of any
+    // Windows specific setup
+    private static final class LastError {
+        private static final VarHandle callStateGetLastErrorVarHandle =
+                errorStateLayout.varHandle(MemoryLayout.PathElement.groupElement("GetLastError"));
+    }
+
+    private static final class NtModule {
+        private static final MemorySegment ntModuleHandle;
 
-    static {
-        var arena = Arena.ofAuto();
-        var ntModuleName = arena.allocateFrom("NTDLL.DLL", UTF_16LE);
-        var errorState = arena.allocate(errorStateLayout);
-        ntModuleHandle = GetModuleHandleW(errorState, ntModuleName);
+        static {
+            var arena = Arena.ofAuto();
+            var ntModuleName = arena.allocateFrom("NTDLL.DLL", UTF_16LE);
+            var errorState = arena.allocate(errorStateLayout);
+            ntModuleHandle = GetModuleHandleW(errorState, ntModuleName);
+        }
     }
 
     /**
@@ -40,7 +47,7 @@ public class WinError {
      * @return the error code
      */
     public static int getLastError(MemorySegment callState) {
-        return (int) callStateGetLastErrorVarHandle.get(callState, 0);
+        return (int) LastError.callStateGetLastErrorVarHandle.get(callState, 0);
     }
 
     /**
@@ -93,7 +100,7 @@ public class WinError {
                 res = FormatMessageW(
                         errorState,
                         FORMAT_MESSAGE_ALLOCATE_BUFFER | FORMAT_MESSAGE_FROM_HMODULE | FORMAT_MESSAGE_IGNORE_INSERTS,
-                        ntModuleHandle,
+                        NtModule.ntModuleHandle,
                         errorCode,
                         0,
                         messagePointerHolder,
@@ -0,0 +1,42 @@
+package com.github.sidit77.perfect_presentation.client.mixin;
+
+import com.github.sidit77.perfect_presentation.client.FramePacingOverlay;
+import com.github.sidit77.perfect_presentation.client.PerfectPresentationClient;
+import com.github.sidit77.perfect_presentation.client.PresentationBackendProvider;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.gui.components.DebugScreenOverlay;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(DebugScreenOverlay.class)
+public abstract class DebugScreenOverlayMixin {
+
+    @Final
+    @Shadow
+    private Minecraft minecraft;
+
+    @Final
+    @Shadow
+    private Font font;
+
+    @Unique
+    private final FramePacingOverlay framePacingOverlay = new FramePacingOverlay(PerfectPresentationClient.FRAME_TIMINGS);
+
+    @Shadow
+    public abstract boolean showFpsCharts();
+
+    @Inject(method = "render", at = @At("TAIL"))
+    void renderFramePacingGraph(GuiGraphics guiGraphics, CallbackInfo ci) {
+        var frameLoop = ((PresentationBackendProvider)(Object) minecraft.getWindow()).perfect_presentation$getFrameLoop();
+        // stay clear of the vanilla TPS chart, which uses the same corner
+        var bottom = guiGraphics.guiHeight() - (showFpsCharts() ? 64 : 0);
+        framePacingOverlay.render(guiGraphics, font, guiGraphics.guiWidth(), bottom, frameLoop.getRefreshPeriod());
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.sidit77.perfect_presentation.client.mixin;
+
+import com.github.sidit77.perfect_presentation.client.InputLatencyTracker;
+import com.github.sidit77.perfect_presentation.client.PresentationBackendProvider;
+import net.minecraft.client.KeyboardHandler;
+import net.minecraft.client.Minecraft;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(KeyboardHandler.class)
+public class KeyboardHandlerMixin {
+
+    @Final
+    @Shadow
+    private Minecraft minecraft;
+
+    // every typed character comes with a key press, which is all that counts
+    @Inject(method = "keyPress(JIIII)V", at = @At("HEAD"))
+    void timestampKey(CallbackInfo ci) {
+        ((PresentationBackendProvider)(Object) minecraft.getWindow()).perfect_presentation$getFrameLoop().onInput(InputLatencyTracker.Kind.KEY);
+    }
+
+}
@@ -1,8 +1,10 @@
 package com.github.sidit77.perfect_presentation.client.mixin;
 
+import com.github.sidit77.perfect_presentation.client.PresentationBackendProvider;
 import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
 import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
 import com.mojang.blaze3d.pipeline.MainTarget;
+import net.minecraft.client.Minecraft;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 
@@ -12,7 +14,8 @@ public class MainTargetMixin {
 
     @WrapOperation(method = "<init>(II)V", at = @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/pipeline/MainTarget;createFrameBuffer(II)V"))
     void delegateBufferCreation(MainTarget instance, int i, int j, Operation<Void> original) {
-        instance.createBuffers(i, j, false);
+        var renderScale = ((PresentationBackendProvider)(Object) Minecraft.getInstance().getWindow()).perfect_presentation$getFrameLoop().getRenderScale();
+        instance.createBuffers(renderScale.scale(i), renderScale.scale(j), false);
     }
 
 }
@@ -1,16 +1,21 @@
 package com.github.sidit77.perfect_presentation.client.mixin;
 
-import com.github.sidit77.perfect_presentation.client.InteropContext;
-import com.github.sidit77.perfect_presentation.client.InteropContextProvider;
+import com.github.sidit77.perfect_presentation.client.FrameLoop;
+import com.github.sidit77.perfect_presentation.client.GpuFrameTimer;
+import com.github.sidit77.perfect_presentation.client.PresentationBackend;
+import com.github.sidit77.perfect_presentation.client.PresentationBackendProvider;
 import com.github.sidit77.perfect_presentation.client.PerfectPresentationClient;
+import com.github.sidit77.perfect_presentation.client.SharedTextureTarget;
 import com.llamalad7.mixinextras.injector.ModifyExpressionValue;
 import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
 import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
 import com.mojang.blaze3d.pipeline.RenderTarget;
 import com.mojang.blaze3d.platform.Window;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.util.profiling.ProfilerFiller;
 import org.jetbrains.annotations.NotNull;
+import org.lwjgl.glfw.GLFW;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
@@ -30,14 +35,98 @@ public class MinecraftMixin {
     @Shadow
     private ProfilerFiller profiler;
 
+    @Final
+    @Shadow
+    private RenderTarget mainRenderTarget;
+
+    @Final
+    @Shadow
+    public GameRenderer gameRenderer;
+
+    @Unique
+    private GpuFrameTimer gpuFrameTimer;
+
+    @Unique
+    private boolean mainTargetResizePending = false;
+
     @Unique
-    private InteropContext getInteropContext() {
-        return ((InteropContextProvider)(Object) window).prefect_presentation$getInteropContext();
+    private PresentationBackend getPresentationBackend() {
+        return ((PresentationBackendProvider)(Object) window).perfect_presentation$getPresentationBackend();
+    }
+
+    @Unique
+    private FrameLoop getFrameLoop() {
+        return ((PresentationBackendProvider)(Object) window).perfect_presentation$getFrameLoop();
+    }
+
+    @Unique
+    private long now() {
+        return getPresentationBackend().clock().nanoTime();
     }
 
     @Inject(method = "resizeDisplay", at = @At(value = "INVOKE", shift = At.Shift.AFTER, target = "Lcom/mojang/blaze3d/pipeline/RenderTarget;resize(IIZ)V"))
     void resizeSwapChain(CallbackInfo ci) {
-        getInteropContext().resizeSwapChain(window.getWidth(), window.getHeight());
+        getFrameLoop().resizeSwapChain(window.getWidth(), window.getHeight());
+        var trace = PerfectPresentationClient.getFrameTrace();
+        if (trace != null) {
+            trace.resize(now(), window.getWidth(), window.getHeight());
+        }
+    }
+
+    @WrapOperation(method = "resizeDisplay", at = @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/pipeline/RenderTarget;resize(IIZ)V"))
+    void deferMainRenderTargetResize(RenderTarget instance, int width, int height, boolean clearError, Operation<Void> original) {
+        // applied at the start of the next frame, until then the last frame is scaled to the new window size
+        mainTargetResizePending = true;
+    }
+
+    @WrapOperation(method = "resizeDisplay", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/renderer/GameRenderer;resize(II)V"))
+    void deferGameRendererResize(GameRenderer instance, int width, int height, Operation<Void> original) {
+        mainTargetResizePending = true;
+    }
+
+    @Unique
+    private void resizeMainRenderTarget() {
+        var renderScale = getFrameLoop().getRenderScale();
+        var width = renderScale.scale(window.getWidth());
+        var height = renderScale.scale(window.getHeight());
+        mainRenderTarget.resize(width, height, Minecraft.ON_OSX);
+        gameRenderer.resize(width, height);
+    }
+
+    @Inject(method = "runTick(Z)V", at = @At("HEAD"))
+    void scheduleFrameStart(boolean bl, CallbackInfo ci) {
+        var config = PerfectPresentationClient.takeConfigChange();
+        if (config != null) {
+            var scale = getFrameLoop().getRenderScale().getScale();
+            PerfectPresentationClient.applyConfig(getFrameLoop(), config);
+            mainTargetResizePending |= getFrameLoop().getRenderScale().getScale() != scale;
+        }
+        profiler.push("frameStart");
+        getFrameLoop().setContentStatic(((Minecraft)(Object) this).isPaused());
+        if (getFrameLoop().beginFrame()) {
+            // pick up the input that arrived while we were holding the frame back
+            GLFW.glfwPollEvents();
+        }
+        getFrameLoop().consumeInput();
+        profiler.pop();
+        var trace = PerfectPresentationClient.getFrameTrace();
+        if (trace != null) {
+            trace.beginFrame(now());
+        }
+    }
+
+    @Inject(method = "setWindowActive", at = @At("HEAD"))
+    void trackWindowFocus(boolean active, CallbackInfo ci) {
+        getFrameLoop().setFocused(active);
+    }
+
+    @Inject(method = "close", at = @At("HEAD"))
+    void deleteGpuFrameTimer(CallbackInfo ci) {
+        // the window and with it the OpenGL context are destroyed at the end of close
+        if (gpuFrameTimer != null) {
+            gpuFrameTimer.close();
+            gpuFrameTimer = null;
+        }
     }
 
     @Inject(
@@ -45,9 +134,31 @@ public class MinecraftMixin {
             at = @At(value = "CONSTANT", args = "stringValue=render")
     )
     void waitForSwapChain(boolean bl, CallbackInfo ci) {
+        var trace = PerfectPresentationClient.getFrameTrace();
+        if (trace != null) {
+            trace.endTick(now());
+        }
         profiler.push("vsync");
-        getInteropContext().waitForSwapChainSignal();
+        getFrameLoop().waitForSwapChain();
         profiler.pop();
+
+        if (mainTargetResizePending) {
+            mainTargetResizePending = false;
+            profiler.push("resize");
+            resizeMainRenderTarget();
+            profiler.pop();
+        }
+        var target = (SharedTextureTarget) mainRenderTarget;
+        target.perfect_presentation$setColorTexture(getPresentationBackend().acquireSharedTexture(target.perfect_presentation$getSharedTextureKey()));
+        if (getFrameLoop().isGpuFrameTimeNeeded()) {
+            if (gpuFrameTimer == null) {
+                gpuFrameTimer = new GpuFrameTimer();
+            }
+            gpuFrameTimer.begin();
+        }
+        if (trace != null) {
+            trace.beginRender(now());
+        }
     }
 
     @WrapOperation(
@@ -55,7 +166,19 @@ public class MinecraftMixin {
             at = @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/pipeline/RenderTarget;blitToScreen(II)V")
     )
     void blitWithDirectX(RenderTarget instance, int i, int j, Operation<Void> original) {
-        getInteropContext().blitSharedTextureToSwapChain(instance.getColorTextureId());
+        if (gpuFrameTimer != null) {
+            gpuFrameTimer.end();
+            var gpuFrameTime = gpuFrameTimer.poll();
+            if (gpuFrameTime >= 0 && getFrameLoop().onGpuFrameTime(gpuFrameTime)) {
+                mainTargetResizePending = true;
+            }
+        }
+        var trace = PerfectPresentationClient.getFrameTrace();
+        var start = trace != null ? now() : 0;
+        getFrameLoop().blit(((SharedTextureTarget) instance).perfect_presentation$getSharedTextureKey());
+        if (trace != null) {
+            trace.blit(start, now());
+        }
     }
 
     @Inject(
@@ -66,6 +189,19 @@ public class MinecraftMixin {
         profiler.popPush("framerateLimit");
     }
 
+    @ModifyExpressionValue(
+            method = "runTick(Z)V",
+            at = @At(value = "INVOKE", target = "Lnet/minecraft/client/Minecraft;getFramerateLimit()I")
+    )
+    int capFramerateLimit(int original) {
+        var trace = PerfectPresentationClient.getFrameTrace();
+        if (trace != null) {
+            // the replay applies the limiter settings itself
+            trace.frameRateLimit(original);
+        }
+        return getFrameLoop().adjustFrameRateLimit(original);
+    }
+
     @ModifyExpressionValue(
             method = "renderFpsMeter(Lnet/minecraft/client/gui/GuiGraphics;Lnet/minecraft/util/profiling/ProfileResults;)V",
             at = @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/platform/Window;getWidth()I")
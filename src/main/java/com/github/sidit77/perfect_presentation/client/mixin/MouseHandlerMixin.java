@@ -0,0 +1,43 @@
+package com.github.sidit77.perfect_presentation.client.mixin;
+
+import com.github.sidit77.perfect_presentation.client.FrameLoop;
+import com.github.sidit77.perfect_presentation.client.InputLatencyTracker;
+import com.github.sidit77.perfect_presentation.client.PresentationBackendProvider;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.MouseHandler;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(MouseHandler.class)
+public class MouseHandlerMixin {
+
+    @Final
+    @Shadow
+    private Minecraft minecraft;
+
+    @Unique
+    private FrameLoop getFrameLoop() {
+        return ((PresentationBackendProvider)(Object) minecraft.getWindow()).perfect_presentation$getFrameLoop();
+    }
+
+    @Inject(method = "onPress(JIII)V", at = @At("HEAD"))
+    void timestampButton(CallbackInfo ci) {
+        getFrameLoop().onInput(InputLatencyTracker.Kind.MOUSE_BUTTON);
+    }
+
+    @Inject(method = "onScroll(JDD)V", at = @At("HEAD"))
+    void timestampScroll(CallbackInfo ci) {
+        getFrameLoop().onInput(InputLatencyTracker.Kind.SCROLL);
+    }
+
+    @Inject(method = "onMove(JDD)V", at = @At("HEAD"))
+    void timestampCursor(CallbackInfo ci) {
+        getFrameLoop().onInput(InputLatencyTracker.Kind.CURSOR);
+    }
+
+}
@@ -1,20 +1,97 @@
 package com.github.sidit77.perfect_presentation.client.mixin;
 
-import com.github.sidit77.perfect_presentation.client.InteropContext;
+import com.github.sidit77.perfect_presentation.client.FrameLoop;
+import com.github.sidit77.perfect_presentation.client.FrameRateLimiter;
+import com.github.sidit77.perfect_presentation.client.PerfectPresentationClient;
+import com.github.sidit77.perfect_presentation.client.PresentationBackendProvider;
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
 import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.client.Minecraft;
+import org.lwjgl.glfw.GLFW;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(RenderSystem.class)
 public class RenderSystemMixin {
 
+    @Unique
+    private static FrameLoop getFrameLoop() {
+        return ((PresentationBackendProvider)(Object) Minecraft.getInstance().getWindow()).perfect_presentation$getFrameLoop();
+    }
+
     @Redirect(
             method = "flipFrame(J)V",
             at = @At(value = "INVOKE", target = "Lorg/lwjgl/glfw/GLFW;glfwSwapBuffers(J)V")
     )
     private static void proxySwapBuffers(long window) {
-        InteropContext.getCurrentContext().swapChainPresent();
+        var frameLoop = getFrameLoop();
+        var clock = frameLoop.getBackend().clock();
+        var trace = PerfectPresentationClient.getFrameTrace();
+        var start = trace != null ? clock.nanoTime() : 0;
+        if (frameLoop.present() && trace != null) {
+            trace.present(start, clock.nanoTime());
+        }
+        waitWhileIdle(frameLoop);
+    }
+
+    @Unique
+    private static void waitWhileIdle(FrameLoop frameLoop) {
+        var clock = frameLoop.getBackend().clock();
+        // waiting for events instead of sleeping lets the first input event end the wait
+        for (var wakeUp = frameLoop.getIdleWakeUpTime(); wakeUp != Long.MIN_VALUE; wakeUp = frameLoop.getIdleWakeUpTime()) {
+            var remaining = wakeUp - clock.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            GLFW.glfwWaitEventsTimeout(remaining / 1e9);
+        }
+    }
+
+    @Inject(method = "limitDisplayFPS(I)V", at = @At("HEAD"), cancellable = true)
+    private static void replaceFrameRateLimiter(int frameRate, CallbackInfo ci) {
+        var frameLoop = getFrameLoop();
+        if (frameLoop.getFrameRateLimiterMode() != FrameRateLimiter.Mode.VANILLA) {
+            frameLoop.limitFrameRate(frameRate);
+            ci.cancel();
+        }
+    }
+
+    // With a render scale the main target is smaller than the window, but some code sizes the viewport and
+    // scissor box from the window directly.
+
+    @WrapOperation(method = "viewport(IIII)V", at = @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/platform/GlStateManager;_viewport(IIII)V"))
+    private static void scaleWindowViewport(int x, int y, int width, int height, Operation<Void> original) {
+        var minecraft = Minecraft.getInstance();
+        var target = minecraft.getMainRenderTarget();
+        var window = minecraft.getWindow();
+        if (target != null && x == 0 && y == 0 && width == window.getWidth() && height == window.getHeight()) {
+            width = target.viewWidth;
+            height = target.viewHeight;
+        }
+        original.call(x, y, width, height);
+    }
+
+    @WrapOperation(method = "enableScissor(IIII)V", at = @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/platform/GlStateManager;_scissorBox(IIII)V"))
+    private static void scaleScissorBox(int x, int y, int width, int height, Operation<Void> original) {
+        var minecraft = Minecraft.getInstance();
+        var target = minecraft.getMainRenderTarget();
+        var window = minecraft.getWindow();
+        if (target != null && (target.viewWidth != window.getWidth() || target.viewHeight != window.getHeight())) {
+            var scaleX = (double) target.viewWidth / window.getWidth();
+            var scaleY = (double) target.viewHeight / window.getHeight();
+            var x1 = (int) Math.ceil((x + width) * scaleX);
+            var y1 = (int) Math.ceil((y + height) * scaleY);
+            x = (int) Math.floor(x * scaleX);
+            y = (int) Math.floor(y * scaleY);
+            width = x1 - x;
+            height = y1 - y;
+        }
+        original.call(x, y, width, height);
     }
 
 }
@@ -1,12 +1,16 @@
 package com.github.sidit77.perfect_presentation.client.mixin;
 
-import com.github.sidit77.perfect_presentation.client.InteropContext;
+import com.github.sidit77.perfect_presentation.client.PresentationBackend;
+import com.github.sidit77.perfect_presentation.client.SharedTextureTarget;
 import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
 import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
 import com.mojang.blaze3d.pipeline.MainTarget;
 import com.mojang.blaze3d.pipeline.RenderTarget;
+import com.mojang.blaze3d.platform.GlConst;
+import com.mojang.blaze3d.platform.GlStateManager;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
@@ -14,30 +18,73 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import java.nio.IntBuffer;
 
 @Mixin(RenderTarget.class)
-public class RenderTargetMixin {
+public class RenderTargetMixin implements SharedTextureTarget {
+
+    @Shadow
+    public int frameBufferId;
 
     @Shadow
     protected int colorTextureId;
 
+    @Shadow
+    public int filterMode;
+
+    @Shadow
+    public void setFilterMode(int filterMode) { }
+
+    @Unique
+    private int sharedTextureKey = -1;
+
+    @Override
+    public int perfect_presentation$getSharedTextureKey() {
+        return sharedTextureKey;
+    }
+
+    @Override
+    public void perfect_presentation$setColorTexture(int glTextureIdentifier) {
+        if (glTextureIdentifier == colorTextureId)
+            return;
+        GlStateManager._glBindFramebuffer(GlConst.GL_FRAMEBUFFER, frameBufferId);
+        GlStateManager._glFramebufferTexture2D(GlConst.GL_FRAMEBUFFER, GlConst.GL_COLOR_ATTACHMENT0, GlConst.GL_TEXTURE_2D, glTextureIdentifier, 0);
+        GlStateManager._glBindFramebuffer(GlConst.GL_FRAMEBUFFER, 0);
+        colorTextureId = glTextureIdentifier;
+        // the filter mode is a property of the texture, so carry it over
+        setFilterMode(filterMode);
+    }
+
     @WrapOperation(
             method = "createBuffers(IIZ)V",
             at = @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/platform/GlStateManager;_texImage2D(IIIIIIIILjava/nio/IntBuffer;)V", ordinal = 1)
     )
     void createInteropColorBuffer(int target, int level, int internalFormat, int width, int height, int border, int format, int type, IntBuffer data, Operation<Void> original) {
         if (((RenderTarget)(Object)this) instanceof MainTarget) {
-            InteropContext.getCurrentContext().allocateSharedTexture(this.colorTextureId, target, internalFormat, width, height);
+            var backend = PresentationBackend.getCurrent();
+            backend.allocateSharedTexture(this.colorTextureId, target, internalFormat, width, height);
+            sharedTextureKey = this.colorTextureId;
+            // the textures that actually get rendered into belong to the backend, ours only names the allocation
+            this.colorTextureId = backend.acquireSharedTexture(sharedTextureKey);
+            setFilterMode(filterMode);
         } else {
             original.call(target, level, internalFormat, width, height, border, format, type, data);
         }
     }
 
+    @Inject(method = "destroyBuffers()V", at = @At("HEAD"))
+    void restoreInteropColorBuffer(CallbackInfo ci) {
+        // the textures of the ring belong to the backend, the game must only ever release its own one
+        if (sharedTextureKey != -1) {
+            colorTextureId = sharedTextureKey;
+        }
+    }
+
     @Inject(
             method = "destroyBuffers()V",
             at = @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/platform/TextureUtil;releaseTextureId(I)V", ordinal = 1)
     )
     void destroyInteropColorBuffer(CallbackInfo ci) {
         if (((RenderTarget)(Object)this) instanceof MainTarget) {
-            InteropContext.getCurrentContext().deallocateSharedTexture(this.colorTextureId);
+            PresentationBackend.getCurrent().deallocateSharedTexture(this.colorTextureId);
+            sharedTextureKey = -1;
         }
     }
 
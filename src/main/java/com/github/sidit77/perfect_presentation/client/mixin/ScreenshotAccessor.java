@@ -0,0 +1,17 @@
+package com.github.sidit77.perfect_presentation.client.mixin;
+
+import net.minecraft.client.Screenshot;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Invoker;
+
+import java.io.File;
+
+@Mixin(Screenshot.class)
+public interface ScreenshotAccessor {
+
+    @Invoker("getFile")
+    static File invokeGetFile(File directory) {
+        throw new AssertionError();
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.github.sidit77.perfect_presentation.client.mixin;
+
+import com.github.sidit77.perfect_presentation.client.PerfectPresentationClient;
+import com.github.sidit77.perfect_presentation.client.PresentationBackend;
+import com.github.sidit77.perfect_presentation.client.SharedTextureTarget;
+import com.mojang.blaze3d.pipeline.MainTarget;
+import com.mojang.blaze3d.pipeline.RenderTarget;
+import net.minecraft.ChatFormatting;
+import net.minecraft.client.Screenshot;
+import net.minecraft.network.chat.ClickEvent;
+import net.minecraft.network.chat.Component;
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.io.File;
+import java.util.function.Consumer;
+
+@Mixin(Screenshot.class)
+public class ScreenshotMixin {
+
+    @Inject(method = "_grab", at = @At("HEAD"), cancellable = true)
+    private static void grabAsynchronously(File gameDirectory, @Nullable String screenshotName, RenderTarget buffer, Consumer<Component> messageConsumer, CallbackInfo ci) {
+        var encoder = PerfectPresentationClient.SCREENSHOT_ENCODER;
+        // with a backlog of screenshots the vanilla path is the better choice than piling up more pixels
+        if (!(buffer instanceof MainTarget) || !encoder.hasCapacity()) {
+            return;
+        }
+
+        var directory = new File(gameDirectory, "screenshots");
+        directory.mkdir();
+        var file = screenshotName == null ? ScreenshotAccessor.invokeGetFile(directory) : new File(directory, screenshotName);
+
+        var key = ((SharedTextureTarget) buffer).perfect_presentation$getSharedTextureKey();
+        var accepted = PresentationBackend.getCurrent().requestReadback(key, image -> {
+            if (!encoder.submit(image, file.toPath(), error -> reportScreenshot(file, error, messageConsumer))) {
+                messageConsumer.accept(Component.translatable("screenshot.failure", "Too many screenshots in progress"));
+            }
+        });
+        if (accepted) {
+            ci.cancel();
+        }
+    }
+
+    @Unique
+    private static void reportScreenshot(File file, @Nullable Throwable error, Consumer<Component> messageConsumer) {
+        if (error != null) {
+            messageConsumer.accept(Component.translatable("screenshot.failure", error.getMessage()));
+            return;
+        }
+        Component name = Component.literal(file.getName())
+                .withStyle(ChatFormatting.UNDERLINE)
+                .withStyle(style -> style.withClickEvent(new ClickEvent(ClickEvent.Action.OPEN_FILE, file.getAbsolutePath())));
+        messageConsumer.accept(Component.translatable("screenshot.success", name));
+    }
+
+}
@@ -1,11 +1,16 @@
 package com.github.sidit77.perfect_presentation.client.mixin;
 
 import com.github.sidit77.perfect_presentation.client.ContextCreationFlags;
+import com.github.sidit77.perfect_presentation.client.FrameLoop;
 import com.github.sidit77.perfect_presentation.client.InteropContext;
-import com.github.sidit77.perfect_presentation.client.InteropContextProvider;
+import com.github.sidit77.perfect_presentation.client.PerfectPresentationClient;
+import com.github.sidit77.perfect_presentation.client.PresentationBackend;
+import com.github.sidit77.perfect_presentation.client.PresentationBackendProvider;
 import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
 import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import com.mojang.blaze3d.platform.Monitor;
 import com.mojang.blaze3d.platform.Window;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.glfw.GLFWNativeWin32;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
@@ -18,7 +23,7 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import static org.lwjgl.glfw.GLFW.*;
 
 @Mixin(Window.class)
-public abstract class WindowMixin implements InteropContextProvider {
+public abstract class WindowMixin implements PresentationBackendProvider {
 
     @Shadow
     @Final
@@ -28,8 +33,13 @@ public abstract class WindowMixin implements InteropContextProvider {
     private final ContextCreationFlags contextCreationFlags = new ContextCreationFlags();
 
     @Unique
-    private InteropContext interopContext;
+    private PresentationBackend presentationBackend;
 
+    @Unique
+    private FrameLoop frameLoop;
+
+    @Shadow
+    public abstract @Nullable Monitor findBestMonitor();
 
     @WrapOperation(
             method = "<init>(Lcom/mojang/blaze3d/platform/WindowEventHandler;Lcom/mojang/blaze3d/platform/ScreenManager;Lcom/mojang/blaze3d/platform/DisplayData;Ljava/lang/String;Ljava/lang/String;)V",
@@ -63,16 +73,38 @@ public abstract class WindowMixin implements InteropContextProvider {
 
         //TODO verify that we're on Windows
         var hwnd = GLFWNativeWin32.glfwGetWin32Window(window);
-        interopContext = new InteropContext(hwnd, contextCreationFlags);
+        presentationBackend = new InteropContext(hwnd, contextCreationFlags, PerfectPresentationClient.takeDeviceResources());
+        frameLoop = new FrameLoop(presentationBackend, PerfectPresentationClient.FRAME_TIMINGS);
+        PerfectPresentationClient.applyConfig(frameLoop, PerfectPresentationClient.config);
+        presentationBackend.setFrameCapture(PerfectPresentationClient.createFrameCapture());
         return window;
     }
 
+    @Inject(
+            method = {
+                    "<init>(Lcom/mojang/blaze3d/platform/WindowEventHandler;Lcom/mojang/blaze3d/platform/ScreenManager;Lcom/mojang/blaze3d/platform/DisplayData;Ljava/lang/String;Ljava/lang/String;)V",
+                    "onMove(JII)V",
+                    "setMode()V"
+            },
+            at = @At("TAIL")
+    )
+    void updateRefreshRate(CallbackInfo ci) {
+        var monitor = findBestMonitor();
+        if (monitor != null) {
+            frameLoop.setRefreshRate(monitor.getCurrentMode().getRefreshRate());
+            var trace = PerfectPresentationClient.getFrameTrace();
+            if (trace != null) {
+                trace.refreshRate(presentationBackend.clock().nanoTime(), monitor.getCurrentMode().getRefreshRate());
+            }
+        }
+    }
+
     @WrapOperation(
             method = "<init>(Lcom/mojang/blaze3d/platform/WindowEventHandler;Lcom/mojang/blaze3d/platform/ScreenManager;Lcom/mojang/blaze3d/platform/DisplayData;Ljava/lang/String;Ljava/lang/String;)V",
             at = @At(value = "INVOKE", target = "Lorg/lwjgl/glfw/GLFW;glfwMakeContextCurrent(J)V")
     )
     void proxyMakeCurrent(long window, Operation<Void> original) {
-        interopContext.makeCurrent();
+        presentationBackend.makeCurrent();
     }
 
     @WrapOperation(
@@ -80,7 +112,11 @@ public abstract class WindowMixin implements InteropContextProvider {
             at = @At(value = "INVOKE", target = "Lorg/lwjgl/glfw/GLFW;glfwSwapInterval(I)V")
     )
     void proxySwapInterval(int interval, Operation<Void> original) {
-        interopContext.setSyncInterval(interval);
+        frameLoop.setSyncInterval(interval);
+        var trace = PerfectPresentationClient.getFrameTrace();
+        if (trace != null) {
+            trace.syncInterval(presentationBackend.clock().nanoTime(), interval);
+        }
     }
 
     @WrapOperation(method = "setMode", at = @At(value = "INVOKE", ordinal = 0, target = "Lorg/lwjgl/glfw/GLFW;glfwSetWindowMonitor(JJIIIII)V"))
@@ -96,11 +132,24 @@ public abstract class WindowMixin implements InteropContextProvider {
 
     @Inject(method = "close", at = @At(value = "INVOKE", target = "Lorg/lwjgl/glfw/GLFW;glfwDestroyWindow(J)V"))
     void destroyInteropContext(CallbackInfo ci) {
-        interopContext.close();
+        var trace = PerfectPresentationClient.getFrameTrace();
+        if (trace != null) {
+            trace.close();
+        }
+        var csv = PerfectPresentationClient.getFrameTimingCsv();
+        if (csv != null) {
+            csv.close();
+        }
+        presentationBackend.close();
+    }
+
+    @Override
+    public PresentationBackend perfect_presentation$getPresentationBackend() {
+        return presentationBackend;
     }
 
     @Override
-    public InteropContext prefect_presentation$getInteropContext() {
-        return interopContext;
+    public FrameLoop perfect_presentation$getFrameLoop() {
+        return frameLoop;
     }
 }
@@ -0,0 +1,108 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives {@link AdaptiveTearingPolicy} with synthetic 60 Hz traces anchored on a vblank at time {@code 0}.
+ */
+class AdaptiveTearingPolicyTest {
+
+    private static final long REFRESH_PERIOD = 16_666_667;
+    private static final long PRESENT_COST = 200_000;
+    private static final long MILLIS = 1_000_000;
+
+    private final AdaptiveTearingPolicy policy = new AdaptiveTearingPolicy();
+
+    @BeforeEach
+    void anchor() {
+        policy.onVblank(0);
+    }
+
+    private boolean present(long presentTime) {
+        var tear = policy.shouldTear(presentTime, REFRESH_PERIOD);
+        policy.onPresented(PRESENT_COST, true);
+        return tear;
+    }
+
+    /**
+     * Presents frames {@code 0} to {@code frames - 1} a few milliseconds into their refresh, each one right on time.
+     */
+    private void presentOnTime(int frames) {
+        for (int i = 0; i < frames; i++) {
+            assertFalse(present(i * REFRESH_PERIOD + 5 * MILLIS), "frame " + i + " is on time");
+        }
+    }
+
+    @Test
+    void framesOnTimeKeepVsync() {
+        presentOnTime(100);
+    }
+
+    @Test
+    void slightlyLateFrameTears() {
+        presentOnTime(10);
+        // frame 10 was due on vblank 11 and is ready just after it
+        assertTrue(present(11 * REFRESH_PERIOD + MILLIS));
+        // it took the place of the frame of vblank 11, so the next one is on time again
+        assertFalse(present(11 * REFRESH_PERIOD + 5 * MILLIS));
+        assertFalse(present(12 * REFRESH_PERIOD + 5 * MILLIS));
+    }
+
+    @Test
+    void veryLateFrameWaitsForTheNextVblank() {
+        presentOnTime(10);
+        // well past a quarter of the refresh, the tear line would be in the middle of the screen
+        assertFalse(present(11 * REFRESH_PERIOD + 8 * MILLIS));
+        // that frame goes out on vblank 12, the next one is due on vblank 13
+        assertFalse(present(12 * REFRESH_PERIOD + 5 * MILLIS));
+    }
+
+    @Test
+    void thresholdSetsHowLateAFrameMayTear() {
+        policy.setThreshold(1.0);
+        presentOnTime(10);
+        assertTrue(present(11 * REFRESH_PERIOD + 8 * MILLIS));
+
+        policy.reset();
+        policy.onVblank(0);
+        policy.setThreshold(0.0);
+        presentOnTime(10);
+        assertFalse(present(11 * REFRESH_PERIOD + MILLIS));
+    }
+
+    @Test
+    void expensivePresentsCountAsLater() {
+        // presents that take 3 ms are predicted to be ready 3 ms after they start
+        for (int i = 0; i < 50; i++) {
+            assertFalse(policy.shouldTear(i * REFRESH_PERIOD + 5 * MILLIS, REFRESH_PERIOD));
+            policy.onPresented(3 * MILLIS, true);
+        }
+        assertEquals(3 * MILLIS, policy.getPredictedCost(), 0.1 * MILLIS);
+        // frame 50 starts presenting before vblank 51 but is only ready after it
+        assertTrue(policy.shouldTear(51 * REFRESH_PERIOD - MILLIS, REFRESH_PERIOD));
+    }
+
+    @Test
+    void nothingTearsWithoutAnExpectation() {
+        var fresh = new AdaptiveTearingPolicy();
+        // no vblank yet
+        assertFalse(fresh.shouldTear(REFRESH_PERIOD + MILLIS, REFRESH_PERIOD));
+
+        // the first frame after a present the policy was not asked about
+        presentOnTime(10);
+        policy.onPresented(PRESENT_COST, false);
+        assertFalse(present(11 * REFRESH_PERIOD + MILLIS));
+
+        // an anchor more than a second old
+        policy.reset();
+        policy.onVblank(0);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(present((i + 100) * REFRESH_PERIOD + (i == 9 ? REFRESH_PERIOD + MILLIS : 5 * MILLIS)));
+        }
+    }
+}
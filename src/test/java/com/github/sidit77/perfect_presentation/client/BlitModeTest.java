@@ -0,0 +1,29 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BlitModeTest {
+
+    @Test
+    void matchingSizesKeepEveryPixel() {
+        assertEquals(BlitMode.DRAW, BlitMode.select(1920, 1080, 1920, 1080, false));
+        // nothing to sharpen without scaling
+        assertEquals(BlitMode.DRAW, BlitMode.select(1920, 1080, 1920, 1080, true));
+    }
+
+    @Test
+    void scaledFramesAreFiltered() {
+        assertEquals(BlitMode.DRAW_SCALED, BlitMode.select(1440, 810, 1920, 1080, false));
+        assertEquals(BlitMode.DRAW_SHARPENED, BlitMode.select(1440, 810, 1920, 1080, true));
+    }
+
+    @Test
+    void eitherDimensionDifferingCountsAsScaled() {
+        assertEquals(BlitMode.DRAW_SCALED, BlitMode.select(1920, 1079, 1920, 1080, false));
+        assertEquals(BlitMode.DRAW_SCALED, BlitMode.select(1919, 1080, 1920, 1080, false));
+        // a frame larger than the back buffer, e.g. for a moment after the window shrank
+        assertEquals(BlitMode.DRAW_SHARPENED, BlitMode.select(2560, 1440, 1920, 1080, true));
+    }
+}
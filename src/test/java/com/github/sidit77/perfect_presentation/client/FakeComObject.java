@@ -0,0 +1,106 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+/**
+ * A COM object whose vtable is made of upcall stubs, standing in for a real Direct3D or DXGI object.
+ * <p>
+ * {@code QueryInterface} hands out the object itself, {@code AddRef} and {@code Release} do nothing and every
+ * other method ends up in a single stub that returns {@code S_OK}. Those stubs declare no parameters, which is fine on
+ * the 64-bit calling conventions because the caller owns the arguments, and keeps the upcalls from allocating.
+ * Methods that create objects can be given a {@link Factory} instead, so code that creates its resources up front can
+ * run against fakes as well.
+ * </p>
+ */
+final class FakeComObject {
+
+    // larger than any interface the presentation path uses
+    private static final int VTABLE_SIZE = 256;
+
+    private static final MethodHandle SUCCEED;
+    private static final MethodHandle QUERY_INTERFACE;
+    private static final MethodHandle REF_COUNT;
+    private static final MethodHandle HAND_OUT;
+
+    static {
+        try {
+            var lookup = MethodHandles.lookup();
+            SUCCEED = lookup.findStatic(FakeComObject.class, "succeed", MethodType.methodType(int.class));
+            QUERY_INTERFACE = lookup.findStatic(FakeComObject.class, "queryInterface",
+                    MethodType.methodType(int.class, MemorySegment.class, MemorySegment.class, MemorySegment.class));
+            REF_COUNT = lookup.findStatic(FakeComObject.class, "refCount", MethodType.methodType(int.class));
+            HAND_OUT = lookup.findStatic(FakeComObject.class, "handOut",
+                    MethodType.methodType(int.class, MemorySegment.class, int.class, MemorySegment[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * A method that creates an object and hands it out through one of its parameters, like
+     * {@code ID3D11Device::CreateTexture2D}.
+     *
+     * @param slot the index of the method in the vtable
+     * @param result the index of the parameter the object is written to, the object the method is called on being 0
+     * @param product what every call hands out
+     */
+    record Factory(int slot, int result, MemorySegment product) { }
+
+    static MemorySegment create(Arena arena, Factory... factories) {
+        var linker = Linker.nativeLinker();
+        var succeed = linker.upcallStub(SUCCEED, FunctionDescriptor.of(JAVA_INT), arena);
+        var queryInterface = linker.upcallStub(QUERY_INTERFACE, FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS), arena);
+        var refCount = linker.upcallStub(REF_COUNT, FunctionDescriptor.of(JAVA_INT), arena);
+
+        var vtable = arena.allocate(ADDRESS, VTABLE_SIZE);
+        vtable.setAtIndex(ADDRESS, 0, queryInterface);
+        vtable.setAtIndex(ADDRESS, 1, refCount);
+        vtable.setAtIndex(ADDRESS, 2, refCount);
+        for (int i = 3; i < VTABLE_SIZE; i++) {
+            vtable.setAtIndex(ADDRESS, i, succeed);
+        }
+        for (var factory : factories) {
+            // every parameter up to the result is declared as a pointer, the object is only written to the last one
+            var parameters = new MemoryLayout[factory.result() + 1];
+            Arrays.fill(parameters, ADDRESS);
+            var target = MethodHandles.insertArguments(HAND_OUT, 0, factory.product(), factory.result())
+                    .asCollector(MemorySegment[].class, parameters.length);
+            vtable.setAtIndex(ADDRESS, factory.slot(), linker.upcallStub(target, FunctionDescriptor.of(JAVA_INT, parameters), arena));
+        }
+
+        var object = arena.allocate(ADDRESS);
+        object.set(ADDRESS, 0, vtable);
+        return object;
+    }
+
+    private static int succeed() {
+        return 0;
+    }
+
+    private static int queryInterface(MemorySegment self, MemorySegment iid, MemorySegment result) {
+        result.reinterpret(ADDRESS.byteSize()).set(ADDRESS, 0, self);
+        return 0;
+    }
+
+    private static int handOut(MemorySegment product, int result, MemorySegment[] parameters) {
+        parameters[result].reinterpret(ADDRESS.byteSize()).set(ADDRESS, 0, product);
+        return 0;
+    }
+
+    private static int refCount() {
+        return 1;
+    }
+
+    private FakeComObject() { }
+}
@@ -0,0 +1,124 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+/**
+ * An {@link InteropPlatform} without Windows or OpenGL, to go with {@link FakeComObject}s.
+ * <p>
+ * The two calls that happen every frame still cross into native code and back: {@code wglDX(Un)LockObjectsNV} are
+ * upcall stubs handed to {@link InteropContext#interopLock}, and {@code WaitForSingleObject} is a downcall into an
+ * upcall stub that reports the handle as signaled right away. Everything else is plain Java.
+ * </p>
+ */
+final class FakeInteropPlatform implements InteropPlatform {
+
+    // DWORD WaitForSingleObject(HANDLE hHandle, DWORD dwMilliseconds)
+    private static final FunctionDescriptor WAIT_FOR_SINGLE_OBJECT = FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT);
+    // the stubs ignore their parameters and do not declare them, for the same reason as the fake COM methods
+    private static final FunctionDescriptor STUB = FunctionDescriptor.of(JAVA_INT);
+    private static final int WAIT_OBJECT_0 = 0;
+
+    // the stubs are shared by every instance and live as long as the JVM, like the functions they stand in for
+    private static final MethodHandle WAIT;
+    private static final long LOCK_OBJECTS_FUNCTION;
+
+    static {
+        try {
+            var lookup = MethodHandles.lookup();
+            var linker = Linker.nativeLinker();
+            var wait = linker.upcallStub(lookup.findStatic(FakeInteropPlatform.class, "waitForSignal",
+                    MethodType.methodType(int.class)), STUB, Arena.global());
+            WAIT = linker.downcallHandle(wait, WAIT_FOR_SINGLE_OBJECT);
+            LOCK_OBJECTS_FUNCTION = linker.upcallStub(lookup.findStatic(FakeInteropPlatform.class, "lockObjects",
+                    MethodType.methodType(int.class)), STUB, Arena.global()).address();
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private int nextTexture = 1;
+    private long nextObject = 1;
+
+    private static int waitForSignal() {
+        return WAIT_OBJECT_0;
+    }
+
+    private static int lockObjects() {
+        return 1;
+    }
+
+    @Override
+    public Context createContext(ContextCreationFlags flags) {
+        return new Context() {
+            @Override
+            public void makeCurrent() { }
+
+            @Override
+            public void close() { }
+        };
+    }
+
+    @Override
+    public long openDevice(MemorySegment device) {
+        return nextObject++;
+    }
+
+    @Override
+    public void closeDevice(long device) { }
+
+    @Override
+    public long lockObjectsFunction() {
+        return LOCK_OBJECTS_FUNCTION;
+    }
+
+    @Override
+    public long unlockObjectsFunction() {
+        return LOCK_OBJECTS_FUNCTION;
+    }
+
+    @Override
+    public long registerObject(long device, MemorySegment object, int glTexture, int glTextureType) {
+        return nextObject++;
+    }
+
+    @Override
+    public boolean unregisterObject(long device, long object) {
+        return true;
+    }
+
+    @Override
+    public int createTexture() {
+        return nextTexture++;
+    }
+
+    @Override
+    public void releaseTexture(int texture) { }
+
+    @Override
+    public int waitForSingleObject(MemorySegment errorState, MemorySegment handle, int milliseconds) {
+        try {
+            return (int) WAIT.invokeExact(handle, milliseconds);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    @Override
+    public int closeHandle(MemorySegment errorState, MemorySegment handle) {
+        return 1;
+    }
+
+    @Override
+    public long queryPerformanceFrequency() {
+        return 10_000_000;
+    }
+}
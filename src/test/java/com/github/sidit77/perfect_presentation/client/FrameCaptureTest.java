@@ -0,0 +1,166 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link FrameCapture} headlessly on frames built in memory and reads the Y4M file and its index back.
+ */
+class FrameCaptureTest {
+
+    private static final int BLACK = 0x000000;
+    private static final int WHITE = 0xFFFFFF;
+    // BT.601 limited range
+    private static final byte BLACK_LUMA = 16;
+    private static final byte WHITE_LUMA = (byte) 235;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * @return a tightly packed RGBA frame in which every row has a single color
+     */
+    private static MemorySegment frame(int width, int... rowColors) {
+        var pixels = new byte[width * rowColors.length * 4];
+        for (int y = 0; y < rowColors.length; y++) {
+            for (int x = 0; x < width; x++) {
+                var i = (y * width + x) * 4;
+                pixels[i] = (byte) (rowColors[y] >>> 16);
+                pixels[i + 1] = (byte) (rowColors[y] >>> 8);
+                pixels[i + 2] = (byte) rowColors[y];
+                pixels[i + 3] = (byte) 0xFF;
+            }
+        }
+        return MemorySegment.ofArray(pixels);
+    }
+
+    private static boolean offer(FrameCapture capture, long timestamp, int width, int... rowColors) {
+        return capture.offer(timestamp, width, rowColors.length, frame(width, rowColors), width * 4L, false);
+    }
+
+    /**
+     * @return the {@code (sequence, timestamp)} pairs of the index
+     */
+    private static long[] readIndex(Path file) throws IOException {
+        var buffer = ByteBuffer.wrap(Files.readAllBytes(file.resolveSibling(file.getFileName() + ".timestamps"))).order(ByteOrder.LITTLE_ENDIAN);
+        var index = new long[buffer.remaining() / 8];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = buffer.getLong();
+        }
+        return index;
+    }
+
+    @Test
+    void framesAreWrittenAsY4M() throws IOException {
+        var file = directory.resolve("capture.y4m");
+        try (var capture = new FrameCapture(file, 10, 1, 60, 3)) {
+            assertTrue(offer(capture, 1_000, 4, WHITE, WHITE));
+            assertTrue(offer(capture, 2_000, 4, BLACK, BLACK));
+        }
+
+        var header = "YUV4MPEG2 W4 H2 F60:1 Ip A1:1 C420jpeg\n";
+        // 8 luma samples and one of each chroma plane
+        var frameSize = "FRAME\n".length() + 8 + 2 + 2;
+        var video = Files.readAllBytes(file);
+        assertEquals(header.length() + 2 * frameSize, video.length);
+        assertEquals(header, new String(video, 0, header.length(), US_ASCII));
+        for (int frame = 0; frame < 2; frame++) {
+            var base = header.length() + frame * frameSize;
+            assertEquals("FRAME\n", new String(video, base, 6, US_ASCII));
+            for (int i = 0; i < 8; i++) {
+                assertEquals(frame == 0 ? WHITE_LUMA : BLACK_LUMA, video[base + 6 + i]);
+            }
+            // gray has no chroma
+            for (int i = 8; i < 12; i++) {
+                assertEquals((byte) 128, video[base + 6 + i]);
+            }
+        }
+        assertArrayEquals(new long[] { 0, 1_000, 1, 2_000 }, readIndex(file));
+    }
+
+    @Test
+    void bottomUpFramesAreFlippedAndDownscaled() throws IOException {
+        var file = directory.resolve("capture.y4m");
+        try (var capture = new FrameCapture(file, 10, 2, 60, 1)) {
+            // as OpenGL stores it: the bottom rows first
+            var pixels = frame(4, BLACK, BLACK, BLACK, BLACK, WHITE, WHITE, WHITE, WHITE);
+            assertTrue(capture.offer(0, 4, 8, pixels, 16, true));
+        }
+        var video = Files.readAllBytes(file);
+        var luma = "YUV4MPEG2 W2 H4 F60:1 Ip A1:1 C420jpeg\nFRAME\n".length();
+        // 2x4 after halving, white on top
+        assertArrayEquals(new byte[] { WHITE_LUMA, WHITE_LUMA, WHITE_LUMA, WHITE_LUMA, BLACK_LUMA, BLACK_LUMA, BLACK_LUMA, BLACK_LUMA },
+                Arrays.copyOfRange(video, luma, luma + 8));
+    }
+
+    @Test
+    void skippedAndRejectedFramesLeaveGapsInTheIndex() throws IOException {
+        var file = directory.resolve("capture.y4m");
+        try (var capture = new FrameCapture(file, 2, 1, 60, 3)) {
+            assertTrue(offer(capture, 10, 2, WHITE, WHITE));
+            capture.skipFrame();
+            // the size is fixed by the first frame
+            assertFalse(offer(capture, 30, 4, WHITE, WHITE));
+            assertTrue(offer(capture, 40, 2, WHITE, WHITE));
+            // the capture is full
+            assertFalse(capture.wantsFrame());
+            assertFalse(offer(capture, 50, 2, WHITE, WHITE));
+            capture.close();
+            assertEquals(2, capture.getWrittenFrames());
+            assertEquals(3, capture.getDroppedFrames());
+        }
+        assertArrayEquals(new long[] { 0, 10, 3, 40 }, readIndex(file));
+    }
+
+    @Test
+    void slowWriterMakesTheProducerDropFrames() throws IOException {
+        var file = directory.resolve("capture.y4m");
+        var frames = 200;
+        var pixels = frame(256, new int[256]);
+        var accepted = 0;
+        try (var capture = new FrameCapture(file, frames, 1, 60, 1)) {
+            // converting a frame takes far longer than copying it, so the single slot is soon still taken
+            for (int i = 0; i < frames; i++) {
+                if (capture.offer(i, 256, 256, pixels, 256 * 4, false)) {
+                    accepted++;
+                }
+            }
+            capture.close();
+            assertEquals(accepted, capture.getWrittenFrames());
+            assertEquals(frames - accepted, capture.getDroppedFrames());
+        }
+        assertTrue(accepted < frames, "no frame was dropped");
+
+        var index = readIndex(file);
+        assertEquals(2 * accepted, index.length);
+        for (int i = 0; i < index.length; i += 2) {
+            assertTrue(i == 0 || index[i] > index[i - 2], "sequence numbers must grow");
+            // every frame was stamped with its sequence number
+            assertEquals(index[i], index[i + 1]);
+        }
+    }
+
+    @Test
+    void tinyFramesAreNotCaptured() {
+        var file = directory.resolve("capture.y4m");
+        try (var capture = new FrameCapture(file, 10, 4, 60, 1)) {
+            assertFalse(offer(capture, 0, 4, WHITE, WHITE, WHITE, WHITE));
+            assertFalse(capture.wantsFrame());
+        }
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the ordering and ownership rules of {@link FrameHandoff}, on one thread and between a producer and a
+ * consumer thread.
+ */
+class FrameHandoffTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private static final class Frame {
+        long sequence = -1;
+    }
+
+    private static void join(Thread thread) throws InterruptedException {
+        thread.join(TIMEOUT_MILLIS);
+        assertFalse(thread.isAlive(), thread.getName() + " is stuck");
+    }
+
+    @Test
+    void itemsComeOutInOrderAndAreReused() {
+        var handoff = new FrameHandoff<>(2, Frame::new);
+        var first = handoff.claim();
+        first.sequence = handoff.getClaimedSequence();
+        handoff.publish();
+        var second = handoff.claim();
+        second.sequence = handoff.getClaimedSequence();
+        handoff.publish();
+
+        assertSame(first, handoff.take());
+        assertEquals(0, first.sequence);
+        handoff.release();
+        // the ring wraps around to the released item
+        assertSame(first, handoff.claim());
+        assertEquals(2, handoff.getClaimedSequence());
+        handoff.publish();
+
+        assertSame(second, handoff.take());
+        assertEquals(1, second.sequence);
+        handoff.release();
+        assertSame(first, handoff.take());
+        handoff.release();
+        assertTrue(handoff.awaitIdle());
+    }
+
+    @Test
+    void misuseIsRefused() {
+        var handoff = new FrameHandoff<>(2, Frame::new);
+        assertThrows(IllegalStateException.class, handoff::publish);
+        handoff.claim();
+        assertThrows(IllegalStateException.class, handoff::claim);
+        assertThrows(IllegalArgumentException.class, () -> new FrameHandoff<>(3, Frame::new));
+        assertThrows(IllegalArgumentException.class, () -> new FrameHandoff<>(0, Frame::new));
+    }
+
+    @Test
+    void nothingReleasedIsNeededForNegativeSequences() {
+        var handoff = new FrameHandoff<>(1, Frame::new);
+        assertTrue(handoff.awaitReleased(-1));
+        // nothing was published
+        assertTrue(handoff.awaitIdle());
+    }
+
+    @Test
+    void consumerSeesEveryFrameInOrder() throws InterruptedException {
+        var frames = 20_000;
+        var handoff = new FrameHandoff<>(4, Frame::new);
+        var failure = new AtomicReference<String>();
+
+        var consumer = new Thread(() -> {
+            for (long expected = 0; ; expected++) {
+                var frame = handoff.take();
+                if (frame == null) {
+                    if (expected != frames) {
+                        failure.set("ended after " + expected + " frames");
+                    }
+                    return;
+                }
+                if (frame.sequence != expected) {
+                    failure.set("got frame " + frame.sequence + " instead of " + expected);
+                    return;
+                }
+                handoff.release();
+            }
+        }, "consumer");
+        consumer.start();
+
+        var producer = new Thread(() -> {
+            for (int i = 0; i < frames; i++) {
+                var frame = handoff.claim();
+                frame.sequence = handoff.getClaimedSequence();
+                handoff.publish();
+                // like the render thread before it locks a shared texture again, now and then
+                if (i % 100 == 0 && (!handoff.awaitReleased(handoff.getClaimedSequence()) || frame.sequence != i)) {
+                    failure.set("frame " + i + " was not released or was changed by the consumer");
+                    return;
+                }
+            }
+            handoff.awaitIdle();
+            handoff.close();
+        }, "producer");
+        producer.start();
+
+        join(producer);
+        join(consumer);
+        assertNull(failure.get(), failure.get());
+    }
+
+    @Test
+    void closingDrainsTheConsumerAndStopsTheProducer() throws InterruptedException {
+        var handoff = new FrameHandoff<>(1, Frame::new);
+        handoff.claim().sequence = 7;
+        handoff.publish();
+
+        // the only item is still published, so the producer has to wait for it
+        var claimed = new AtomicReference<Object>(new Object());
+        var producer = new Thread(() -> claimed.set(handoff.claim()), "producer");
+        producer.start();
+        handoff.close();
+        join(producer);
+        assertNull(claimed.get());
+        assertFalse(handoff.awaitReleased(0));
+
+        // items published before closing still arrive
+        assertEquals(7, handoff.take().sequence);
+        handoff.release();
+        assertNull(handoff.take());
+    }
+}
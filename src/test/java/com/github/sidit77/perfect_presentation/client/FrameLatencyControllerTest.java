@@ -0,0 +1,114 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Drives {@link FrameLatencyController} with its default parameters through synthetic 60 Hz frame-time traces.
+ */
+class FrameLatencyControllerTest {
+
+    private static final long REFRESH_PERIOD = 16_666_667;
+    private static final int WINDOW = 120;
+
+    /**
+     * Feeds a trace in which every {@code missEvery}-th frame takes two refreshes, {@code 0} for none.
+     *
+     * @return how often the latency changed
+     */
+    private static int feed(FrameLatencyController controller, int frames, int missEvery, long swapChainWait) {
+        var changes = 0;
+        for (int i = 1; i <= frames; i++) {
+            var interval = missEvery != 0 && i % missEvery == 0 ? 2 * REFRESH_PERIOD : REFRESH_PERIOD;
+            if (controller.onFrame(interval, swapChainWait, REFRESH_PERIOD)) {
+                changes++;
+            }
+        }
+        return changes;
+    }
+
+    @Test
+    void steadyTraceKeepsTheLowestLatency() {
+        var controller = new FrameLatencyController();
+        assertEquals(0, feed(controller, 20 * WINDOW, 0, REFRESH_PERIOD / 2));
+        assertEquals(FrameLatencyController.MIN_FRAME_LATENCY, controller.getLatency());
+    }
+
+    @Test
+    void stutterRaisesTheLatencyOnceAWindow() {
+        var controller = new FrameLatencyController();
+        // one in ten frames missed, well above the 5% threshold
+        assertEquals(0, feed(controller, WINDOW - 1, 10, 0));
+        assertEquals(1, feed(controller, 1, 10, 0));
+        assertEquals(2, controller.getLatency());
+        assertEquals(1, feed(controller, WINDOW, 10, 0));
+        assertEquals(3, controller.getLatency());
+        // capped
+        assertEquals(0, feed(controller, 5 * WINDOW, 10, 0));
+        assertEquals(FrameLatencyController.MAX_FRAME_LATENCY, controller.getLatency());
+    }
+
+    @Test
+    void latencyIsLoweredAfterSeveralCalmWindows() {
+        var controller = new FrameLatencyController();
+        feed(controller, WINDOW, 10, 0);
+        assertEquals(2, controller.getLatency());
+
+        // three calm windows are not enough
+        assertEquals(0, feed(controller, 3 * WINDOW, 0, REFRESH_PERIOD / 2));
+        assertEquals(2, controller.getLatency());
+        assertEquals(1, feed(controller, WINDOW, 0, REFRESH_PERIOD / 2));
+        assertEquals(1, controller.getLatency());
+    }
+
+    @Test
+    void stutterInBetweenRestartsTheCalmCount() {
+        var controller = new FrameLatencyController();
+        feed(controller, WINDOW, 10, 0);
+        feed(controller, 3 * WINDOW, 0, REFRESH_PERIOD / 2);
+        // a window with 2.5% missed frames is neither calm nor bad enough to raise
+        feed(controller, WINDOW, 40, REFRESH_PERIOD / 2);
+        assertEquals(2, controller.getLatency());
+        feed(controller, 3 * WINDOW, 0, REFRESH_PERIOD / 2);
+        assertEquals(2, controller.getLatency());
+        feed(controller, WINDOW, 0, REFRESH_PERIOD / 2);
+        assertEquals(1, controller.getLatency());
+    }
+
+    @Test
+    void latencyIsKeptWhileTheSwapChainIsNeverWaitedOn() {
+        var controller = new FrameLatencyController();
+        feed(controller, WINDOW, 10, 0);
+        // no missed frames, but the game only just keeps up, so a shorter queue would start missing them
+        assertEquals(0, feed(controller, 10 * WINDOW, 0, REFRESH_PERIOD / 10));
+        assertEquals(2, controller.getLatency());
+    }
+
+    @Test
+    void pinnedLatencyIgnoresTheTrace() {
+        var controller = new FrameLatencyController();
+        controller.setPinnedLatency(2);
+        assertEquals(2, controller.getLatency());
+        assertEquals(0, feed(controller, 10 * WINDOW, 2, 0));
+        assertEquals(0, feed(controller, 10 * WINDOW, 0, REFRESH_PERIOD / 2));
+        assertEquals(2, controller.getLatency());
+
+        // unpinning continues from the pinned latency with a fresh window
+        controller.setPinnedLatency(0);
+        assertFalse(controller.onFrame(2 * REFRESH_PERIOD, 0, REFRESH_PERIOD));
+        assertEquals(1, feed(controller, WINDOW - 1, 10, 0));
+        assertEquals(3, controller.getLatency());
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        var controller = new FrameLatencyController();
+        assertThrows(IllegalArgumentException.class, () -> controller.setPinnedLatency(FrameLatencyController.MAX_FRAME_LATENCY + 1));
+        assertThrows(IllegalArgumentException.class, () -> controller.setPinnedLatency(-1));
+        assertThrows(IllegalArgumentException.class, () -> new FrameLatencyController(0, 0.05, 0.01, 4));
+        assertThrows(IllegalArgumentException.class, () -> new FrameLatencyController(120, 0.01, 0.05, 4));
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+import windows.win32.graphics.direct3d11.ID3D11Device;
+import windows.win32.graphics.direct3d11.ID3D11DeviceContext;
+import windows.win32.graphics.dxgi.IDXGIFactory2;
+
+import java.lang.foreign.Arena;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.mojang.blaze3d.platform.GlConst.GL_RGBA8;
+import static com.mojang.blaze3d.platform.GlConst.GL_TEXTURE_2D;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that a frame allocates nothing on the render thread once the JIT is done with it, including the frames that
+ * finish a metrics window: a {@link FrameLoop} driving a real {@link InteropContext} built from
+ * {@link FakeComObject}s and a {@link FakeInteropPlatform}, and one driving a {@link HeadlessBackend}.
+ */
+class FramePathAllocationTest {
+
+    private static final long REFRESH_PERIOD = 16_666_667;
+    // the default of the config
+    private static final long METRICS_WINDOW = TimeUnit.MILLISECONDS.toNanos(1000);
+    // escape analysis only removes the event allocations once the whole frame is compiled, which takes a while
+    private static final int WARMUP_FRAMES = 200_000;
+    // the code that finishes a window has to be compiled as well, it is only reached once per window
+    private static final int WARMUP_WINDOWS = 3;
+    private static final int MEASURED_FRAMES = 10_000;
+    private static final int MEASURED_WINDOWS = 2;
+
+    // vtable slots of the methods that create objects, counting those of the base interfaces
+    private static final int DEVICE_CREATE_BUFFER = 3;
+    private static final int DEVICE_CREATE_TEXTURE_2D = 5;
+    private static final int DEVICE_CREATE_SHADER_RESOURCE_VIEW = 7;
+    private static final int DEVICE_CREATE_RENDER_TARGET_VIEW = 9;
+    private static final int DEVICE_CREATE_VERTEX_SHADER = 12;
+    private static final int DEVICE_CREATE_PIXEL_SHADER = 15;
+    private static final int DEVICE_CREATE_RASTERIZER_STATE = 22;
+    private static final int DEVICE_CREATE_SAMPLER_STATE = 23;
+    private static final int FACTORY_CREATE_SWAP_CHAIN_FOR_HWND = 15;
+    private static final int SWAP_CHAIN_GET_BUFFER = 9;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Warms up for {@link #WARMUP_FRAMES} frames and {@link #WARMUP_WINDOWS} windows, then measures at least
+     * {@link #MEASURED_FRAMES} frames and {@link #MEASURED_WINDOWS} windows.
+     *
+     * @return the bytes allocated by the measured frames
+     */
+    private static long allocatedBytes(FrameTimingRecorder recorder, Runnable frame) {
+        for (int i = 0; i < WARMUP_FRAMES || recorder.getWindowCount() < WARMUP_WINDOWS; i++) {
+            frame.run();
+        }
+        var windows = recorder.getWindowCount();
+        var before = THREADS.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_FRAMES || recorder.getWindowCount() - windows < MEASURED_WINDOWS; i++) {
+            frame.run();
+        }
+        return THREADS.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    /**
+     * A context whose COM objects are fakes that hand out a single shared fake resource from their create methods.
+     */
+    private static InteropContext createContext(Arena arena) {
+        var resource = FakeComObject.create(arena);
+        var device = FakeComObject.create(arena,
+                new FakeComObject.Factory(DEVICE_CREATE_BUFFER, 3, resource),
+                new FakeComObject.Factory(DEVICE_CREATE_TEXTURE_2D, 3, resource),
+                new FakeComObject.Factory(DEVICE_CREATE_SHADER_RESOURCE_VIEW, 3, resource),
+                new FakeComObject.Factory(DEVICE_CREATE_RENDER_TARGET_VIEW, 3, resource),
+                new FakeComObject.Factory(DEVICE_CREATE_VERTEX_SHADER, 4, resource),
+                new FakeComObject.Factory(DEVICE_CREATE_PIXEL_SHADER, 4, resource),
+                new FakeComObject.Factory(DEVICE_CREATE_RASTERIZER_STATE, 2, resource),
+                new FakeComObject.Factory(DEVICE_CREATE_SAMPLER_STATE, 2, resource));
+        var swapChain = FakeComObject.create(arena, new FakeComObject.Factory(SWAP_CHAIN_GET_BUFFER, 3, resource));
+        var factory = FakeComObject.create(arena, new FakeComObject.Factory(FACTORY_CREATE_SWAP_CHAIN_FOR_HWND, 6, swapChain));
+        var bytecode = arena.allocate(4);
+
+        var resources = new DeviceResources(ID3D11Device.wrap(device), ID3D11DeviceContext.wrap(FakeComObject.create(arena)),
+                IDXGIFactory2.wrap(factory), bytecode, bytecode, bytecode);
+        return new InteropContext(new FakeInteropPlatform(), 0, new ContextCreationFlags(), CompletableFuture.completedFuture(resources));
+    }
+
+    @Test
+    void interopFrameLoopAllocatesNothing() {
+        try (var arena = Arena.ofConfined()) {
+            var context = createContext(arena);
+            try {
+                context.allocateSharedTexture(1, GL_TEXTURE_2D, GL_RGBA8, 1920, 1080);
+                var recorder = new FrameTimingRecorder(METRICS_WINDOW);
+                var loop = new FrameLoop(context, recorder);
+
+                // waits on the swap chain, unlocks, blits, locks the texture again for OpenGL and presents
+                var allocated = allocatedBytes(recorder, () -> {
+                    loop.beginFrame();
+                    loop.waitForSwapChain();
+                    context.acquireSharedTexture(1);
+                    loop.blit(1);
+                    loop.present();
+                });
+                assertEquals(0, allocated, "bytes allocated by the measured frames");
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    @Test
+    void headlessFrameLoopAllocatesNothing() {
+        var clock = new VirtualClock();
+        var backend = new HeadlessBackend(clock, REFRESH_PERIOD, 100_000, 0, 0);
+        backend.allocateSharedTexture(1, 0, 0, 1920, 1080);
+        var recorder = new FrameTimingRecorder(METRICS_WINDOW);
+        var loop = new FrameLoop(backend, recorder);
+
+        var allocated = allocatedBytes(recorder, () -> {
+            loop.beginFrame();
+            clock.advance(2_000_000);
+            loop.waitForSwapChain();
+            backend.acquireSharedTexture(1);
+            clock.advance(3_000_000);
+            loop.blit(1);
+            loop.present();
+        });
+        assertEquals(0, allocated, "bytes allocated by the measured frames");
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks {@link FrameStartScheduler} on its own and in a {@link FrameLoop} simulated on a {@link HeadlessBackend}.
+ */
+class FrameStartSchedulerTest {
+
+    private static final long REFRESH_PERIOD = 16_666_667;
+    private static final long MARGIN = 1_000_000;
+    private static final int FRAMES = 2_000;
+
+    private record Result(double meanInputLatency, long missedRefreshes) { }
+
+    /**
+     * Runs a 60 Hz game whose frames take 4 to 6 ms at first and slowly get 4 ms more expensive.
+     *
+     * @return the mean time from sampling the input to the start of the present, and the refreshes that showed a
+     * frame again because the next one was late
+     */
+    private static Result simulate(boolean frameStartScheduling) {
+        var clock = new VirtualClock();
+        var backend = new HeadlessBackend(clock, REFRESH_PERIOD, 100_000, 200_000, 0);
+        backend.allocateSharedTexture(1, 0, 0, 1920, 1080);
+        var timings = new FrameTimingRecorder(Long.MAX_VALUE);
+        var loop = new FrameLoop(backend, timings);
+        loop.setFrameStartScheduling(frameStartScheduling, MARGIN);
+
+        var random = new Random(42);
+        var record = new FrameTimingRecorder.FrameRecord();
+        var totalInputLatency = 0L;
+        for (int i = 0; i < FRAMES; i++) {
+            loop.beginFrame();
+            loop.consumeInput();
+            var inputSampled = clock.nanoTime();
+            clock.advance(4_000_000 + 4_000_000L * i / FRAMES + random.nextInt(2_000_000));
+            loop.waitForSwapChain();
+            backend.acquireSharedTexture(1);
+            loop.blit(1);
+            loop.present();
+
+            timings.readFrame(timings.getFrameCount() - 1, record);
+            totalInputLatency += record.presentStart - inputSampled;
+        }
+        return new Result((double) totalInputLatency / FRAMES, timings.getRepeatedRefreshCount());
+    }
+
+    @Test
+    void schedulingLowersInputLatencyWithoutMissingMoreFrames() {
+        var unscheduled = simulate(false);
+        var scheduled = simulate(true);
+
+        // without scheduling the input is sampled right after the previous present and then waits out the queue
+        assertTrue(unscheduled.meanInputLatency() > REFRESH_PERIOD * 0.9, "unscheduled latency " + unscheduled.meanInputLatency());
+        // with it only the frame itself is left, plus the margin and some slack for the deviation
+        assertTrue(scheduled.meanInputLatency() < 10_000_000, "scheduled latency " + scheduled.meanInputLatency());
+        assertTrue(scheduled.missedRefreshes() <= unscheduled.missedRefreshes(),
+                scheduled.missedRefreshes() + " missed refreshes, " + unscheduled.missedRefreshes() + " without scheduling");
+    }
+
+    @Test
+    void firstFrameStartsRightAway() {
+        var scheduler = new FrameStartScheduler(MARGIN);
+        assertEquals(-1, scheduler.getPredictedCost());
+        assertEquals(100, scheduler.getFrameStart(100, 100 + REFRESH_PERIOD));
+    }
+
+    @Test
+    void constantCostConvergesToCostAndMargin() {
+        var scheduler = new FrameStartScheduler(MARGIN);
+        for (int i = 0; i < 200; i++) {
+            scheduler.onFrameCompleted(5_000_000);
+        }
+        // the deviation decays towards zero
+        assertEquals(5_000_000, scheduler.getPredictedCost(), 1_000);
+        assertEquals(REFRESH_PERIOD - 6_000_000, scheduler.getFrameStart(0, REFRESH_PERIOD), 1_000);
+    }
+
+    @Test
+    void jitterWidensThePrediction() {
+        var steady = new FrameStartScheduler(MARGIN);
+        var jittery = new FrameStartScheduler(MARGIN);
+        for (int i = 0; i < 200; i++) {
+            steady.onFrameCompleted(5_000_000);
+            jittery.onFrameCompleted(i % 2 == 0 ? 3_000_000 : 7_000_000);
+        }
+        assertTrue(jittery.getPredictedCost() > 7_000_000, "predicted " + jittery.getPredictedCost());
+        assertTrue(jittery.getPredictedCost() > steady.getPredictedCost());
+    }
+
+    @Test
+    void frameStartIsNeverInThePast() {
+        var scheduler = new FrameStartScheduler(MARGIN);
+        scheduler.onFrameCompleted(30_000_000);
+        assertEquals(1_000, scheduler.getFrameStart(1_000, REFRESH_PERIOD));
+        scheduler.reset();
+        assertEquals(-1, scheduler.getPredictedCost());
+    }
+}
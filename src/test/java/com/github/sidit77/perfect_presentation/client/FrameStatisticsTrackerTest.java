@@ -0,0 +1,186 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Feeds {@link FrameStatisticsTracker} statistic sequences generated from a schedule of when each frame was
+ * presented and on which vblank it was shown, the way DXGI would have reported them.
+ */
+class FrameStatisticsTrackerTest {
+
+    private static final long REFRESH_PERIOD = 16_666_667;
+    private static final long PRESENT_OFFSET = 1_000_000;
+    private static final int FRAMES = 20;
+
+    private record Displayed(long frame, long presentTime, long displayTime) { }
+
+    private record Glitch(int repeatedRefreshes, int droppedFrames) { }
+
+    private final List<Displayed> displayed = new ArrayList<>();
+    private final List<Glitch> glitches = new ArrayList<>();
+    private final List<Long> dropped = new ArrayList<>();
+    private final FrameStatisticsTracker tracker = new FrameStatisticsTracker(new FrameStatisticsTracker.Listener() {
+        @Override
+        public void onFrameDisplayed(long frame, long presentTime, long displayTime) {
+            displayed.add(new Displayed(frame, presentTime, displayTime));
+        }
+
+        @Override
+        public void onGlitch(int repeatedRefreshes, int droppedFrames) {
+            glitches.add(new Glitch(repeatedRefreshes, droppedFrames));
+        }
+
+        @Override
+        public void onFrameDropped(long frame) {
+            dropped.add(frame);
+        }
+    });
+
+    /**
+     * Presents frame {@code i} at {@code presentTimes[i]} with a sync interval of 1 and samples the statistics right
+     * after it. The frame is shown on vblank {@code displayVblanks[i]}, {@code -1} for never. Vblank {@code n} is at
+     * {@code n * REFRESH_PERIOD}, present IDs start at {@code base + 1} and refresh counts at {@code base}.
+     */
+    private void run(int base, long[] presentTimes, int[] displayVblanks, IntPredicate occluded) {
+        var sample = new FrameStatisticsTracker.Sample();
+        for (int i = 0; i < presentTimes.length; i++) {
+            tracker.onPresent(i, base + i + 1, presentTimes[i]);
+
+            var vblank = (int) (presentTimes[i] / REFRESH_PERIOD);
+            var lastShown = -1;
+            for (int j = 0; j <= i; j++) {
+                if (displayVblanks[j] != -1 && displayVblanks[j] <= vblank) {
+                    lastShown = j;
+                }
+            }
+            sample.presentId = base + i + 1;
+            sample.available = !occluded.test(i);
+            sample.presentCount = base + lastShown + 1;
+            sample.presentRefreshCount = base + (lastShown == -1 ? 0 : displayVblanks[lastShown]);
+            sample.syncRefreshCount = base + vblank;
+            sample.syncTime = vblank * REFRESH_PERIOD;
+            tracker.onStatistics(sample, 1, REFRESH_PERIOD);
+        }
+    }
+
+    private void runSteady(int base) {
+        var presentTimes = new long[FRAMES];
+        var displayVblanks = new int[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            presentTimes[i] = i * REFRESH_PERIOD + PRESENT_OFFSET;
+            displayVblanks[i] = i + 1;
+        }
+        run(base, presentTimes, displayVblanks, i -> false);
+    }
+
+    private static Displayed shown(long frame, long presentTime, int vblank) {
+        return new Displayed(frame, presentTime, vblank * REFRESH_PERIOD);
+    }
+
+    @Test
+    void steadyFramesAreShownOneRefreshLater() {
+        runSteady(0);
+        // the last frame is not on screen yet when its statistics are sampled
+        assertEquals(FRAMES - 1, displayed.size());
+        for (int i = 0; i < displayed.size(); i++) {
+            assertEquals(shown(i, i * REFRESH_PERIOD + PRESENT_OFFSET, i + 1), displayed.get(i));
+        }
+        assertEquals(List.of(), glitches);
+        assertEquals(List.of(), dropped);
+    }
+
+    @Test
+    void wrappingCountersChangeNothing() {
+        runSteady(0);
+        var expected = List.copyOf(displayed);
+        for (var base : new int[] { -5, Integer.MAX_VALUE - 5 }) {
+            displayed.clear();
+            tracker.reset();
+            runSteady(base);
+            assertEquals(expected, displayed, "counters starting at " + Integer.toUnsignedString(base));
+            assertEquals(List.of(), glitches);
+        }
+    }
+
+    @Test
+    void lateFrameRepeatsARefresh() {
+        var presentTimes = new long[FRAMES];
+        var displayVblanks = new int[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            // frame 5 misses its vblank, everything after it is one refresh later
+            var delay = i >= 5 ? 1 : 0;
+            presentTimes[i] = (i + delay) * REFRESH_PERIOD + PRESENT_OFFSET;
+            displayVblanks[i] = i + 1 + delay;
+        }
+        run(0, presentTimes, displayVblanks, i -> false);
+
+        assertEquals(List.of(new Glitch(1, 0)), glitches);
+        assertEquals(List.of(), dropped);
+        // every frame still gets its display time
+        assertEquals(FRAMES - 1, displayed.size());
+        assertEquals(shown(5, 6 * REFRESH_PERIOD + PRESENT_OFFSET, 7), displayed.get(5));
+    }
+
+    @Test
+    void replacedFrameIsReportedAsDropped() {
+        var presentTimes = new long[FRAMES];
+        var displayVblanks = new int[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            presentTimes[i] = i * REFRESH_PERIOD + PRESENT_OFFSET;
+            displayVblanks[i] = i + 1;
+        }
+        // frame 6 follows right behind frame 5 and replaces it in the queue
+        presentTimes[6] = 5 * REFRESH_PERIOD + 2 * PRESENT_OFFSET;
+        displayVblanks[5] = -1;
+        displayVblanks[6] = 6;
+        for (int i = 7; i < FRAMES; i++) {
+            presentTimes[i] = (i - 1) * REFRESH_PERIOD + PRESENT_OFFSET;
+            displayVblanks[i] = i;
+        }
+        run(0, presentTimes, displayVblanks, i -> false);
+
+        assertEquals(List.of(new Glitch(0, 1)), glitches);
+        assertEquals(List.of(5L), dropped);
+        assertTrue(displayed.stream().noneMatch(d -> d.frame() == 5));
+        assertTrue(displayed.contains(shown(6, 5 * REFRESH_PERIOD + 2 * PRESENT_OFFSET, 6)));
+    }
+
+    @Test
+    void occlusionDiscardsThePendingFrames() {
+        var presentTimes = new long[FRAMES];
+        var displayVblanks = new int[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            presentTimes[i] = i * REFRESH_PERIOD + PRESENT_OFFSET;
+            // an occluded window shows nothing
+            displayVblanks[i] = i >= 8 && i < 12 ? -1 : i + 1;
+        }
+        run(0, presentTimes, displayVblanks, i -> i >= 8 && i < 12);
+
+        // frame 7 was still pending when the window got occluded
+        assertTrue(displayed.stream().noneMatch(d -> d.frame() >= 7 && d.frame() < 12), displayed.toString());
+        assertEquals(List.of(), glitches);
+        assertEquals(List.of(), dropped);
+        // the first sample after the occlusion is the new baseline, its frame is matched by the next one
+        assertEquals(shown(12, 12 * REFRESH_PERIOD + PRESENT_OFFSET, 13), displayed.get(7));
+        assertEquals(7 + FRAMES - 13, displayed.size());
+    }
+
+    @Test
+    void countersGoingBackwardsStartOver() {
+        runSteady(1_000);
+        displayed.clear();
+        // e.g. a recreated swap chain, which counts from the beginning again
+        runSteady(0);
+        assertEquals(List.of(), glitches);
+        // the first sample goes backwards and takes the first frame with it
+        assertEquals(FRAMES - 2, displayed.size());
+        assertEquals(shown(1, REFRESH_PERIOD + PRESENT_OFFSET, 2), displayed.get(0));
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replays a synthetic trace on a 100 Hz display with a frame latency of one, where every frame takes 5 ms on the
+ * CPU except for a single 30 ms one, and checks the resulting start to scanout latencies.
+ */
+class FrameTraceReplayTest {
+
+    private static final long MS = 1_000_000;
+    private static final int FRAMES = 200;
+    private static final int SLOW_FRAME = 100;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Frames with a 1 ms tick, 3 ms (or 28 ms) of rendering and a 1 ms present, recorded 20 ms apart. The
+     * recorded gaps and swap chain waits do not matter, the replay simulates them.
+     */
+    private Path writeTrace() throws IOException {
+        var file = directory.resolve("frames.pptrace");
+        try (var writer = new FrameTraceWriter(file)) {
+            writer.refreshRate(0, 100);
+            writer.syncInterval(0, 1);
+            writer.resize(0, 1920, 1080);
+            for (int i = 0; i < FRAMES; i++) {
+                var start = i * 20 * MS;
+                var render = i == SLOW_FRAME ? 28 * MS : 3 * MS;
+                writer.beginFrame(start);
+                writer.endTick(start + MS);
+                writer.beginRender(start + MS);
+                writer.blit(start + MS + render, start + MS + render);
+                writer.present(start + MS + render, start + 2 * MS + render);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * The histogram reports the upper bound of the bucket a value falls into, which is at most 1/32 above it.
+     */
+    private static void assertPercentile(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 32,
+                "expected about " + expected + " but was " + actual);
+    }
+
+    @Test
+    void replayReachesTheExpectedLatencies() throws IOException {
+        var replay = new FrameTraceReplay(FrameRateLimiter.Mode.PRECISE, 1, false, TearingMode.NEVER, 0.25);
+        replay.run(writeTrace());
+
+        // Each frame starts right after the previous present, 4 ms after the vblank that showed the frame before
+        // that one. It then waits for that frame to leave the queue at the next vblank, and gets shown one vblank
+        // later: 16 ms. The first frames are faster as the queue is still empty.
+        assertEquals(FRAMES, replay.getFrameCount());
+        var latency = replay.getLatency();
+        assertEquals(FRAMES, latency.getTotalCount());
+        assertPercentile(16 * MS, latency.getValueAtPercentile(50));
+        assertPercentile(16 * MS, latency.getValueAtPercentile(99));
+
+        // the slow frame misses two vblanks: 6 ms until the vblank it waits for, 30 ms until it is done and shown
+        assertEquals(36 * MS, latency.getValueAtPercentile(99.9));
+        assertEquals(36 * MS, latency.getMax());
+        assertEquals(1, replay.getMissedDeadlines());
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes a short trace with {@link FrameTraceWriter} and reads it back with {@link FrameTraceReader}.
+ */
+class FrameTraceWriterTest {
+
+    private static final long MS = 1_000_000;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Two frames at 10 ms and 25 ms, the window is resized in the middle of the second one.
+     */
+    private Path writeTrace() throws IOException {
+        var file = directory.resolve("frames.pptrace");
+        try (var writer = new FrameTraceWriter(file)) {
+            writer.refreshRate(5 * MS, 144);
+            writer.syncInterval(5 * MS, 1);
+
+            writer.beginFrame(10 * MS);
+            writer.endTick(12 * MS);
+            writer.beginRender(13 * MS);
+            writer.blit(20 * MS, 21 * MS);
+            writer.present(22 * MS, 23 * MS);
+            writer.frameRateLimit(120);
+
+            writer.beginFrame(25 * MS);
+            writer.resize(26 * MS, 1280, 720);
+            writer.endTick(27 * MS);
+            writer.beginRender(27 * MS);
+            writer.blit(30 * MS, 31 * MS);
+            writer.present(31 * MS, 32 * MS);
+        }
+        return file;
+    }
+
+    private static void assertFrame(FrameTraceReader.Record record, long time, long tick, long swapChainWait,
+                                    long render, long blit, long presentGap, long present, int frameRateLimit) {
+        assertEquals(FrameTraceWriter.FRAME, record.type);
+        assertEquals(time, record.time, "time");
+        assertEquals(tick, record.tick, "tick");
+        assertEquals(swapChainWait, record.swapChainWait, "swap chain wait");
+        assertEquals(render, record.render, "render");
+        assertEquals(blit, record.blit, "blit");
+        assertEquals(presentGap, record.presentGap, "present gap");
+        assertEquals(present, record.present, "present");
+        assertEquals(frameRateLimit, record.frameRateLimit, "frame rate limit");
+    }
+
+    @Test
+    void recordsSurviveTheRoundTrip() throws IOException {
+        var reader = new FrameTraceReader(writeTrace());
+        var record = new FrameTraceReader.Record();
+
+        // times are relative to the first record
+        assertTrue(reader.next(record));
+        assertEquals(FrameTraceWriter.REFRESH_RATE, record.type);
+        assertEquals(0, record.time);
+        assertEquals(144, record.value);
+
+        assertTrue(reader.next(record));
+        assertEquals(FrameTraceWriter.SYNC_INTERVAL, record.type);
+        assertEquals(0, record.time);
+        assertEquals(1, record.value);
+
+        assertTrue(reader.next(record));
+        assertFrame(record, 5 * MS, 2 * MS, MS, 7 * MS, MS, MS, MS, 120);
+
+        // the second frame is only written once it is done, after the resize that happened during it
+        assertTrue(reader.next(record));
+        assertEquals(FrameTraceWriter.RESIZE, record.type);
+        assertEquals(21 * MS, record.time);
+        assertEquals(1280, record.width);
+        assertEquals(720, record.height);
+
+        // and the limit of the first frame is kept
+        assertTrue(reader.next(record));
+        assertFrame(record, 20 * MS, 2 * MS, 0, 3 * MS, MS, 0, MS, 120);
+
+        assertFalse(reader.next(record));
+    }
+
+    @Test
+    void truncatedTraceIsReadUpToTheLastCompleteRecord() throws IOException {
+        var data = Files.readAllBytes(writeTrace());
+        var file = directory.resolve("truncated.pptrace");
+        Files.write(file, Arrays.copyOf(data, data.length - 1));
+
+        var reader = new FrameTraceReader(file);
+        var record = new FrameTraceReader.Record();
+        var records = 0;
+        while (reader.next(record)) {
+            records++;
+        }
+        // the second frame lost the last byte of its frame rate limit
+        assertEquals(4, records);
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        var file = directory.resolve("frames.csv");
+        Files.writeString(file, "Application,ProcessID\n");
+        assertThrows(IOException.class, () -> new FrameTraceReader(file));
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drains a {@link FrameTimingRecorder} through {@link PresentMonCsvWriter} by hand and checks the rows it writes.
+ */
+class PresentMonCsvWriterTest {
+
+    private static final long REFRESH_PERIOD = 16_666_667;
+
+    // column indices
+    private static final int SYNC_INTERVAL = 4;
+    private static final int PRESENT_FLAGS = 5;
+    private static final int ALLOWS_TEARING = 6;
+    private static final int DROPPED = 8;
+    private static final int TIME_IN_SECONDS = 9;
+    private static final int MS_IN_PRESENT_API = 10;
+    private static final int MS_BETWEEN_PRESENTS = 11;
+    private static final int MS_WAITING_ON_SWAP_CHAIN = 12;
+    private static final int MS_IN_BLIT = 13;
+    private static final int MS_UNTIL_DISPLAYED = 14;
+    private static final int MS_INPUT_TO_PRESENT = 15;
+    private static final int MS_INPUT_TO_DISPLAYED = 16;
+
+    @TempDir
+    Path directory;
+
+    private final FrameTimingRecorder recorder = new FrameTimingRecorder(Long.MAX_VALUE);
+
+    private void present(int syncInterval) {
+        var start = recorder.getFrameCount() * REFRESH_PERIOD;
+        recorder.recordSwapChainWait(2_000_000);
+        recorder.recordBlit(500_000);
+        recorder.recordPresent(start, start + 250_000, syncInterval);
+    }
+
+    private List<String[]> rows(Path file) throws IOException {
+        var lines = Files.readAllLines(file);
+        assertTrue(lines.get(0).startsWith("Application,ProcessID,SwapChainAddress,Runtime,SyncInterval,"), lines.get(0));
+        return lines.stream().skip(1).map(line -> line.split(",")).toList();
+    }
+
+    @Test
+    void framesAreHeldBackUntilTheirFateIsKnown() throws IOException {
+        var file = directory.resolve("timings.csv");
+        try (var writer = new PresentMonCsvWriter(recorder, file, 1000, false)) {
+            for (int i = 0; i < 5; i++) {
+                present(1);
+            }
+            recorder.recordDisplayLatency(0, 20_000_000);
+            recorder.recordDisplayLatency(1, 20_000_000);
+            recorder.recordDroppedFrame(2);
+            recorder.recordDisplayLatency(4, 20_000_000);
+
+            writer.drain(false);
+            // frame 3 has not been resolved yet, so neither it nor frame 4 are written
+            assertEquals(3, rows(file).size());
+
+            recorder.recordDisplayLatency(3, 30_000_000);
+            writer.drain(false);
+            var rows = rows(file);
+            assertEquals(5, rows.size());
+            assertEquals("0", rows.get(1)[DROPPED]);
+            assertEquals("1", rows.get(2)[DROPPED]);
+            assertEquals("NA", rows.get(2)[MS_UNTIL_DISPLAYED]);
+            assertEquals("30.000", rows.get(3)[MS_UNTIL_DISPLAYED]);
+        }
+    }
+
+    @Test
+    void closeWritesTheUnresolvedFrames() throws IOException {
+        var file = directory.resolve("timings.csv");
+        var writer = new PresentMonCsvWriter(recorder, file, 1000, false);
+        present(1);
+        present(1);
+        recorder.recordDisplayLatency(0, 20_000_000);
+        writer.drain(false);
+        assertEquals(1, rows(file).size());
+
+        writer.close();
+        var rows = rows(file);
+        assertEquals(2, rows.size());
+        assertEquals("NA", rows.get(1)[MS_UNTIL_DISPLAYED]);
+        assertEquals("0", rows.get(1)[DROPPED]);
+    }
+
+    @Test
+    void framesThatNeverResolveAreWrittenEventually() throws IOException {
+        var file = directory.resolve("timings.csv");
+        try (var writer = new PresentMonCsvWriter(recorder, file, 1000, false)) {
+            for (int i = 0; i < PresentMonCsvWriter.MAX_DISPLAY_DELAY + 6; i++) {
+                present(1);
+            }
+            writer.drain(false);
+            var rows = rows(file);
+            assertEquals(6, rows.size());
+            assertTrue(rows.stream().allMatch(row -> row[MS_UNTIL_DISPLAYED].equals("NA")));
+        }
+    }
+
+    @Test
+    void columnsFollowPresentMon() throws IOException {
+        var file = directory.resolve("timings.csv");
+        try (var writer = new PresentMonCsvWriter(recorder, file, 1000, false)) {
+            present(1);
+            recorder.recordInputLatency(4_000_000);
+            present(0);
+            recorder.recordDisplayLatency(0, 20_000_000);
+            recorder.recordDisplayLatency(1, 5_000_000);
+            writer.drain(false);
+
+            var rows = rows(file);
+            assertEquals(2, rows.size());
+            var synced = rows.get(0);
+            assertEquals(17, synced.length);
+            assertEquals("DXGI", synced[3]);
+            assertEquals("1", synced[SYNC_INTERVAL]);
+            assertEquals("0", synced[PRESENT_FLAGS]);
+            assertEquals("0", synced[ALLOWS_TEARING]);
+            assertEquals("0.000000", synced[TIME_IN_SECONDS]);
+            assertEquals("0.250", synced[MS_IN_PRESENT_API]);
+            // the first frame has no predecessor
+            assertEquals("0.000", synced[MS_BETWEEN_PRESENTS]);
+            assertEquals("2.000", synced[MS_WAITING_ON_SWAP_CHAIN]);
+            assertEquals("0.500", synced[MS_IN_BLIT]);
+            assertEquals("20.000", synced[MS_UNTIL_DISPLAYED]);
+            assertEquals("NA", synced[MS_INPUT_TO_PRESENT]);
+            assertEquals("NA", synced[MS_INPUT_TO_DISPLAYED]);
+
+            var tearing = rows.get(1);
+            assertEquals("0", tearing[SYNC_INTERVAL]);
+            assertEquals("512", tearing[PRESENT_FLAGS]);
+            assertEquals("1", tearing[ALLOWS_TEARING]);
+            assertEquals("0.016667", tearing[TIME_IN_SECONDS]);
+            assertEquals("16.667", tearing[MS_BETWEEN_PRESENTS]);
+            assertEquals("4.000", tearing[MS_INPUT_TO_PRESENT]);
+            assertEquals("9.000", tearing[MS_INPUT_TO_DISPLAYED]);
+        }
+    }
+}
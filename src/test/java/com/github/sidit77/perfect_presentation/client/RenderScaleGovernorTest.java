@@ -0,0 +1,138 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Feeds {@link RenderScaleGovernor} windows of constant GPU frame times around a 10 ms target.
+ */
+class RenderScaleGovernorTest {
+
+    private static final int WINDOW = 10;
+    private static final long TARGET = 10_000_000;
+    private static final float EPSILON = 1e-4f;
+
+    private final RenderScaleGovernor governor = new RenderScaleGovernor(WINDOW);
+
+    /**
+     * Reports {@code frames} frames that each took {@code gpuFrameTime}.
+     *
+     * @return whether the last one changed the scale
+     */
+    private boolean feed(int frames, long gpuFrameTime) {
+        var changed = false;
+        for (int i = 0; i < frames; i++) {
+            changed = governor.onGpuFrameTime(gpuFrameTime);
+        }
+        return changed;
+    }
+
+    private boolean window(long gpuFrameTime) {
+        return feed(WINDOW, gpuFrameTime);
+    }
+
+    @Test
+    void staticScaleIgnoresFrameTimes() {
+        governor.configure(0.8f, 0.5f, 0);
+        assertFalse(governor.isDynamic());
+        assertEquals(0.8f, governor.getScale(), EPSILON);
+        assertFalse(feed(5 * WINDOW, 4 * TARGET));
+        assertEquals(0.8f, governor.getScale(), EPSILON);
+        assertEquals(1536, governor.scale(1920));
+    }
+
+    @Test
+    void frameTimesInsideTheDeadBandChangeNothing() {
+        governor.configure(1.0f, 0.5f, TARGET);
+        assertTrue(governor.isDynamic());
+        window(2 * TARGET);
+        assertEquals(0.9f, governor.getScale(), EPSILON);
+
+        // 5% above the target
+        assertFalse(window(10_500_000));
+        // 15% below it, which would leave room to render at a higher scale
+        assertFalse(window(8_500_000));
+        assertEquals(0.9f, governor.getScale(), EPSILON);
+
+        // just outside of the band on either side
+        assertTrue(window(10_600_000));
+        assertEquals(0.85f, governor.getScale(), EPSILON);
+        assertTrue(window(7_000_000));
+        assertEquals(0.95f, governor.getScale(), EPSILON);
+    }
+
+    @Test
+    void onlyCompleteWindowsCount() {
+        governor.configure(1.0f, 0.5f, TARGET);
+        assertFalse(feed(WINDOW - 1, 4 * TARGET));
+        assertEquals(1.0f, governor.getScale(), EPSILON);
+        // the window is averaged, a single fast frame does not make up for the slow ones
+        assertTrue(feed(1, 0));
+    }
+
+    @Test
+    void stepsAreClampedToTwoPerWindow() {
+        governor.configure(1.0f, 0.5f, TARGET);
+        // four times too slow asks for half the scale at once
+        assertTrue(window(4 * TARGET));
+        assertEquals(0.9f, governor.getScale(), EPSILON);
+        assertTrue(window(4 * TARGET));
+        assertEquals(0.8f, governor.getScale(), EPSILON);
+
+        // a hundred times too fast does not skip ahead either
+        assertTrue(window(TARGET / 100));
+        assertEquals(0.9f, governor.getScale(), EPSILON);
+    }
+
+    @Test
+    void scaleStaysWithinItsLimits() {
+        governor.configure(0.9f, 0.62f, TARGET);
+        // the limits are quantized to whole steps
+        assertEquals(0.9f, governor.getScale(), EPSILON);
+        window(4 * TARGET);
+        window(4 * TARGET);
+        assertTrue(window(4 * TARGET));
+        assertEquals(0.6f, governor.getScale(), EPSILON);
+        assertFalse(window(4 * TARGET));
+        assertEquals(0.6f, governor.getScale(), EPSILON);
+
+        window(TARGET / 100);
+        window(TARGET / 100);
+        assertTrue(window(TARGET / 100));
+        assertEquals(0.9f, governor.getScale(), EPSILON);
+        assertFalse(window(TARGET / 100));
+        assertEquals(0.9f, governor.getScale(), EPSILON);
+    }
+
+    @Test
+    void configureResetsTheWindowAndClampsTheScale() {
+        governor.configure(1.0f, 0.5f, TARGET);
+        window(4 * TARGET);
+        window(4 * TARGET);
+        assertEquals(0.8f, governor.getScale(), EPSILON);
+
+        // a started window is thrown away
+        feed(WINDOW - 1, 4 * TARGET);
+        governor.configure(1.0f, 0.5f, TARGET);
+        assertFalse(feed(WINDOW - 1, 4 * TARGET));
+        assertEquals(0.8f, governor.getScale(), EPSILON);
+
+        // the current scale is kept within the new limits
+        governor.configure(0.7f, 0.5f, TARGET);
+        assertEquals(0.7f, governor.getScale(), EPSILON);
+        governor.configure(1.0f, 0.75f, TARGET);
+        assertEquals(0.75f, governor.getScale(), EPSILON);
+        // a minimum above the maximum is lowered to it
+        governor.configure(0.6f, 0.8f, TARGET);
+        assertEquals(0.6f, governor.getScale(), EPSILON);
+        assertFalse(window(4 * TARGET));
+
+        // without a target the scale goes straight to the configured one
+        governor.configure(0.9f, 0.5f, 0);
+        assertEquals(0.9f, governor.getScale(), EPSILON);
+        assertFalse(governor.isDynamic());
+    }
+}
@@ -0,0 +1,164 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link ShaderCache} against a fake compiler that only counts its calls.
+ */
+class ShaderCacheTest {
+
+    private static final String SOURCE = "float4 main() : SV_Target { return 1; }";
+
+    @TempDir
+    Path directory;
+
+    private static class FakeCompiler implements ShaderCompiler {
+
+        private final String identifier;
+        int compilations = 0;
+
+        FakeCompiler(String identifier) {
+            this.identifier = identifier;
+        }
+
+        @Override
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        @Override
+        public byte[] compile(String source, String entryPoint, String target, int flags) {
+            compilations++;
+            return bytecode(source, entryPoint, target, flags);
+        }
+
+        static byte[] bytecode(String source, String entryPoint, String target, int flags) {
+            return (entryPoint + " " + target + " " + flags + " " + source).getBytes(UTF_8);
+        }
+    }
+
+    private static byte[] bytes(MemorySegment segment) {
+        return segment.toArray(ValueLayout.JAVA_BYTE);
+    }
+
+    private List<Path> files() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    @Test
+    void secondRequestIsServedFromDisk() throws IOException {
+        var compiler = new FakeCompiler("fake 1");
+        var expected = FakeCompiler.bytecode(SOURCE, "main", "ps_5_0", 0);
+        try (var arena = Arena.ofConfined()) {
+            assertArrayEquals(expected, bytes(new ShaderCache(directory, compiler).get(arena, SOURCE, "main", "ps_5_0", 0)));
+            // a new cache, as after a restart
+            assertArrayEquals(expected, bytes(new ShaderCache(directory, compiler).get(arena, SOURCE, "main", "ps_5_0", 0)));
+        }
+        assertEquals(1, compiler.compilations);
+        // the temporary file was moved into place
+        var files = files();
+        assertEquals(1, files.size());
+        assertTrue(files.get(0).toString().endsWith(".dxbc"));
+    }
+
+    @Test
+    void everyPartOfTheKeyCounts() {
+        var compiler = new FakeCompiler("fake 1");
+        var cache = new ShaderCache(directory, compiler);
+        try (var arena = Arena.ofConfined()) {
+            cache.get(arena, SOURCE, "main", "ps_5_0", 0);
+            cache.get(arena, SOURCE + " ", "main", "ps_5_0", 0);
+            cache.get(arena, SOURCE, "other", "ps_5_0", 0);
+            cache.get(arena, SOURCE, "main", "ps_4_0", 0);
+            cache.get(arena, SOURCE, "main", "ps_5_0", 1);
+        }
+        assertEquals(5, compiler.compilations);
+
+        var otherCompiler = new FakeCompiler("fake 2");
+        try (var arena = Arena.ofConfined()) {
+            new ShaderCache(directory, otherCompiler).get(arena, SOURCE, "main", "ps_5_0", 0);
+        }
+        assertEquals(1, otherCompiler.compilations);
+        assertNotEquals(cache.key("ab", "c", "ps_5_0", 0), cache.key("a", "bc", "ps_5_0", 0));
+    }
+
+    @Test
+    void corruptBlobIsCompiledAgain() throws IOException {
+        var compiler = new FakeCompiler("fake 1");
+        var cache = new ShaderCache(directory, compiler);
+        var expected = FakeCompiler.bytecode(SOURCE, "main", "ps_5_0", 0);
+        try (var arena = Arena.ofConfined()) {
+            cache.get(arena, SOURCE, "main", "ps_5_0", 0);
+        }
+        var file = files().get(0);
+
+        // a flipped bit in the payload
+        var blob = Files.readAllBytes(file);
+        blob[blob.length - 1] ^= 1;
+        Files.write(file, blob);
+        try (var arena = Arena.ofConfined()) {
+            assertArrayEquals(expected, bytes(cache.get(arena, SOURCE, "main", "ps_5_0", 0)));
+        }
+        assertEquals(2, compiler.compilations);
+
+        // a file cut short by a crash
+        Files.write(file, new byte[] { 1, 2, 3 });
+        try (var arena = Arena.ofConfined()) {
+            assertArrayEquals(expected, bytes(cache.get(arena, SOURCE, "main", "ps_5_0", 0)));
+            // the entry was written again and is valid
+            assertArrayEquals(expected, bytes(cache.get(arena, SOURCE, "main", "ps_5_0", 0)));
+        }
+        assertEquals(3, compiler.compilations);
+    }
+
+    @Test
+    void unwritableCacheStillCompiles() throws IOException {
+        // a file where the directory should be
+        var blocked = Files.createFile(directory.resolve("blocked"));
+        var compiler = new FakeCompiler("fake 1");
+        var cache = new ShaderCache(blocked, compiler);
+        try (var arena = Arena.ofConfined()) {
+            assertArrayEquals(FakeCompiler.bytecode(SOURCE, "main", "ps_5_0", 0), bytes(cache.get(arena, SOURCE, "main", "ps_5_0", 0)));
+            cache.get(arena, SOURCE, "main", "ps_5_0", 0);
+        }
+        assertEquals(2, compiler.compilations);
+    }
+
+    @Test
+    void validationChecksTheHeader() {
+        var bytecode = "bytecode".getBytes(UTF_8);
+        var blob = ShaderCache.encode(bytecode);
+        assertArrayEquals(bytecode, bytes(ShaderCache.validate(MemorySegment.ofArray(blob))));
+
+        var wrongMagic = blob.clone();
+        wrongMagic[0] ^= 1;
+        assertNull(ShaderCache.validate(MemorySegment.ofArray(wrongMagic)));
+        var wrongVersion = blob.clone();
+        wrongVersion[4]++;
+        assertNull(ShaderCache.validate(MemorySegment.ofArray(wrongVersion)));
+        var wrongCrc = blob.clone();
+        wrongCrc[12] ^= 1;
+        assertNull(ShaderCache.validate(MemorySegment.ofArray(wrongCrc)));
+        assertNull(ShaderCache.validate(MemorySegment.ofArray(Arrays.copyOf(blob, blob.length - 1))));
+        assertNull(ShaderCache.validate(MemorySegment.ofArray(new byte[0])));
+    }
+}
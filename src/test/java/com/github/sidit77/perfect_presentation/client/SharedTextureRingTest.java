@@ -0,0 +1,107 @@
+package com.github.sidit77.perfect_presentation.client;
+
+import org.junit.jupiter.api.Test;
+
+import static com.github.sidit77.perfect_presentation.client.SharedTextureRing.SlotState.IDLE;
+import static com.github.sidit77.perfect_presentation.client.SharedTextureRing.SlotState.PRESENTING;
+import static com.github.sidit77.perfect_presentation.client.SharedTextureRing.SlotState.RENDERING;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Walks {@link SharedTextureRing} through frames the way {@code InteropContext} does: the next slot is reclaimed
+ * right before it is rendered into, a single slot right after its copy.
+ */
+class SharedTextureRingTest {
+
+    private static SharedTextureRing.SlotState[] states(SharedTextureRing ring) {
+        var states = new SharedTextureRing.SlotState[ring.size()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = ring.getState(i);
+        }
+        return states;
+    }
+
+    private static int beginFrame(SharedTextureRing ring) {
+        var next = ring.getNextSlot();
+        if (ring.getState(next) == PRESENTING) {
+            ring.reclaim(next);
+        }
+        return ring.beginRender();
+    }
+
+    @Test
+    void newRingIsIdle() {
+        var ring = new SharedTextureRing(3);
+        assertArrayEquals(new Object[] { IDLE, IDLE, IDLE }, states(ring));
+        assertEquals(-1, ring.getRenderSlot());
+        assertEquals(0, ring.getNextSlot());
+    }
+
+    @Test
+    void finishedFramesStayWithDirect3DUntilTheRingWraps() {
+        var ring = new SharedTextureRing(3);
+
+        assertEquals(0, beginFrame(ring));
+        assertArrayEquals(new Object[] { RENDERING, IDLE, IDLE }, states(ring));
+        assertEquals(0, ring.getRenderSlot());
+        assertEquals(0, ring.endRender());
+        assertArrayEquals(new Object[] { PRESENTING, IDLE, IDLE }, states(ring));
+
+        assertEquals(1, beginFrame(ring));
+        ring.endRender();
+        assertEquals(2, beginFrame(ring));
+        assertArrayEquals(new Object[] { PRESENTING, PRESENTING, RENDERING }, states(ring));
+        ring.endRender();
+
+        // wrapping around takes the oldest frame back from Direct3D
+        assertEquals(0, ring.getNextSlot());
+        assertEquals(0, beginFrame(ring));
+        assertArrayEquals(new Object[] { RENDERING, PRESENTING, PRESENTING }, states(ring));
+    }
+
+    @Test
+    void singleSlotIsReclaimedAfterEveryFrame() {
+        var ring = new SharedTextureRing(1);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, ring.beginRender());
+            assertEquals(RENDERING, ring.getState(0));
+            ring.endRender();
+            assertEquals(PRESENTING, ring.getState(0));
+            ring.reclaim(0);
+            assertEquals(IDLE, ring.getState(0));
+        }
+    }
+
+    @Test
+    void illegalTransitionsAreRefused() {
+        var ring = new SharedTextureRing(2);
+        assertThrows(IllegalStateException.class, ring::endRender);
+        assertThrows(IllegalStateException.class, () -> ring.reclaim(0));
+
+        ring.beginRender();
+        assertThrows(IllegalStateException.class, ring::beginRender);
+        assertThrows(IllegalStateException.class, () -> ring.reclaim(0));
+        ring.endRender();
+        ring.beginRender();
+        ring.endRender();
+
+        // slot 0 is still with Direct3D
+        assertThrows(IllegalStateException.class, ring::beginRender);
+        assertArrayEquals(new Object[] { PRESENTING, PRESENTING }, states(ring));
+        assertThrows(IllegalArgumentException.class, () -> new SharedTextureRing(0));
+    }
+
+    @Test
+    void resetStartsOverAtTheFirstSlot() {
+        var ring = new SharedTextureRing(2);
+        beginFrame(ring);
+        ring.endRender();
+        beginFrame(ring);
+        ring.reset();
+        assertArrayEquals(new Object[] { IDLE, IDLE }, states(ring));
+        assertEquals(-1, ring.getRenderSlot());
+        assertEquals(0, beginFrame(ring));
+    }
+}